@@ -0,0 +1,43 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A built JarArchive shared by the benchmarks that only analyze classes.
+ *
+ * @author Christopher Carpenter
+ */
+@State(Scope.Benchmark)
+public class ArchiveState {
+
+    @Param({Corpus.SAMPLE, Corpus.SYNTHETIC})
+    public String corpus;
+
+    public File file;
+    public JarArchive archive;
+    public List<ClassMethod> methods;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Corpus.file(corpus);
+        archive = new JarArchive(file);
+        archive.build();
+        methods = new ArrayList<>();
+        for (ClassFactory factory : archive.classes().values()) {
+            Collections.addAll(methods, factory.methods);
+        }
+        methods.sort((a, b) -> a.key().compareTo(b.key()));
+    }
+}
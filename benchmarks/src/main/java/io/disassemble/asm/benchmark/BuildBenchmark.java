@@ -0,0 +1,61 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.JarArchive;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JarArchive#build(long)} at different parallelism thresholds and build modes.
+ *
+ * @author Christopher Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({Corpus.SAMPLE, Corpus.SYNTHETIC})
+    public String corpus;
+
+    @Param({"1", "100", "9223372036854775807"})
+    public long parallelismThreshold;
+
+    @Param({"streamed", "mapped", "lazy", "snapshot"})
+    public String mode;
+
+    private File file;
+    private Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Corpus.file(corpus);
+        if (mode.equals("snapshot")) {
+            snapshot = Files.createTempFile("asm-benchmark", ".snapshot");
+            snapshot.toFile().deleteOnExit();
+            //Restored snapshots are lazy, so they are compared against lazy builds.
+            new JarArchive(file).snapshot(snapshot).lazy().build();
+        }
+    }
+
+    @Benchmark
+    public JarArchive build() throws IOException {
+        JarArchive archive = new JarArchive(file);
+        if (mode.equals("mapped")) {
+            archive.mapped();
+        } else if (mode.equals("lazy")) {
+            archive.mapped().lazy();
+        } else if (mode.equals("snapshot")) {
+            archive.snapshot(snapshot).lazy();
+        }
+        archive.build(parallelismThreshold);
+        return archive;
+    }
+}
@@ -0,0 +1,28 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.visitor.flow.ControlFlowGraph;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ControlFlowGraph#create(ClassMethod)} over every method of the corpus.
+ *
+ * @author Christopher Carpenter
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControlFlowBenchmark {
+
+    @Benchmark
+    public void create(ArchiveState state, Blackhole blackhole) {
+        for (ClassMethod method : state.methods) {
+            blackhole.consume(ControlFlowGraph.create(method));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.disassemble.asm.benchmark;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * The archives the benchmarks are run against.
+ * <p>
+ * {@code sample} is the SampleArchive.jar used by the tests, located through the {@code asm.benchmark.jar} property.
+ * {@code synthetic} is built from the sample by copying every class {@code asm.benchmark.copies} times into its own
+ * package, so that it has the same shape as the sample at a larger scale.
+ *
+ * @author Christopher Carpenter
+ */
+public final class Corpus {
+
+    public static final String SAMPLE = "sample";
+    public static final String SYNTHETIC = "synthetic";
+
+    private static final File SAMPLE_JAR = new File(System.getProperty("asm.benchmark.jar",
+            "../src/test/resources/SampleArchive.jar"));
+    private static final int COPIES = Integer.getInteger("asm.benchmark.copies", 10);
+
+    private Corpus() {
+    }
+
+    /**
+     * Gets the file for the given corpus, generating the synthetic corpus if it does not exist yet.
+     *
+     * @param corpus The corpus name, either {@link #SAMPLE} or {@link #SYNTHETIC}.
+     * @return The file for the given corpus.
+     * @throws IOException if the sample cannot be read or the synthetic corpus cannot be written.
+     */
+    public static File file(String corpus) throws IOException {
+        if (!SAMPLE_JAR.isFile()) {
+            throw new IOException("SampleArchive.jar not found at " + SAMPLE_JAR.getAbsolutePath() +
+                    ", set -Dasm.benchmark.jar to its location.");
+        }
+        switch (corpus) {
+            case SAMPLE:
+                return SAMPLE_JAR;
+            case SYNTHETIC:
+                File synthetic = new File(System.getProperty("java.io.tmpdir"),
+                        "asm-framework-synthetic-" + COPIES + ".jar");
+                if (!synthetic.isFile() || synthetic.lastModified() < SAMPLE_JAR.lastModified()) {
+                    generate(SAMPLE_JAR, synthetic, COPIES);
+                }
+                return synthetic;
+            default:
+                throw new IllegalArgumentException("Unknown corpus: " + corpus);
+        }
+    }
+
+    private static void generate(File sample, File destination, int copies) throws IOException {
+        List<byte[]> classes = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        try (JarFile jar = new JarFile(sample)) {
+            for (JarEntry entry : Collections.list(jar.entries())) {
+                if (entry.getName().endsWith(".class")) {
+                    try (InputStream in = jar.getInputStream(entry)) {
+                        byte[] bytes = read(in);
+                        classes.add(bytes);
+                        names.add(new ClassReader(bytes).getClassName());
+                    }
+                }
+            }
+        }
+        File temp = File.createTempFile("asm-framework-synthetic", ".jar", destination.getParentFile());
+        try (JarOutputStream output = new JarOutputStream(new FileOutputStream(temp))) {
+            for (int copy = 0; copy < copies; copy++) {
+                String prefix = "copy" + copy + "/";
+                Remapper remapper = new Remapper() {
+                    @Override
+                    public String map(String typeName) {
+                        return (names.contains(typeName) ? prefix + typeName : typeName);
+                    }
+                };
+                for (byte[] bytes : classes) {
+                    ClassReader reader = new ClassReader(bytes);
+                    ClassWriter writer = new ClassWriter(0);
+                    reader.accept(new ClassRemapper(writer, remapper), 0);
+                    output.putNextEntry(new JarEntry(prefix + reader.getClassName() + ".class"));
+                    output.write(writer.toByteArray());
+                    output.closeEntry();
+                }
+            }
+        }
+        if (!temp.renameTo(destination)) {
+            destination.delete();
+            if (!temp.renameTo(destination)) {
+                throw new IOException("Failed to move the synthetic corpus to " + destination);
+            }
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,31 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.visitor.ComplexityVisitor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ClassMethod#accept(io.disassemble.asm.ClassMethodVisitor)} over every method of the corpus,
+ * using a {@link ComplexityVisitor} so that nearly every instruction reaches a visit method.
+ *
+ * @author Christopher Carpenter
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Benchmark
+    public void complexity(ArchiveState state, Blackhole blackhole) {
+        for (ClassMethod method : state.methods) {
+            ComplexityVisitor visitor = new ComplexityVisitor();
+            method.accept(visitor);
+            blackhole.consume(visitor.complexity());
+        }
+    }
+}
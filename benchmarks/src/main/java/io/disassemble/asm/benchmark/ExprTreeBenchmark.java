@@ -0,0 +1,63 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.visitor.expr.ExprTreeBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ExprTreeBuilder#build(ClassMethod)} over every method of the corpus, and
+ * {@link ExprTreeBuilder#buildAll(ConcurrentMap)} over the whole archive.
+ * <p>
+ * Classes containing a method the builder fails on are left out, so that both benchmarks measure the same classes.
+ *
+ * @author Christopher Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExprTreeBenchmark {
+
+    private final List<ClassMethod> methods = new ArrayList<>();
+    private final ConcurrentMap<String, ClassFactory> classes = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setup(ArchiveState state) {
+        state.archive.classes().forEach((name, factory) -> {
+            try {
+                for (ClassMethod method : factory.methods) {
+                    ExprTreeBuilder.build(method);
+                }
+                classes.put(name, factory);
+            } catch (RuntimeException ignored) {
+            }
+        });
+        for (ClassMethod method : state.methods) {
+            if (classes.containsKey(method.owner.name())) {
+                methods.add(method);
+            }
+        }
+    }
+
+    @Benchmark
+    public void build(Blackhole blackhole) {
+        for (ClassMethod method : methods) {
+            blackhole.consume(ExprTreeBuilder.build(method));
+        }
+    }
+
+    @Benchmark
+    public Object buildAll() {
+        return ExprTreeBuilder.buildAll(classes);
+    }
+}
@@ -0,0 +1,49 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.visitor.flow.ControlFlowGraph;
+import io.disassemble.asm.visitor.flow.ExecutionPath;
+import io.disassemble.asm.visitor.flow.FlowQuery;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ExecutionPath#query(FlowQuery)} over every method of the corpus, with the graphs built
+ * beforehand so only the query itself is measured.
+ *
+ * @author Christopher Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlowQueryBenchmark {
+
+    private final List<ExecutionPath> paths = new ArrayList<>();
+    private FlowQuery query;
+
+    @Setup
+    public void setup(ArchiveState state) {
+        query = new FlowQuery()
+                .stmtLoad()
+                .stmtGetField(null, null)
+                .stmtIf()
+                .stmtLoad();
+        for (ClassMethod method : state.methods) {
+            paths.add(ControlFlowGraph.create(method).execution());
+        }
+    }
+
+    @Benchmark
+    public void query(Blackhole blackhole) {
+        for (ExecutionPath path : paths) {
+            blackhole.consume(path.query(query));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.visitor.flow.ControlFlowGraph;
+import io.disassemble.asm.visitor.flow.FlowQuery;
+import io.disassemble.asm.visitor.flow.FlowQueryEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures running many FlowQueries over every method of the corpus, either one query at a time through
+ * {@link FlowQuery#find(ControlFlowGraph)} or all at once through a {@link FlowQueryEngine}.
+ *
+ * @author Christopher Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlowQueryEngineBenchmark {
+
+    @Param({"find", "engine"})
+    public String mode;
+
+    @Param({"8", "64"})
+    public int queryCount;
+
+    private final List<ControlFlowGraph> graphs = new ArrayList<>();
+
+    @Setup
+    public void setup(ArchiveState state) {
+        for (ClassMethod method : state.methods) {
+            method.cfg().ifPresent(graphs::add);
+        }
+    }
+
+    private List<FlowQuery> queries() {
+        List<FlowQuery> queries = new ArrayList<>();
+        for (int i = 0; queries.size() < queryCount; i++) {
+            int dist = 2 + (i / 8);
+            switch (i % 8) {
+                case 0:
+                    queries.add(new FlowQuery().stmtLoad().stmtGetField(null, null).dist(dist).continuous());
+                    break;
+                case 1:
+                    queries.add(new FlowQuery().stmtLoad().stmtPutField(null, null).dist(dist).continuous());
+                    break;
+                case 2:
+                    queries.add(new FlowQuery().stmtGetStatic(null, null).stmtInvokeVirtual(null, null).dist(dist)
+                            .continuous());
+                    break;
+                case 3:
+                    queries.add(new FlowQuery().stmtIf().branchTrue().stmtReturn().continuous());
+                    break;
+                case 4:
+                    queries.add(new FlowQuery().stmtPush().stmtMultiply().dist(dist).continuous());
+                    break;
+                case 5:
+                    queries.add(new FlowQuery().stmtType().stmtInvokeSpecial(null, null).dist(dist).continuous());
+                    break;
+                case 6:
+                    queries.add(new FlowQuery().stmtConstant().stmtInvokeStatic(null, null).dist(dist).continuous());
+                    break;
+                default:
+                    queries.add(new FlowQuery().stmtStore().stmtLoad().dist(dist).continuous());
+                    break;
+            }
+        }
+        return queries;
+    }
+
+    @Benchmark
+    public void query(Blackhole blackhole) {
+        List<FlowQuery> queries = queries();
+        if (mode.equals("engine")) {
+            FlowQueryEngine engine = new FlowQueryEngine();
+            for (FlowQuery query : queries) {
+                engine.add(query, blackhole::consume);
+            }
+            for (ControlFlowGraph graph : graphs) {
+                engine.find(graph);
+            }
+        } else {
+            for (ControlFlowGraph graph : graphs) {
+                for (FlowQuery query : queries) {
+                    query.find(graph).ifPresent(blackhole::consume);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.ClassMethod;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures simple and advanced nano-pattern detection over every method of the corpus, bypassing the
+ * per-method cache.
+ *
+ * @author Christopher Carpenter
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NanoPatternBenchmark {
+
+    @Benchmark
+    public void simple(ArchiveState state, Blackhole blackhole) {
+        for (ClassMethod method : state.methods) {
+            blackhole.consume(method.findSimpleNanoPatterns(false));
+        }
+    }
+
+    @Benchmark
+    public void advanced(ArchiveState state, Blackhole blackhole) {
+        for (ClassMethod method : state.methods) {
+            blackhole.consume(method.findAdvancedNanoPatterns(false));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.disassemble.asm.benchmark;
+
+import io.disassemble.asm.JarArchive;
+import org.objectweb.asm.ClassWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JarArchive#write(File, int, java.util.function.Function, long)} with and without parallel
+ * serialization, for archives that rebuild every class and for copy-through archives.
+ *
+ * @author Christopher Carpenter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param({Corpus.SAMPLE, Corpus.SYNTHETIC})
+    public String corpus;
+
+    @Param({"1", "9223372036854775807"})
+    public long parallelismThreshold;
+
+    @Param({"false", "true"})
+    public boolean copyThrough;
+
+    private JarArchive archive;
+    private File output;
+
+    @Setup
+    public void setup() throws IOException {
+        archive = new JarArchive(Corpus.file(corpus));
+        if (copyThrough) {
+            archive.copyThrough();
+        }
+        archive.build();
+        output = File.createTempFile("asm-framework-write", ".jar");
+    }
+
+    @TearDown
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    public File write() throws IOException {
+        archive.write(output, ClassWriter.COMPUTE_MAXS, x -> x, parallelismThreshold);
+        return output;
+    }
+}
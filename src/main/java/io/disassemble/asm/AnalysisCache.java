@@ -0,0 +1,326 @@
+package io.disassemble.asm;
+
+import io.disassemble.asm.util.Security;
+import io.disassemble.asm.visitor.flow.ControlFlowGraph;
+import io.disassemble.asm.visitor.flow.GraphCodec;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of method analyses, keyed by the SHA-1 of the class they were computed for.
+ * <p>
+ * Once {@link #attach(Map) attached} to a map of classes, {@link ClassMethod#cfg()},
+ * {@link ClassMethod#findSimpleNanoPatterns()} and {@link ClassMethod#findAdvancedNanoPatterns()} are filled
+ * from the cache before computing anything, and computed results are added to it. Results are only read or
+ * added for methods of classes that kept their original bytes (see {@link JarArchive#copyThrough()} and
+ * {@link JarArchive#lazy()}), and only while neither the method nor its class has been modified.
+ * <p>
+ * The cache file is memory-mapped when opened and entries are only decoded when they're looked up.
+ * Added results are kept in memory until {@link #save()} rewrites the file.
+ *
+ * @author Christopher Carpenter
+ */
+public class AnalysisCache implements Closeable {
+
+    private static final int MAGIC = 0x41534d43;
+    private static final int VERSION = 1;
+
+    static final char CFG = 'c', SIMPLE_NANO_PATTERNS = 's', ADVANCED_NANO_PATTERNS = 'a';
+
+    private final Path file;
+    private final ConcurrentHashMap<String, byte[]> added = new ConcurrentHashMap<>();
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+    private final Object lock = new Object();
+    private volatile Index stored = Index.EMPTY;
+
+    private AnalysisCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the cache stored in the given file, or an empty cache if the file does not exist or was written
+     * by an incompatible version.
+     *
+     * @param file The file the cache is stored in.
+     * @return The cache stored in the given file.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    public static AnalysisCache open(Path file) throws IOException {
+        AnalysisCache cache = new AnalysisCache(file);
+        cache.stored = Index.read(file);
+        return cache;
+    }
+
+    /**
+     * Attaches this cache to every method of the given classes, so their analyses are read from and added
+     * to this cache.
+     *
+     * @param classes The classes to attach this cache to.
+     * @return The amount of methods this cache was attached to.
+     */
+    public int attach(Map<String, ClassFactory> classes) {
+        int attached = 0;
+        for (ClassFactory factory : classes.values()) {
+            Source source = new Source(factory);
+            for (ClassMethod method : factory.methods) {
+                method.analysis = source;
+                attached++;
+            }
+        }
+        return attached;
+    }
+
+    /**
+     * Gets the amount of entries in this cache, including the ones that have not been saved yet.
+     *
+     * @return The amount of entries in this cache.
+     */
+    public int size() {
+        Index stored = this.stored;
+        int size = stored.entries.size();
+        for (String key : added.keySet()) {
+            if (!stored.entries.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes every entry of this cache back to its file.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void save() throws IOException {
+        save(false);
+    }
+
+    /**
+     * Writes the entries of this cache back to its file. The file is replaced once it has been completely
+     * written, so it's never left partially written.
+     * <p>
+     * This is safe to call while methods are still being analyzed. The entries are copied before the file is
+     * written, and results added meanwhile are kept for the next save.
+     *
+     * @param prune true to only keep the entries that were read or added since this cache was opened.
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void save(boolean prune) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<>();
+        synchronized (lock) {
+            Index stored = this.stored;
+            for (Map.Entry<String, long[]> entry : stored.entries.entrySet()) {
+                if (!prune || used.contains(entry.getKey())) {
+                    entries.put(entry.getKey(), read(stored.buffer, entry.getValue()));
+                }
+            }
+            entries.putAll(added);
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                    byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(key.length);
+                    out.write(key);
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Index saved = Index.read(file);
+        synchronized (lock) {
+            this.stored = saved;
+            added.keySet().removeAll(entries.keySet());
+        }
+    }
+
+    private static byte[] read(ByteBuffer buffer, long[] location) {
+        byte[] bytes = new byte[(int) location[1]];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) location[0]);
+        slice.get(bytes);
+        return bytes;
+    }
+
+    private byte[] lookup(String key) {
+        byte[] bytes = added.get(key);
+        if (bytes == null) {
+            Index stored = this.stored;
+            long[] location = stored.entries.get(key);
+            if (location == null) {
+                return null;
+            }
+            bytes = read(stored.buffer, location);
+        }
+        used.add(key);
+        return bytes;
+    }
+
+    private void store(String key, byte[] bytes) {
+        synchronized (lock) {
+            if (!stored.entries.containsKey(key)) {
+                added.putIfAbsent(key, bytes);
+            }
+            used.add(key);
+        }
+    }
+
+    /**
+     * Releases the mapping of the cache file. Entries that were not saved are discarded.
+     */
+    @Override
+    public synchronized void close() {
+        synchronized (lock) {
+            stored = Index.EMPTY;
+            added.clear();
+            used.clear();
+        }
+    }
+
+    /**
+     * The location of every entry within a mapped cache file.
+     */
+    private static class Index {
+
+        private static final Index EMPTY = new Index(null, Collections.emptyMap());
+
+        private final ByteBuffer buffer;
+        private final Map<String, long[]> entries;
+
+        private Index(ByteBuffer buffer, Map<String, long[]> entries) {
+            this.buffer = buffer;
+            this.entries = entries;
+        }
+
+        private static Index read(Path file) throws IOException {
+            if (!Files.isRegularFile(file) || Files.size(file) < 12) {
+                return EMPTY;
+            }
+            MappedByteBuffer mapped;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            ByteBuffer buffer = mapped.duplicate();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return EMPTY;
+            }
+            int size = buffer.getInt();
+            Map<String, long[]> entries = new HashMap<>(size * 2);
+            try {
+                for (int i = 0; i < size; i++) {
+                    byte[] key = new byte[buffer.getShort() & 0xFFFF];
+                    buffer.get(key);
+                    int length = buffer.getInt();
+                    entries.put(new String(key, StandardCharsets.UTF_8), new long[]{buffer.position(), length});
+                    buffer.position(buffer.position() + length);
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed analysis cache: " + file, e);
+            }
+            return new Index(mapped, entries);
+        }
+    }
+
+    /**
+     * The cache entries of a single class, hashed the first time one of its methods looks up an analysis.
+     */
+    class Source {
+
+        private final ClassFactory factory;
+        private volatile String hash;
+
+        private Source(ClassFactory factory) {
+            this.factory = factory;
+        }
+
+        private String key(ClassMethod method, char kind) {
+            if (method.owner != factory || factory.bytes() == null || method.dirty() || factory.structureDirty()) {
+                return null;
+            }
+            String hash = this.hash;
+            if (hash == null) {
+                this.hash = hash = Security.b64SHA1(factory.bytes());
+            }
+            return hash + ' ' + method.method.name + method.method.desc + ' ' + kind;
+        }
+
+        ControlFlowGraph cfg(ClassMethod method) {
+            String key = key(method, CFG);
+            byte[] bytes = (key != null ? lookup(key) : null);
+            if (bytes != null) {
+                try {
+                    return GraphCodec.decode(method, new DataInputStream(new ByteArrayInputStream(bytes)));
+                } catch (IOException | RuntimeException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        void store(ClassMethod method, ControlFlowGraph cfg) {
+            String key = key(method, CFG);
+            if (key != null && cfg != null) {
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    GraphCodec.encode(cfg, new DataOutputStream(out));
+                    AnalysisCache.this.store(key, out.toByteArray());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        List<String> patterns(ClassMethod method, char kind) {
+            String key = key(method, kind);
+            byte[] bytes = (key != null ? lookup(key) : null);
+            if (bytes != null) {
+                try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+                    List<String> patterns = new ArrayList<>(in.readUnsignedShort());
+                    while (in.available() > 0) {
+                        patterns.add(in.readUTF());
+                    }
+                    return patterns;
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        void store(ClassMethod method, char kind, List<String> patterns) {
+            String key = key(method, kind);
+            if (key != null) {
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    DataOutputStream out = new DataOutputStream(bytes);
+                    out.writeShort(patterns.size());
+                    for (String pattern : patterns) {
+                        out.writeUTF(pattern);
+                    }
+                    AnalysisCache.this.store(key, bytes.toByteArray());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
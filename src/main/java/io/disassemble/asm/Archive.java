@@ -7,13 +7,52 @@ import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author Christopher Carpenter
  */
 public abstract class Archive {
+    private static final Set<Archive> LOADED = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
     protected boolean built;
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile ReferenceIndex references;
+    private volatile MemberRegistry members;
+    private volatile NanoPatternIndex nanoPatterns;
+    private ClassHierarchy hierarchy;
+    private long hierarchyModifications;
+    private FactoryHandleMap handles;
+    private SymbolTable symbols;
+
+    {
+        LOADED.add(this);
+    }
+
+    /**
+     * Gets every Archive that's still reachable, for the deprecated lookups that aren't tied to an Archive.
+     *
+     * @return The reachable Archives.
+     */
+    static List<Archive> loaded() {
+        synchronized (LOADED) {
+            return new ArrayList<>(LOADED);
+        }
+    }
 
     /**
      * Completely reads an open input stream and then closes it.
@@ -76,10 +115,162 @@ public abstract class Archive {
 
     public abstract ConcurrentMap<String, ClassFactory> classes();
 
+    /**
+     * Gets the handles of the loaded classes, which can be queried for a class' header without building
+     * its ClassFactory.
+     * <p>
+     * By default this is a view of {@link #classes()} that wraps each ClassFactory in a handle. Archives that
+     * can load classes without building their ClassFactory, such as a {@link JarArchive#lazy() lazy JarArchive},
+     * override this to return their own handles.
+     *
+     * @return The handles of the loaded classes.
+     */
+    public ConcurrentMap<String, ClassHandle> handles() {
+        ConcurrentMap<String, ClassFactory> classes = classes();
+        synchronized (this) {
+            if (handles == null || handles.classes != classes) {
+                handles = new FactoryHandleMap(classes, this);
+            }
+            return handles;
+        }
+    }
+
     public abstract ConcurrentMap<String, byte[]> resources();
 
+    /**
+     * Gets the table the class names, member names and descs of the loaded classes are interned into. Symbols
+     * read from the same Archive are shared instances, so they can be compared by identity.
+     *
+     * <p>
+     * By default this is an empty table that is only filled by the Archive's subclass, classes are then not
+     * interned as they're read.
+     *
+     * @return The table the symbols of the loaded classes are interned into.
+     */
+    public synchronized SymbolTable symbols() {
+        if (symbols == null) {
+            symbols = new SymbolTable();
+        }
+        return symbols;
+    }
+
     public abstract long build() throws IOException;
 
+    /**
+     * Notes that the given class or one of its members was modified, or that the class was added to this Archive,
+     * so that the indexes of this Archive re-index that class before their next query.
+     *
+     * @param factory The class that was modified.
+     */
+    void modified(ClassFactory factory) {
+        modified(factory, true);
+    }
+
+    /**
+     * Notes that the given class was removed from this Archive, or that its ClassFactory was released, so that
+     * the indexes of this Archive drop that class before their next query.
+     *
+     * @param factory The class that was removed.
+     */
+    void removed(ClassFactory factory) {
+        modified(factory, false);
+    }
+
+    /**
+     * Notes that the given handle was removed from this Archive. A handle that was never inflated is not inflated
+     * for this, as no index has seen its factory, but lookups that only read its header are still dropped.
+     *
+     * @param handle The handle that was removed.
+     */
+    void removed(ClassHandle handle) {
+        if (handle.inflated()) {
+            removed(handle.factory());
+        } else {
+            modifications.incrementAndGet();
+        }
+    }
+
+    private void modified(ClassFactory factory, boolean present) {
+        modifications.incrementAndGet();
+        ReferenceIndex references = this.references;
+        if (references != null) {
+            references.modified(factory, present);
+        }
+        NanoPatternIndex nanoPatterns = this.nanoPatterns;
+        if (nanoPatterns != null) {
+            nanoPatterns.modified(factory, present);
+        }
+    }
+
+    /**
+     * Gets the amount of times a class of this Archive was modified, added or removed.
+     *
+     * @return The amount of times a class of this Archive was modified, added or removed.
+     */
+    long modifications() {
+        return modifications.get();
+    }
+
+    /**
+     * Gets the index of references between the loaded classes, building it on the first call.
+     *
+     * @return The index of references between the loaded classes.
+     */
+    public synchronized ReferenceIndex references() {
+        if (!built()) {
+            throw new IllegalStateException("The Archive must be built before its references can be indexed.");
+        }
+        if (references == null) {
+            references = new ReferenceIndex(this);
+        }
+        return references;
+    }
+
+    /**
+     * Gets the index of the nano-patterns used by the loaded methods, building it on the first call.
+     *
+     * @return The index of the nano-patterns used by the loaded methods.
+     */
+    public synchronized NanoPatternIndex nanoPatterns() {
+        if (!built()) {
+            throw new IllegalStateException("The Archive must be built before its nano-patterns can be indexed.");
+        }
+        if (nanoPatterns == null) {
+            nanoPatterns = new NanoPatternIndex(this);
+        }
+        return nanoPatterns;
+    }
+
+    /**
+     * Gets the hierarchy of the loaded classes, shared by the writers of this Archive. It's built again once a
+     * class of this Archive is modified, added or removed.
+     *
+     * @return The hierarchy of the loaded classes.
+     */
+    synchronized ClassHierarchy hierarchy() {
+        long current = modifications();
+        if (hierarchy == null || hierarchyModifications != current) {
+            hierarchy = new ClassHierarchy(this);
+            hierarchyModifications = current;
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Gets the registry resolving member references to the loaded classes, creating it on the first call.
+     *
+     * @return The registry resolving member references to the loaded classes.
+     */
+    public synchronized MemberRegistry members() {
+        if (!built()) {
+            throw new IllegalStateException("The Archive must be built before its members can be resolved.");
+        }
+        if (members == null) {
+            members = new MemberRegistry(this);
+        }
+        return members;
+    }
+
     /**
      * Dispatches the given visitor to all the loaded classes.
      *
@@ -111,6 +302,151 @@ public abstract class Archive {
         }
     }
 
+    /**
+     * Dispatches visitors to all the loaded classes in parallel, giving each task its own visitor.
+     * <p>
+     * The classes are split into ranges, and each range is visited by a visitor of its own on a single thread.
+     * Once every class has been visited, the result of each task's visitor is taken and the results are combined
+     * through the given reduction, in the order of the ranges.
+     *
+     * @param visitors             The supplier creating the visitor of each task.
+     * @param result               The function taking the result of a task's visitor.
+     * @param reduction            The function combining the results of two tasks.
+     * @param parallelismThreshold The amount of classes required before they are visited in parallel.
+     * @param <V>                  The type of visitor.
+     * @param <R>                  The type of result.
+     * @return The combined results of every task, or an empty Optional if there were no classes.
+     */
+    public <V extends ClassFactoryVisitor, R> Optional<R> dispatchClasses(Supplier<V> visitors,
+                                                                         Function<V, R> result,
+                                                                         BinaryOperator<R> reduction,
+                                                                         long parallelismThreshold) {
+        return dispatchParallel(visitors, (visitor, factory) -> {
+            factory.accept(visitor);
+            return true;
+        }, result, reduction, parallelismThreshold);
+    }
+
+    /**
+     * Dispatches visitors to all the loaded methods in parallel, giving each task its own visitor.
+     * <p>
+     * The classes are split into ranges, and the methods of each range are visited by a visitor of its own on a
+     * single thread. Once a visitor {@link ClassMethodVisitor#lock() locks} itself, the other tasks stop before
+     * their next method, the same way {@link #dispatch(ClassMethodVisitor)} stops. The result of each task's visitor
+     * is then taken and the results are combined through the given reduction, in the order of the ranges.
+     *
+     * @param visitors             The supplier creating the visitor of each task.
+     * @param result               The function taking the result of a task's visitor.
+     * @param reduction            The function combining the results of two tasks.
+     * @param parallelismThreshold The amount of classes required before they are visited in parallel.
+     * @param <V>                  The type of visitor.
+     * @param <R>                  The type of result.
+     * @return The combined results of every task, or an empty Optional if no methods were visited.
+     */
+    public <V extends ClassMethodVisitor, R> Optional<R> dispatchMethods(Supplier<V> visitors,
+                                                                        Function<V, R> result,
+                                                                        BinaryOperator<R> reduction,
+                                                                        long parallelismThreshold) {
+        AtomicBoolean stopped = new AtomicBoolean();
+        return dispatchParallel(visitors, (visitor, factory) -> {
+            for (ClassMethod method : factory.methods) {
+                if (stopped.get()) {
+                    return false;
+                }
+                method.accept(visitor);
+                if (visitor.locked()) {
+                    stopped.set(true);
+                    return false;
+                }
+            }
+            return true;
+        }, result, reduction, parallelismThreshold);
+    }
+
+    private <V, R> Optional<R> dispatchParallel(Supplier<V> visitors, BiPredicate<V, ClassFactory> visit,
+                                                Function<V, R> result, BinaryOperator<R> reduction,
+                                                long parallelismThreshold) {
+        if (!built()) {
+            throw new IllegalStateException("The JarArchive must be built before visitors can be dispatched.");
+        }
+        ClassHandle[] handles = handles().values().toArray(new ClassHandle[0]);
+        DispatchTask<V, R> task = new DispatchTask<>(handles, 0, handles.length, visitors, visit, result, reduction,
+                new AtomicBoolean());
+        if (handles.length < parallelismThreshold) {
+            return task.visit();
+        }
+        task.split = Math.max(1, handles.length / (ForkJoinPool.getCommonPoolParallelism() << 2));
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Visits a range of classes with a visitor of its own, splitting the range into subtasks while it's larger than
+     * {@link #split}. The results of both halves of a split range are combined through the reduction, so visitors are
+     * never shared between tasks, even when a task runs on a thread that is already visiting another range.
+     */
+    private static class DispatchTask<V, R> extends RecursiveTask<Optional<R>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ClassHandle[] handles;
+        private final int start, end;
+        private final Supplier<V> visitors;
+        private final BiPredicate<V, ClassFactory> visit;
+        private final Function<V, R> result;
+        private final BinaryOperator<R> reduction;
+        private final AtomicBoolean stopped;
+        private int split = Integer.MAX_VALUE;
+
+        private DispatchTask(ClassHandle[] handles, int start, int end, Supplier<V> visitors,
+                             BiPredicate<V, ClassFactory> visit, Function<V, R> result, BinaryOperator<R> reduction,
+                             AtomicBoolean stopped) {
+            this.handles = handles;
+            this.start = start;
+            this.end = end;
+            this.visitors = visitors;
+            this.visit = visit;
+            this.result = result;
+            this.reduction = reduction;
+            this.stopped = stopped;
+        }
+
+        private DispatchTask<V, R> subtask(int start, int end) {
+            DispatchTask<V, R> task = new DispatchTask<>(handles, start, end, visitors, visit, result, reduction,
+                    stopped);
+            task.split = split;
+            return task;
+        }
+
+        @Override
+        protected Optional<R> compute() {
+            if (end - start <= split) {
+                return visit();
+            }
+            int middle = (start + end) >>> 1;
+            DispatchTask<V, R> right = subtask(middle, end);
+            right.fork();
+            Optional<R> left = subtask(start, middle).compute();
+            Optional<R> joined = right.join();
+            if (!left.isPresent()) {
+                return joined;
+            }
+            return (joined.isPresent() ? Optional.of(reduction.apply(left.get(), joined.get())) : left);
+        }
+
+        private Optional<R> visit() {
+            V visitor = null;
+            for (int i = start; i < end && !stopped.get(); i++) {
+                if (visitor == null) {
+                    visitor = visitors.get();
+                }
+                if (!visit.test(visitor, handles[i].factory())) {
+                    stopped.set(true);
+                }
+            }
+            return (visitor != null ? Optional.of(result.apply(visitor)) : Optional.empty());
+        }
+    }
+
     public abstract void write() throws IOException;
 
     /**
@@ -119,6 +455,12 @@ public abstract class Archive {
     public void reset() {
         classes().clear();
         resources().clear();
+        synchronized (this) {
+            references = null;
+            members = null;
+            nanoPatterns = null;
+            hierarchy = null;
+        }
         built = false;
     }
 
@@ -0,0 +1,269 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.ClassWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A compact, versioned image of a built Archive that can be memory-mapped to restore the archive without
+ * reading its jar.
+ * <p>
+ * A snapshot holds a table of every distinct class and resource name, the pre-split header of each class
+ * (name, super name, interfaces and access) referencing that table, and the uncompressed class files and
+ * resources. Classes are sorted by name. Restoring a snapshot only decodes the tables, class files are
+ * copied out of the mapping the first time their ClassFactory is built.
+ * <p>
+ * The length and modification time of the jar the snapshot was written for are stored with it,
+ * see {@link #current(File)}.
+ *
+ * @author Christopher Carpenter
+ */
+public class ArchiveSnapshot {
+
+    private static final int MAGIC = 0x41534d53;
+    private static final int VERSION = 1;
+
+    private final long sourceLength, sourceModified;
+    private final Map<String, ClassHandle> handles;
+    private final Map<String, ByteBuffer> resources;
+
+    private ArchiveSnapshot(long sourceLength, long sourceModified, Map<String, ClassHandle> handles,
+                            Map<String, ByteBuffer> resources) {
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.handles = handles;
+        this.resources = resources;
+    }
+
+    /**
+     * Writes a snapshot of the given archive. Classes that were modified are written from their ClassNode, using
+     * the ClassWriter flag COMPUTE_MAXS.
+     *
+     * @param archive The archive to write a snapshot of.
+     * @param source  The jar the archive was built from, or null if it has none.
+     * @param file    The file to write the snapshot to.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Archive archive, File source, Path file) throws IOException {
+        List<ClassHandle> classes = new ArrayList<>(archive.handles().values());
+        classes.sort(Comparator.comparing(ClassHandle::name));
+        Map<String, byte[]> resources = new TreeMap<>(archive.resources());
+        ClassHierarchy hierarchy = new ClassHierarchy(archive);
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        List<byte[]> data = new ArrayList<>(classes.size() + resources.size());
+        for (ClassHandle handle : classes) {
+            intern(strings, handle.name());
+            intern(strings, handle.superName());
+            for (String iface : handle.interfaces()) {
+                intern(strings, iface);
+            }
+            data.add(bytes(handle, hierarchy));
+        }
+        for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            intern(strings, resource.getKey());
+            data.add(resource.getValue());
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(source != null ? source.length() : -1);
+                out.writeLong(source != null ? source.lastModified() : -1);
+                out.writeInt(strings.size());
+                for (String string : strings.keySet()) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(bytes.length);
+                    out.write(bytes);
+                }
+                long offset = 0;
+                int index = 0;
+                out.writeInt(classes.size());
+                for (ClassHandle handle : classes) {
+                    out.writeInt(strings.get(handle.name()));
+                    out.writeInt(handle.superName() != null ? strings.get(handle.superName()) : -1);
+                    out.writeInt(handle.access());
+                    out.writeShort(handle.interfaces().size());
+                    for (String iface : handle.interfaces()) {
+                        out.writeInt(strings.get(iface));
+                    }
+                    out.writeLong(offset);
+                    out.writeInt(data.get(index).length);
+                    offset += data.get(index++).length;
+                }
+                out.writeInt(resources.size());
+                for (String name : resources.keySet()) {
+                    out.writeInt(strings.get(name));
+                    out.writeLong(offset);
+                    out.writeInt(data.get(index).length);
+                    offset += data.get(index++).length;
+                }
+                for (byte[] bytes : data) {
+                    out.write(bytes);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+
+    private static byte[] bytes(ClassHandle handle, ClassHierarchy hierarchy) {
+        if (!handle.inflated() || !handle.factory().dirty()) {
+            byte[] bytes = handle.bytes();
+            if (bytes != null) {
+                return bytes;
+            }
+        }
+        ClassWriter writer = new CustomClassWriter(hierarchy, ClassWriter.COMPUTE_MAXS);
+        handle.factory().node.accept(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Maps the given snapshot and decodes its tables.
+     *
+     * @param file The snapshot file.
+     * @return The snapshot, or null if the file does not exist or was written by an incompatible version.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static ArchiveSnapshot read(Path file) throws IOException {
+        return read(file, null);
+    }
+
+    /**
+     * Maps the given snapshot and decodes its tables, interning its names into the given table.
+     *
+     * @param file    The snapshot file.
+     * @param symbols The table to intern the snapshot's names and restored classes into, or null.
+     * @return The snapshot, or null if the file does not exist or was written by an incompatible version.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    @SuppressWarnings("unchecked")
+    public static ArchiveSnapshot read(Path file, SymbolTable symbols) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) > Integer.MAX_VALUE) {
+            return null;
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.duplicate();
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long sourceLength = buffer.getLong();
+            long sourceModified = buffer.getLong();
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                if (symbols != null) {
+                    strings[i] = symbols.intern(strings[i]);
+                }
+            }
+            int classCount = buffer.getInt();
+            String[] names = new String[classCount];
+            String[] superNames = new String[classCount];
+            List<List<String>> interfaces = new ArrayList<>(classCount);
+            int[] access = new int[classCount];
+            long[] offsets = new long[classCount];
+            int[] lengths = new int[classCount];
+            for (int i = 0; i < classCount; i++) {
+                names[i] = strings[buffer.getInt()];
+                int superIndex = buffer.getInt();
+                superNames[i] = (superIndex != -1 ? strings[superIndex] : null);
+                access[i] = buffer.getInt();
+                String[] ifaces = new String[buffer.getShort() & 0xFFFF];
+                for (int j = 0; j < ifaces.length; j++) {
+                    ifaces[j] = strings[buffer.getInt()];
+                }
+                interfaces.add(Collections.unmodifiableList(Arrays.asList(ifaces)));
+                offsets[i] = buffer.getLong();
+                lengths[i] = buffer.getInt();
+            }
+            int resourceCount = buffer.getInt();
+            String[] resourceNames = new String[resourceCount];
+            long[] resourceOffsets = new long[resourceCount];
+            int[] resourceLengths = new int[resourceCount];
+            for (int i = 0; i < resourceCount; i++) {
+                resourceNames[i] = strings[buffer.getInt()];
+                resourceOffsets[i] = buffer.getLong();
+                resourceLengths[i] = buffer.getInt();
+            }
+            int dataStart = buffer.position();
+            Map<String, ClassHandle> handles = new LinkedHashMap<>(classCount * 2);
+            for (int i = 0; i < classCount; i++) {
+                handles.put(names[i], new ClassHandle(names[i], superNames[i], interfaces.get(i), access[i],
+                        slice(mapped, dataStart + offsets[i], lengths[i]), symbols));
+            }
+            Map<String, ByteBuffer> resources = new LinkedHashMap<>(resourceCount * 2);
+            for (int i = 0; i < resourceCount; i++) {
+                resources.put(resourceNames[i], slice(mapped, dataStart + resourceOffsets[i], resourceLengths[i]));
+            }
+            return new ArchiveSnapshot(sourceLength, sourceModified, handles, resources);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed archive snapshot: " + file, e);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer mapped, long offset, int length) {
+        ByteBuffer slice = mapped.duplicate();
+        slice.position((int) offset);
+        slice.limit((int) offset + length);
+        return slice.slice();
+    }
+
+    /**
+     * Checks whether this snapshot was written for the given jar, as it currently is.
+     *
+     * @param source The jar the archive is built from.
+     * @return true if the length and modification time of the given jar match the ones stored in this snapshot.
+     */
+    public boolean current(File source) {
+        return source.length() == sourceLength && source.lastModified() == sourceModified;
+    }
+
+    /**
+     * Gets the handles of the classes in this snapshot, keyed by class name.
+     *
+     * @return The handles of the classes in this snapshot.
+     */
+    public Map<String, ClassHandle> handles() {
+        return handles;
+    }
+
+    /**
+     * Gets the resources in this snapshot, keyed by entry name. Each resource is copied out of the mapping.
+     *
+     * @return The resources in this snapshot.
+     */
+    public Map<String, byte[]> resources() {
+        Map<String, byte[]> copies = new LinkedHashMap<>(resources.size() * 2);
+        resources.forEach((name, buffer) -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            copies.put(name, bytes);
+        });
+        return copies;
+    }
+}
@@ -0,0 +1,238 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Dispatches visitors to the entries of a jar as they're read, without building a whole {@link JarArchive}.
+ * <p>
+ * Entries are read in order from the jar, and each class is parsed into a ClassFactory on the common pool.
+ * At most {@link #maxInFlight(int)} entries are read ahead of the visitors, so memory doesn't grow with the size
+ * of the jar. Visitors are called on the thread running the stream, one entry at a time and in the order the
+ * entries appear in the jar: {@link ArchiveVisitor}s first, then {@link ClassFactoryVisitor}s, then
+ * {@link ClassMethodVisitor}s. Since classes are dropped once they've been visited, {@link ArchiveVisitor#archive}
+ * is null and visitors cannot look up other classes.
+ * <p>
+ * When an {@link #output(File, int) output} is set, each entry is written to it once it has been visited.
+ * Unmodified classes are copied byte-for-byte, the same way as {@link JarArchive#copyThrough()}. Signature files
+ * are dropped and the manifest is copied as it is.
+ *
+ * @author Christopher Carpenter
+ */
+public class ArchiveStream {
+
+    private final File file;
+    private final List<ArchiveVisitor> archiveVisitors = new ArrayList<>();
+    private final List<ClassFactoryVisitor> factoryVisitors = new ArrayList<>();
+    private final List<ClassMethodVisitor> methodVisitors = new ArrayList<>();
+    private int maxInFlight = ForkJoinPool.getCommonPoolParallelism() * 4;
+    private File output;
+    private int writerFlags;
+
+    /**
+     * Constructs an ArchiveStream reading the given jar.
+     *
+     * @param file The jar to read.
+     */
+    public ArchiveStream(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Adds a visitor to be given every class and resource.
+     *
+     * @param visitor The visitor to add.
+     * @return This ArchiveStream chained with the given visitor.
+     */
+    public ArchiveStream visit(ArchiveVisitor visitor) {
+        archiveVisitors.add(visitor);
+        return this;
+    }
+
+    /**
+     * Adds a visitor to be accepted by every class.
+     *
+     * @param visitor The visitor to add.
+     * @return This ArchiveStream chained with the given visitor.
+     */
+    public ArchiveStream visit(ClassFactoryVisitor visitor) {
+        factoryVisitors.add(visitor);
+        return this;
+    }
+
+    /**
+     * Adds a visitor to be dispatched to every method. A visitor that is {@link ClassMethodVisitor#lock() locked}
+     * is not dispatched to any later class.
+     *
+     * @param visitor The visitor to add.
+     * @return This ArchiveStream chained with the given visitor.
+     */
+    public ArchiveStream visit(ClassMethodVisitor visitor) {
+        methodVisitors.add(visitor);
+        return this;
+    }
+
+    /**
+     * Sets the amount of entries that can be read and parsed ahead of the visitors.
+     *
+     * @param maxInFlight The amount of entries that can be read ahead of the visitors, 1 to read one at a time.
+     * @return This ArchiveStream chained with the given limit.
+     */
+    public ArchiveStream maxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one entry must be in flight: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Sets the jar every entry is written to once it has been visited.
+     * <p>
+     * With COMPUTE_FRAMES, the headers of every class are read in a first pass over the jar so that common super
+     * classes can be resolved, see {@link ClassHierarchy}.
+     *
+     * @param destinationFile The file to write to.
+     * @param writerFlags     The ClassWriter flags to use.
+     * @return This ArchiveStream chained to write to the given file.
+     */
+    public ArchiveStream output(File destinationFile, int writerFlags) {
+        this.output = destinationFile;
+        this.writerFlags = writerFlags;
+        return this;
+    }
+
+    /**
+     * Reads the jar, dispatching the visitors to each entry and writing it to the output, if one is set.
+     *
+     * @return The amount of classes that were visited.
+     * @throws IOException If the jar cannot be read or the output cannot be written.
+     */
+    public int run() throws IOException {
+        ClassHierarchy hierarchy = new ClassHierarchy(true);
+        if (output != null && (writerFlags & ClassWriter.COMPUTE_FRAMES) != 0) {
+            readHeaders(hierarchy);
+        }
+        for (ArchiveVisitor visitor : archiveVisitors) {
+            visitor.archive = null;
+            visitor.visit();
+        }
+        int classes = 0;
+        Deque<CompletableFuture<StreamedEntry>> pending = new ArrayDeque<>(maxInFlight);
+        try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+             JarOutputStream out = (output != null ? new JarOutputStream(new FileOutputStream(output)) : null)) {
+            try {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    String name = entry.getName();
+                    byte[] bytes = read(in, entry);
+                    if (pending.size() >= maxInFlight) {
+                        classes += accept(JarArchive.join(pending.poll()), out, hierarchy);
+                    }
+                    if (name.endsWith(".class")) {
+                        pending.add(CompletableFuture.supplyAsync(() -> new StreamedEntry(name, parse(bytes), null)));
+                    } else {
+                        pending.add(CompletableFuture.completedFuture(new StreamedEntry(name, null, bytes)));
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    classes += accept(JarArchive.join(pending.poll()), out, hierarchy);
+                }
+            } finally {
+                pending.forEach(future -> future.cancel(false));
+            }
+            if (out != null) {
+                out.flush();
+            }
+        }
+        return classes;
+    }
+
+    private void readHeaders(ClassHierarchy hierarchy) throws IOException {
+        try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.getName().endsWith(".class")) {
+                    hierarchy.include(read(in, entry));
+                }
+            }
+        }
+    }
+
+    private static byte[] read(ZipInputStream in, ZipEntry entry) throws IOException {
+        long size = entry.getSize();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int) size : 4096);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static ClassFactory parse(byte[] bytes) {
+        ClassNode node = new ClassNode();
+        new ClassReader(bytes).accept(node, ClassReader.SKIP_FRAMES);
+        return new ClassFactory(node, bytes);
+    }
+
+    private int accept(StreamedEntry entry, JarOutputStream out, ClassHierarchy hierarchy) throws IOException {
+        if (entry.factory == null) {
+            for (ArchiveVisitor visitor : archiveVisitors) {
+                visitor.visitResource(entry.name, entry.bytes);
+            }
+            if (out != null && !entry.name.endsWith(".SF") && !entry.name.endsWith(".RSA")) {
+                write(out, entry.name, entry.bytes);
+            }
+            return 0;
+        }
+        ClassFactory factory = entry.factory;
+        for (ArchiveVisitor visitor : archiveVisitors) {
+            visitor.visitClassFactory(factory);
+        }
+        for (ClassFactoryVisitor visitor : factoryVisitors) {
+            factory.accept(visitor);
+        }
+        for (ClassMethodVisitor visitor : methodVisitors) {
+            if (!visitor.locked()) {
+                factory.dispatch(visitor);
+            }
+        }
+        if (out != null) {
+            write(out, factory.name() + ".class", JarArchive.serialize(factory, hierarchy, writerFlags, x -> x));
+        }
+        return 1;
+    }
+
+    private static void write(JarOutputStream out, String name, byte[] bytes) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static class StreamedEntry {
+
+        private final String name;
+        private final ClassFactory factory;
+        private final byte[] bytes;
+
+        private StreamedEntry(String name, ClassFactory factory, byte[] bytes) {
+            this.name = name;
+            this.factory = factory;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -2,10 +2,10 @@ package io.disassemble.asm;
 
 import org.objectweb.asm.tree.ClassNode;
 
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.function.Predicate;
 
 /**
@@ -18,8 +18,34 @@ public class ClassFactory {
     public ClassField[] fields;
     public ClassMethod[] methods;
 
+    private final byte[] bytes;
+    private final String originalName, originalSuperName;
+    private final int originalAccess, originalInterfaces, originalFields, originalMethods;
+    private boolean dirty;
+    private int modifications;
+    private volatile Stats stats;
+
+    Archive archive;
+
     public ClassFactory(ClassNode node) {
+        this(node, null);
+    }
+
+    /**
+     * Constructs a ClassFactory that keeps the bytes the given node was read from.
+     *
+     * @param node  The node to wrap.
+     * @param bytes The class file the node was read from, or null if it should not be kept.
+     */
+    public ClassFactory(ClassNode node, byte[] bytes) {
         this.node = node;
+        this.bytes = bytes;
+        this.originalName = node.name;
+        this.originalSuperName = node.superName;
+        this.originalAccess = node.access;
+        this.originalInterfaces = node.interfaces.size();
+        this.originalFields = node.fields.size();
+        this.originalMethods = node.methods.size();
         this.fields = new ClassField[node.fields.size()];
         for (int i = 0; i < this.fields.length; i++) {
             this.fields[i] = new ClassField(this, node.fields.get(i));
@@ -30,6 +56,108 @@ public class ClassFactory {
         }
     }
 
+    /**
+     * Gets the class file this class was read from, if it was kept.
+     *
+     * @return The class file this class was read from, or null if it was not kept.
+     */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the Archive this class was loaded into.
+     *
+     * @return The Archive this class was loaded into, or null if it's not part of an Archive.
+     */
+    public Archive archive() {
+        return archive;
+    }
+
+    /**
+     * Marks this class' header or members as modified, so it will not be copied from its original bytes.
+     * <p>
+     * Changes made through this class' setters are tracked automatically, this only needs to be called
+     * after modifying {@link #node} directly.
+     */
+    public void markDirty() {
+        dirty = true;
+        stats = null;
+        modified();
+    }
+
+    /**
+     * Notes that this class or one of its members was modified, so the Archive it was loaded into re-indexes it.
+     */
+    void modified() {
+        modifications++;
+        Archive archive = this.archive;
+        if (archive != null) {
+            archive.modified(this);
+        }
+    }
+
+    /**
+     * Gets the amount of times this class or one of its members has been marked as modified.
+     *
+     * @return The amount of times this class or one of its members has been marked as modified.
+     */
+    int modifications() {
+        return modifications;
+    }
+
+    /**
+     * Notes that the desc or access of one of this class' members was modified, so its member counts are
+     * recomputed on the next query.
+     */
+    void membersModified() {
+        stats = null;
+    }
+
+    private Stats stats() {
+        Stats stats = this.stats;
+        if (stats == null || stats.fields != fields || stats.methods != methods) {
+            this.stats = stats = new Stats(fields, methods);
+        }
+        return stats;
+    }
+
+    /**
+     * Checks whether this class' header, fields or the set of its methods have been modified since it was read.
+     *
+     * @return true if this class' structure has been modified, otherwise false.
+     */
+    public boolean structureDirty() {
+        if (dirty || node.name != originalName || node.superName != originalSuperName ||
+                node.access != originalAccess || node.interfaces.size() != originalInterfaces ||
+                node.fields.size() != originalFields || node.methods.size() != originalMethods) {
+            return true;
+        }
+        for (ClassField field : fields) {
+            if (field.dirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether anything in this class has been modified since it was read.
+     *
+     * @return true if this class or any of its methods have been modified, otherwise false.
+     */
+    public boolean dirty() {
+        if (structureDirty()) {
+            return true;
+        }
+        for (ClassMethod method : methods) {
+            if (method.dirty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Gets this class' name.
      *
@@ -54,6 +182,7 @@ public class ClassFactory {
      * @param name The name to set this class to.
      */
     public void setName(String name) {
+        markDirty();
         node.name = name;
     }
 
@@ -72,6 +201,7 @@ public class ClassFactory {
      * @param superName The name to set this class' superName to.
      */
     public void setSuperName(String superName) {
+        markDirty();
         node.superName = superName;
     }
 
@@ -109,6 +239,7 @@ public class ClassFactory {
      * @param access The access flags to set this class' access to.
      */
     public void setAccess(int access) {
+        markDirty();
         node.access = access;
     }
 
@@ -121,6 +252,7 @@ public class ClassFactory {
         if (!node.fields.contains(field.field)) {
             return;
         }
+        markDirty();
         node.fields.remove(field.field);
         ClassField[] fields = new ClassField[this.fields.length - 1];
         int idx = 0;
@@ -142,6 +274,7 @@ public class ClassFactory {
         if (!node.methods.contains(method.method)) {
             return;
         }
+        markDirty();
         node.methods.remove(method.method);
         ClassMethod[] methods = new ClassMethod[this.methods.length - 1];
         int idx = 0;
@@ -163,6 +296,7 @@ public class ClassFactory {
         if (node.methods.contains(method.method)) {
             return;
         }
+        markDirty();
         node.methods.add(method.method);
         ClassMethod[] methods = new ClassMethod[this.methods.length + 1];
         System.arraycopy(this.methods, 0, methods, 0, this.methods.length);
@@ -179,6 +313,7 @@ public class ClassFactory {
         if (node.fields.contains(field.field)) {
             return;
         }
+        markDirty();
         node.fields.add(field.field);
         ClassField[] fields = new ClassField[this.fields.length + 1];
         System.arraycopy(this.fields, 0, fields, 0, this.fields.length);
@@ -246,14 +381,7 @@ public class ClassFactory {
      * @return The amount of fields matching the given desc.
      */
     public int fieldCount(String desc, boolean includeStatic) {
-        return findFields(f -> {
-            if (f.local() || (!f.local() && includeStatic)) {
-                if (desc == null || f.desc().equals(desc)) {
-                    return true;
-                }
-            }
-            return false;
-        }).size();
+        return stats().fieldHistogram.count(desc, includeStatic);
     }
 
     /**
@@ -282,16 +410,7 @@ public class ClassFactory {
      * @return The amount of different field descs in this class.
      */
     public int fieldTypeCount(boolean includeStatic) {
-        Set<String> descs = new HashSet<>();
-        return findFields(f -> {
-            if (f.local() || (!f.local() && includeStatic)) {
-                if (!descs.contains(f.desc())) {
-                    descs.add(f.desc());
-                    return true;
-                }
-            }
-            return false;
-        }).size();
+        return stats().fieldHistogram.typeCount(includeStatic);
     }
 
     /**
@@ -310,14 +429,7 @@ public class ClassFactory {
      * @return The amount of non-jdk fields within this class.
      */
     public int abnormalFieldCount(boolean includeStatic) {
-        return findFields(f -> {
-            if (f.local() || (!f.local() && includeStatic)) {
-                if (f.desc().contains("L") && f.desc().endsWith(";") && !f.desc().contains("java")) {
-                    return true;
-                }
-            }
-            return false;
-        }).size();
+        return stats().fieldHistogram.abnormalCount(includeStatic);
     }
 
     /**
@@ -368,14 +480,7 @@ public class ClassFactory {
      * @return The amount of methods matching the given desc.
      */
     public int methodCount(String desc, boolean includeStatic) {
-        return findMethods(m -> {
-            if (m.local() || (!m.local() && includeStatic)) {
-                if (desc == null || m.desc().equals(desc)) {
-                    return true;
-                }
-            }
-            return false;
-        }).size();
+        return stats().methodHistogram.count(desc, includeStatic);
     }
 
     /**
@@ -404,16 +509,7 @@ public class ClassFactory {
      * @return The amount of different method descs in this class.
      */
     public int methodTypeCount(boolean includeStatic) {
-        Set<String> descs = new HashSet<>();
-        return findMethods(m -> {
-            if (m.local() || (!m.local() && includeStatic)) {
-                if (!descs.contains(m.desc())) {
-                    descs.add(m.desc());
-                    return true;
-                }
-            }
-            return false;
-        }).size();
+        return stats().methodHistogram.typeCount(includeStatic);
     }
 
     /**
@@ -441,4 +537,69 @@ public class ClassFactory {
         });
         return descs;
     }
-}
\ No newline at end of file
+
+    /**
+     * The member counts of a class, computed from its fields and methods the first time they're queried and
+     * recomputed once they're modified.
+     */
+    private static class Stats {
+
+        private final ClassField[] fields;
+        private final ClassMethod[] methods;
+        private final Histogram fieldHistogram = new Histogram();
+        private final Histogram methodHistogram = new Histogram();
+
+        private Stats(ClassField[] fields, ClassMethod[] methods) {
+            this.fields = fields;
+            this.methods = methods;
+            for (ClassField field : fields) {
+                fieldHistogram.add(field.desc(), field.local());
+            }
+            for (ClassMethod method : methods) {
+                methodHistogram.add(method.desc(), method.local());
+            }
+        }
+    }
+
+    /**
+     * The amount of members of each desc, split into non-static members and every member.
+     */
+    private static class Histogram {
+
+        private final Map<String, Integer> local = new HashMap<>();
+        private final Map<String, Integer> all = new HashMap<>();
+        private int localCount, allCount;
+        private int localAbnormal, allAbnormal;
+
+        private void add(String desc, boolean local) {
+            boolean abnormal = (desc.contains("L") && desc.endsWith(";") && !desc.contains("java"));
+            all.merge(desc, 1, Integer::sum);
+            allCount++;
+            if (abnormal) {
+                allAbnormal++;
+            }
+            if (local) {
+                this.local.merge(desc, 1, Integer::sum);
+                localCount++;
+                if (abnormal) {
+                    localAbnormal++;
+                }
+            }
+        }
+
+        private int count(String desc, boolean includeStatic) {
+            if (desc == null) {
+                return (includeStatic ? allCount : localCount);
+            }
+            return (includeStatic ? all : local).getOrDefault(desc, 0);
+        }
+
+        private int typeCount(boolean includeStatic) {
+            return (includeStatic ? all : local).size();
+        }
+
+        private int abnormalCount(boolean includeStatic) {
+            return (includeStatic ? allAbnormal : localAbnormal);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * An index of the structure of each class within a map of classes: its access, super class, interfaces,
+ * constructors, and the amount of fields and methods of each desc.
+ * <p>
+ * Classes are looked up through {@link Criteria}, which are checked against the indexed structure rather than
+ * the classes themselves. The criteria that rule out classes without a given super class, interface,
+ * constructor or member desc are used to look up the classes that have it, so only those are checked.
+ * <p>
+ * Field and method counts exclude static members, as {@link ClassFactory#fieldCount(String)} and
+ * {@link ClassFactory#methodCount(String)} do. The index is built once, so classes modified afterwards are not
+ * reflected until a new index is constructed.
+ *
+ * @author Christopher Carpenter
+ */
+public class ClassFeatureIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final ClassFactory[] classes;
+    private final Features[] features;
+    private final Map<String, int[]> superNames;
+    private final Map<String, int[]> interfaces;
+    private final Map<String, int[]> constructors;
+    private final Map<String, int[]> fieldDescs;
+    private final Map<String, int[]> methodDescs;
+
+    /**
+     * Constructs a ClassFeatureIndex for the given classes.
+     *
+     * @param classes The classes to index.
+     */
+    public ClassFeatureIndex(Map<String, ClassFactory> classes) {
+        this.classes = classes.values().toArray(new ClassFactory[0]);
+        this.features = new Features[this.classes.length];
+        Map<String, List<Integer>> superNames = new HashMap<>();
+        Map<String, List<Integer>> interfaces = new HashMap<>();
+        Map<String, List<Integer>> constructors = new HashMap<>();
+        Map<String, List<Integer>> fieldDescs = new HashMap<>();
+        Map<String, List<Integer>> methodDescs = new HashMap<>();
+        for (int i = 0; i < this.classes.length; i++) {
+            Features entry = features[i] = new Features(this.classes[i]);
+            if (entry.superName != null) {
+                add(superNames, entry.superName, i);
+            }
+            for (String iface : entry.interfaces) {
+                add(interfaces, iface, i);
+            }
+            for (String desc : entry.constructors) {
+                add(constructors, desc, i);
+            }
+            for (String desc : entry.fields.keySet()) {
+                add(fieldDescs, desc, i);
+            }
+            for (String desc : entry.methods.keySet()) {
+                add(methodDescs, desc, i);
+            }
+        }
+        this.superNames = postings(superNames);
+        this.interfaces = postings(interfaces);
+        this.constructors = postings(constructors);
+        this.fieldDescs = postings(fieldDescs);
+        this.methodDescs = postings(methodDescs);
+    }
+
+    private static void add(Map<String, List<Integer>> postings, String key, int index) {
+        List<Integer> indices = postings.computeIfAbsent(key, k -> new ArrayList<>());
+        if (indices.isEmpty() || indices.get(indices.size() - 1) != index) {
+            indices.add(index);
+        }
+    }
+
+    private static Map<String, int[]> postings(Map<String, List<Integer>> postings) {
+        Map<String, int[]> compact = new HashMap<>(postings.size() * 2);
+        postings.forEach((key, indices) ->
+                compact.put(key, indices.stream().mapToInt(Integer::intValue).toArray()));
+        return compact;
+    }
+
+    /**
+     * Gets the amount of classes within this index.
+     *
+     * @return The amount of classes within this index.
+     */
+    public int size() {
+        return classes.length;
+    }
+
+    /**
+     * Finds the classes matching the given criteria.
+     *
+     * @param criteria The criteria to match.
+     * @return The classes matching the given criteria, in the order of the map they were indexed from.
+     */
+    public List<ClassFactory> find(Criteria criteria) {
+        List<ClassFactory> found = new ArrayList<>();
+        first(criteria, factory -> {
+            found.add(factory);
+            return false;
+        });
+        return found;
+    }
+
+    /**
+     * Finds the first class matching the given criteria that the given predicate accepts.
+     *
+     * @param criteria  The criteria to match.
+     * @param predicate The predicate to test the classes matching the criteria against.
+     * @return The first class matching the given criteria that the given predicate accepts, or null if there
+     * is none.
+     */
+    public ClassFactory first(Criteria criteria, Predicate<ClassFactory> predicate) {
+        int[] candidates = null;
+        for (Function<ClassFeatureIndex, int[]> lookup : criteria.lookups) {
+            int[] indices = lookup.apply(this);
+            if (candidates == null || indices.length < candidates.length) {
+                candidates = indices;
+            }
+        }
+        int count = (candidates != null ? candidates.length : classes.length);
+        for (int i = 0; i < count; i++) {
+            int index = (candidates != null ? candidates[i] : i);
+            if (criteria.test(features[index]) && predicate.test(classes[index])) {
+                return classes[index];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The structure a class must have, as checked against a {@link ClassFeatureIndex}.
+     * <p>
+     * Every criterion added must be matched. Criteria are not tied to an index, so the same criteria can be
+     * used to look up classes in several indexes.
+     */
+    public static class Criteria {
+
+        private final List<Predicate<Features>> checks = new ArrayList<>();
+        private final List<Function<ClassFeatureIndex, int[]>> lookups = new ArrayList<>();
+
+        /**
+         * Checks whether no criteria were added or not.
+         *
+         * @return true if no criteria were added, otherwise false.
+         */
+        public boolean empty() {
+            return checks.isEmpty() && lookups.isEmpty();
+        }
+
+        /**
+         * Requires classes to have all of the given access flags.
+         *
+         * @param flags The access flags, such as {@link Opcodes#ACC_ABSTRACT}.
+         * @return These Criteria chained with the given flags.
+         */
+        public Criteria access(int flags) {
+            checks.add(features -> (features.access & flags) == flags);
+            return this;
+        }
+
+        /**
+         * Requires classes to have none of the given access flags.
+         *
+         * @param flags The access flags, such as {@link Opcodes#ACC_INTERFACE}.
+         * @return These Criteria chained with the given flags.
+         */
+        public Criteria noAccess(int flags) {
+            checks.add(features -> (features.access & flags) == 0);
+            return this;
+        }
+
+        /**
+         * Requires classes to extend the given class.
+         *
+         * @param superName The internal name of the super class.
+         * @return These Criteria chained with the given super class.
+         */
+        public Criteria superName(String superName) {
+            checks.add(features -> superName.equals(features.superName));
+            lookups.add(index -> index.superNames.getOrDefault(superName, NONE));
+            return this;
+        }
+
+        /**
+         * Requires classes to directly implement each of the given interfaces.
+         *
+         * @param interfaces The internal names of the interfaces.
+         * @return These Criteria chained with the given interfaces.
+         */
+        public Criteria interfaces(String... interfaces) {
+            for (String iface : interfaces) {
+                checks.add(features -> features.interfaces.contains(iface));
+                lookups.add(index -> index.interfaces.getOrDefault(iface, NONE));
+            }
+            return this;
+        }
+
+        /**
+         * Requires classes to have a constructor with the given desc.
+         *
+         * @param desc The desc of the constructor.
+         * @return These Criteria chained with the given constructor.
+         */
+        public Criteria constructor(String desc) {
+            checks.add(features -> features.constructors.contains(desc));
+            lookups.add(index -> index.constructors.getOrDefault(desc, NONE));
+            return this;
+        }
+
+        /**
+         * Requires the amount of non-static fields matching the given desc to match the given predicate.
+         *
+         * @param desc  The desc to match, or null to match every field.
+         * @param count The predicate to test the amount of fields against.
+         * @return These Criteria chained with the given field count.
+         */
+        public Criteria fieldCount(String desc, IntPredicate count) {
+            checks.add(features -> count.test(features.fieldCount(desc)));
+            if (desc != null && !count.test(0)) {
+                lookups.add(index -> index.fieldDescs.getOrDefault(desc, NONE));
+            }
+            return this;
+        }
+
+        /**
+         * Requires the amount of non-static fields matching the given desc to be the given amount.
+         *
+         * @param desc  The desc to match, or null to match every field.
+         * @param count The amount of fields.
+         * @return These Criteria chained with the given field count.
+         */
+        public Criteria fieldCount(String desc, int count) {
+            return fieldCount(desc, value -> value == count);
+        }
+
+        /**
+         * Requires the amount of different non-static field descs to match the given predicate.
+         *
+         * @param count The predicate to test the amount of field descs against.
+         * @return These Criteria chained with the given field desc count.
+         */
+        public Criteria fieldTypeCount(IntPredicate count) {
+            checks.add(features -> count.test(features.fields.size()));
+            return this;
+        }
+
+        /**
+         * Requires the amount of non-static methods matching the given desc to match the given predicate.
+         *
+         * @param desc  The desc to match, or null to match every method.
+         * @param count The predicate to test the amount of methods against.
+         * @return These Criteria chained with the given method count.
+         */
+        public Criteria methodCount(String desc, IntPredicate count) {
+            checks.add(features -> count.test(features.methodCount(desc)));
+            if (desc != null && !count.test(0)) {
+                lookups.add(index -> index.methodDescs.getOrDefault(desc, NONE));
+            }
+            return this;
+        }
+
+        /**
+         * Requires the amount of non-static methods matching the given desc to be the given amount.
+         *
+         * @param desc  The desc to match, or null to match every method.
+         * @param count The amount of methods.
+         * @return These Criteria chained with the given method count.
+         */
+        public Criteria methodCount(String desc, int count) {
+            return methodCount(desc, value -> value == count);
+        }
+
+        private boolean test(Features features) {
+            for (Predicate<Features> check : checks) {
+                if (!check.test(features)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The structure of a single class.
+     */
+    private static class Features {
+
+        private final int access;
+        private final String superName;
+        private final Set<String> interfaces;
+        private final Set<String> constructors = new HashSet<>();
+        private final Map<String, Integer> fields = new HashMap<>();
+        private final Map<String, Integer> methods = new HashMap<>();
+        private int fieldCount;
+        private int methodCount;
+
+        private Features(ClassFactory factory) {
+            this.access = factory.access();
+            this.superName = factory.superName();
+            this.interfaces = new HashSet<>(factory.interfaces());
+            for (ClassField field : factory.fields) {
+                if (field.local()) {
+                    fields.merge(field.desc(), 1, Integer::sum);
+                    fieldCount++;
+                }
+            }
+            for (ClassMethod method : factory.methods) {
+                if (method.name().equals("<init>")) {
+                    constructors.add(method.desc());
+                }
+                if (method.local()) {
+                    methods.merge(method.desc(), 1, Integer::sum);
+                    methodCount++;
+                }
+            }
+        }
+
+        private int fieldCount(String desc) {
+            return (desc == null ? fieldCount : fields.getOrDefault(desc, 0));
+        }
+
+        private int methodCount(String desc) {
+            return (desc == null ? methodCount : methods.getOrDefault(desc, 0));
+        }
+    }
+}
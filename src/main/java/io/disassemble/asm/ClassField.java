@@ -13,9 +13,17 @@ public class ClassField {
     public final ClassFactory owner;
     public final FieldNode field;
 
+    private final String originalName, originalDesc;
+    private final int originalAccess;
+    private boolean dirty;
+    private volatile MemberKey key;
+
     public ClassField(ClassFactory owner, FieldNode field) {
         this.owner = owner;
         this.field = field;
+        this.originalName = field.name;
+        this.originalDesc = field.desc;
+        this.originalAccess = field.access;
     }
 
     public String name() {
@@ -23,6 +31,7 @@ public class ClassField {
     }
 
     public void setName(String name) {
+        markDirty();
         field.name = name;
     }
 
@@ -32,6 +41,7 @@ public class ClassField {
 
     public void setDescriptor(String desc) {
         field.desc = desc;
+        markDirty();
     }
 
     public int access() {
@@ -40,10 +50,33 @@ public class ClassField {
 
     public void setAccess(int access) {
         field.access = access;
+        markDirty();
+    }
+
+    /**
+     * Marks this field as modified, this only needs to be called after modifying {@link #field} directly.
+     */
+    public void markDirty() {
+        dirty = true;
+        owner.membersModified();
+        owner.modified();
+    }
+
+    /**
+     * Checks whether this field has been modified since it was read.
+     *
+     * @return true if this field has been modified, otherwise false.
+     */
+    public boolean dirty() {
+        return dirty || field.name != originalName || field.desc != originalDesc || field.access != originalAccess;
     }
 
     public String key() {
-        return owner.name() + '.' + name();
+        MemberKey key = this.key;
+        if (key == null || !key.matches(owner.name(), field.name, null)) {
+            this.key = key = new MemberKey(owner.name(), field.name, null);
+        }
+        return key.value;
     }
 
     public boolean local() {
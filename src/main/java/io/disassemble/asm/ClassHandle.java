@@ -0,0 +1,244 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A lightweight reference to a class within an Archive, backed by the class' bytes.
+ * <p>
+ * The class header is read without parsing the rest of the class, and the ClassFactory is only built
+ * the first time it is requested. Unmodified factories can be released again to free their tree.
+ */
+public class ClassHandle {
+
+    private final byte[] bytes;
+    private final ByteBuffer source;
+    private final String name, superName;
+    private final List<String> interfaces;
+    private final int access;
+    private final SymbolTable symbols;
+
+    private volatile Archive archive;
+    private volatile ClassFactory factory;
+
+    /**
+     * Constructs a handle for the given class file, without building its ClassFactory.
+     *
+     * @param bytes The class file.
+     */
+    public ClassHandle(byte[] bytes) {
+        this(bytes, null);
+    }
+
+    /**
+     * Constructs a handle for the given class file, interning its symbols into the given table.
+     *
+     * @param bytes   The class file.
+     * @param symbols The table to intern the class' symbols into when its ClassFactory is built, or null.
+     */
+    ClassHandle(byte[] bytes, SymbolTable symbols) {
+        ClassReader reader = new ClassReader(bytes);
+        String[] interfaces = reader.getInterfaces();
+        if (symbols != null) {
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = symbols.intern(interfaces[i]);
+            }
+        }
+        this.bytes = bytes;
+        this.source = null;
+        this.name = intern(symbols, reader.getClassName());
+        this.superName = intern(symbols, reader.getSuperName());
+        this.interfaces = Collections.unmodifiableList(Arrays.asList(interfaces));
+        this.access = reader.getAccess();
+        this.symbols = symbols;
+    }
+
+    /**
+     * Constructs a handle for a class file held in a buffer, such as a mapped {@link ArchiveSnapshot}, whose
+     * header has already been read. The class file is copied out of the buffer each time it's needed.
+     *
+     * @param name       The name of the class.
+     * @param superName  The superName of the class.
+     * @param interfaces The implemented interfaces of the class.
+     * @param access     The access of the class.
+     * @param source     The buffer holding the class file, from its position to its limit.
+     * @param symbols    The table to intern the class' symbols into when its ClassFactory is built, or null.
+     */
+    ClassHandle(String name, String superName, List<String> interfaces, int access, ByteBuffer source,
+                SymbolTable symbols) {
+        this.bytes = null;
+        this.source = source;
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.access = access;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Constructs a handle for an already built ClassFactory.
+     *
+     * @param factory The factory to hold.
+     */
+    public ClassHandle(ClassFactory factory) {
+        this(factory, null);
+    }
+
+    /**
+     * Constructs a handle for an already built ClassFactory, whose symbols were interned into the given table.
+     *
+     * @param factory The factory to hold.
+     * @param symbols The table to intern the class' symbols into if its ClassFactory is rebuilt, or null.
+     */
+    ClassHandle(ClassFactory factory, SymbolTable symbols) {
+        this.bytes = factory.bytes();
+        this.source = null;
+        this.name = factory.name();
+        this.superName = factory.superName();
+        this.interfaces = Collections.unmodifiableList(new ArrayList<>(factory.interfaces()));
+        this.access = factory.access();
+        this.symbols = symbols;
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the class file this handle was read from, if it was kept.
+     *
+     * @return The class file this handle was read from, or null if it was not kept.
+     */
+    public byte[] bytes() {
+        if (bytes == null && source != null) {
+            byte[] bytes = new byte[source.remaining()];
+            source.duplicate().get(bytes);
+            return bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the name of this class.
+     *
+     * @return The name of this class.
+     */
+    public String name() {
+        ClassFactory factory = this.factory;
+        return (factory != null ? factory.name() : name);
+    }
+
+    /**
+     * Gets the superName of this class.
+     *
+     * @return The superName of this class.
+     */
+    public String superName() {
+        ClassFactory factory = this.factory;
+        return (factory != null ? factory.superName() : superName);
+    }
+
+    /**
+     * Gets the implemented interfaces of this class.
+     *
+     * @return The implemented interfaces of this class.
+     */
+    public List<String> interfaces() {
+        ClassFactory factory = this.factory;
+        return (factory != null ? factory.interfaces() : interfaces);
+    }
+
+    /**
+     * Gets the access of this class.
+     *
+     * @return The access of this class.
+     */
+    public int access() {
+        ClassFactory factory = this.factory;
+        return (factory != null ? factory.access() : access);
+    }
+
+    /**
+     * Checks whether the ClassFactory for this class is currently built.
+     *
+     * @return true if the ClassFactory for this class is built, otherwise false.
+     */
+    public boolean inflated() {
+        return factory != null;
+    }
+
+    /**
+     * Gets the ClassFactory for this class, building it from the class file if needed.
+     *
+     * @return The ClassFactory for this class.
+     */
+    public ClassFactory factory() {
+        ClassFactory factory = this.factory;
+        if (factory == null) {
+            synchronized (this) {
+                factory = this.factory;
+                if (factory == null) {
+                    byte[] bytes = bytes();
+                    ClassNode node = new ClassNode();
+                    new ClassReader(bytes).accept(node, ClassReader.SKIP_FRAMES);
+                    if (symbols != null) {
+                        symbols.intern(node);
+                    }
+                    factory = new ClassFactory(node, bytes);
+                    factory.archive = archive;
+                    this.factory = factory;
+                    if (archive != null) {
+                        archive.modified(factory);
+                    }
+                }
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * Sets the Archive this class belongs to, which is also given to its ClassFactory.
+     *
+     * @param archive The Archive this class belongs to.
+     * @return This handle.
+     */
+    ClassHandle attach(Archive archive) {
+        this.archive = archive;
+        ClassFactory factory = this.factory;
+        if (factory != null) {
+            factory.archive = archive;
+        }
+        return this;
+    }
+
+    /**
+     * Drops the ClassFactory for this class if it has not been modified, so that it can be garbage collected.
+     * The next call to {@link #factory()} will build a new ClassFactory.
+     *
+     * @return true if the ClassFactory was released, otherwise false.
+     */
+    public synchronized boolean release() {
+        ClassFactory factory = this.factory;
+        if (factory == null || (bytes == null && source == null) || factory.dirty()) {
+            return false;
+        }
+        this.factory = null;
+        Archive archive = this.archive;
+        if (archive != null) {
+            archive.removed(factory);
+        }
+        return true;
+    }
+
+    private static String intern(SymbolTable symbols, String value) {
+        return (symbols != null ? symbols.intern(value) : value);
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+}
@@ -0,0 +1,244 @@
+package io.disassemble.asm;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A view of a map of ClassHandles as a map of their ClassFactories, building each factory when it is retrieved.
+ * <p>
+ * Key based queries such as {@link #containsKey(Object)} and {@link #keySet()} never build a factory.
+ */
+class ClassHandleMap extends AbstractMap<String, ClassFactory> implements ConcurrentMap<String, ClassFactory> {
+
+    private final ConcurrentMap<String, ClassHandle> handles;
+    private final Archive archive;
+
+    ClassHandleMap(ConcurrentMap<String, ClassHandle> handles, Archive archive) {
+        this.handles = handles;
+        this.archive = archive;
+    }
+
+    private static ClassFactory factory(ClassHandle handle) {
+        return (handle != null ? handle.factory() : null);
+    }
+
+    private ClassHandle handle(ClassFactory factory) {
+        ClassHandle handle = new ClassHandle(factory).attach(archive);
+        archive.modified(factory);
+        return handle;
+    }
+
+    private ClassFactory removed(ClassHandle handle, ClassFactory replacement) {
+        ClassFactory factory = factory(handle);
+        if (factory != null && factory != replacement) {
+            archive.removed(factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Removes the given key for {@link #clear()} and the views of this map, which don't return the removed factory.
+     */
+    private boolean drop(Object key) {
+        ClassHandle handle = handles.remove(key);
+        if (handle != null) {
+            archive.removed(handle);
+        }
+        return handle != null;
+    }
+
+    @Override
+    public int size() {
+        return handles.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return handles.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return handles.containsKey(key);
+    }
+
+    @Override
+    public ClassFactory get(Object key) {
+        return factory(handles.get(key));
+    }
+
+    @Override
+    public ClassFactory put(String key, ClassFactory value) {
+        return removed(handles.put(key, handle(value)), value);
+    }
+
+    @Override
+    public ClassFactory remove(Object key) {
+        return removed(handles.remove(key), null);
+    }
+
+    @Override
+    public void clear() {
+        handles.keySet().forEach(this::drop);
+    }
+
+    @Override
+    public ClassFactory putIfAbsent(String key, ClassFactory value) {
+        ClassHandle present = handles.putIfAbsent(key, new ClassHandle(value).attach(archive));
+        if (present == null) {
+            archive.modified(value);
+        }
+        return factory(present);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        ClassHandle handle = handles.get(key);
+        if (handle != null && Objects.equals(handle.factory(), value) && handles.remove(key, handle)) {
+            removed(handle, null);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replace(String key, ClassFactory oldValue, ClassFactory newValue) {
+        ClassHandle handle = handles.get(key);
+        if (handle != null && Objects.equals(handle.factory(), oldValue) &&
+                handles.replace(key, handle, handle(newValue))) {
+            removed(handle, newValue);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public ClassFactory replace(String key, ClassFactory value) {
+        return removed(handles.replace(key, handle(value)), value);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new ViewIterator<String>() {
+                    @Override
+                    String next(Map.Entry<String, ClassHandle> entry) {
+                        return entry.getKey();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return handles.containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return drop(o);
+            }
+
+            @Override
+            public int size() {
+                return handles.size();
+            }
+
+            @Override
+            public void clear() {
+                ClassHandleMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<ClassFactory> values() {
+        return new AbstractCollection<ClassFactory>() {
+            @Override
+            public Iterator<ClassFactory> iterator() {
+                return new ViewIterator<ClassFactory>() {
+                    @Override
+                    ClassFactory next(Map.Entry<String, ClassHandle> entry) {
+                        return entry.getValue().factory();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return handles.size();
+            }
+
+            @Override
+            public void clear() {
+                ClassHandleMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, ClassFactory>> entrySet() {
+        return new AbstractSet<Map.Entry<String, ClassFactory>>() {
+            @Override
+            public Iterator<Map.Entry<String, ClassFactory>> iterator() {
+                return new ViewIterator<Map.Entry<String, ClassFactory>>() {
+                    @Override
+                    Map.Entry<String, ClassFactory> next(Map.Entry<String, ClassHandle> entry) {
+                        return new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().factory());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return handles.size();
+            }
+
+            @Override
+            public void clear() {
+                ClassHandleMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * An iterator over the handles, removing the current class through {@link #drop(Object)} so that the Archive
+     * is notified the same way {@link #remove(Object)} notifies it.
+     */
+    private abstract class ViewIterator<T> implements Iterator<T> {
+
+        private final Iterator<Map.Entry<String, ClassHandle>> entries = handles.entrySet().iterator();
+        private String last;
+
+        abstract T next(Map.Entry<String, ClassHandle> entry);
+
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        @Override
+        public T next() {
+            Map.Entry<String, ClassHandle> entry = entries.next();
+            last = entry.getKey();
+            return next(entry);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            drop(last);
+            last = null;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The super classes and interfaces of the classes within an Archive, and optionally the JDK and library
+ * classes they extend, read from their class files rather than loaded.
+ * <p>
+ * The archive's classes are read from their handles when the hierarchy is constructed, so later changes to
+ * their super classes or interfaces are not reflected. Classes outside of the archive are read the first time
+ * they are queried when system classes are included, and are otherwise treated as direct subclasses of
+ * {@code java/lang/Object}. Supertype and common super class queries are cached and can be made concurrently.
+ *
+ * @author Christopher Carpenter
+ */
+public class ClassHierarchy {
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final Node UNKNOWN = new Node(OBJECT, new String[0], false);
+
+    private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> supertypes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> commonSuperClasses = new ConcurrentHashMap<>();
+    private final boolean systemClasses;
+
+    /**
+     * Constructs an empty ClassHierarchy, classes are added through {@link #include(byte[])}.
+     *
+     * @param systemClasses true to read classes that were not included from the system class path when they're
+     *                      first queried, otherwise false.
+     */
+    public ClassHierarchy(boolean systemClasses) {
+        this.systemClasses = systemClasses;
+    }
+
+    /**
+     * Constructs a ClassHierarchy for the classes within the given archive, including system classes.
+     *
+     * @param archive The archive to read the classes from.
+     */
+    public ClassHierarchy(Archive archive) {
+        this(archive, true);
+    }
+
+    /**
+     * Constructs a ClassHierarchy for the classes within the given archive.
+     *
+     * @param archive       The archive to read the classes from.
+     * @param systemClasses true to read classes outside of the archive from the system class path when they're
+     *                      first queried, otherwise false.
+     */
+    public ClassHierarchy(Archive archive, boolean systemClasses) {
+        this.systemClasses = systemClasses;
+        include(archive);
+    }
+
+    /**
+     * Adds the classes within the given archive, such as a library, to this hierarchy.
+     *
+     * @param archive The archive to read the classes from.
+     * @return This ClassHierarchy chained with the classes of the given archive.
+     */
+    public ClassHierarchy include(Archive archive) {
+        for (ClassHandle handle : archive.handles().values()) {
+            nodes.put(handle.name(), new Node(handle.superName(), handle.interfaces().toArray(new String[0]),
+                    (handle.access() & Opcodes.ACC_INTERFACE) != 0));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the class read from the given class file to this hierarchy. Only the header of the class is read,
+     * so class files of any version are supported.
+     *
+     * @param bytes The class file.
+     * @return This ClassHierarchy chained with the given class.
+     */
+    public ClassHierarchy include(byte[] bytes) {
+        try {
+            Header header = new Header(bytes);
+            nodes.put(header.name, header.node);
+            return this;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed class file", e);
+        }
+    }
+
+    private Node node(String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            node = UNKNOWN;
+            if (systemClasses && !name.equals(OBJECT)) {
+                Node read = readSystemClass(name);
+                if (read != null) {
+                    node = read;
+                }
+            }
+            Node existing = nodes.putIfAbsent(name, node);
+            if (existing != null) {
+                node = existing;
+            }
+        }
+        return node;
+    }
+
+    private static Node readSystemClass(String name) {
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(name + ".class")) {
+            return (in != null ? new Header(Archive.readInputStream(in)).node : null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the given class is part of this hierarchy, either from an archive or read from its
+     * class file.
+     *
+     * @param name The internal name of the class.
+     * @return true if the given class is known, otherwise false.
+     */
+    public boolean contains(String name) {
+        return name.equals(OBJECT) || node(name) != UNKNOWN;
+    }
+
+    /**
+     * Gets the super class of the given class.
+     *
+     * @param name The internal name of the class.
+     * @return The super class of the given class, or null if the class is {@code java/lang/Object}.
+     */
+    public String superName(String name) {
+        return (name.equals(OBJECT) ? null : node(name).superName);
+    }
+
+    /**
+     * Checks whether the given class is an interface.
+     *
+     * @param name The internal name of the class.
+     * @return true if the given class is an interface, otherwise false.
+     */
+    public boolean isInterface(String name) {
+        return node(name).isInterface;
+    }
+
+    /**
+     * Gets the given class and every class and interface it extends or implements, directly or indirectly.
+     *
+     * @param name The internal name of the class.
+     * @return The given class followed by its super types.
+     */
+    public Set<String> supertypes(String name) {
+        Set<String> types = supertypes.get(name);
+        if (types == null) {
+            types = new LinkedHashSet<>();
+            types.add(name);
+            if (!name.equals(OBJECT)) {
+                Node node = node(name);
+                if (node.superName != null) {
+                    types.addAll(supertypes(node.superName));
+                }
+                for (String iface : node.interfaces) {
+                    types.addAll(supertypes(iface));
+                }
+                types.add(OBJECT);
+            }
+            types = Collections.unmodifiableSet(types);
+            Set<String> existing = supertypes.putIfAbsent(name, types);
+            if (existing != null) {
+                types = existing;
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Checks whether a value of the given subtype can be assigned to the given type.
+     *
+     * @param type    The internal name of the type being assigned to.
+     * @param subtype The internal name of the type being assigned.
+     * @return true if the subtype extends or implements the type, or they're the same, otherwise false.
+     */
+    public boolean isAssignableFrom(String type, String subtype) {
+        return type.equals(subtype) || supertypes(subtype).contains(type);
+    }
+
+    /**
+     * Finds the closest super class shared by the given classes, following the semantics of
+     * {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)}: interfaces only have
+     * {@code java/lang/Object} in common with other types, unless one is assignable to the other.
+     *
+     * @param a The internal name of the first class.
+     * @param b The internal name of the second class.
+     * @return The closest super class shared by the given classes.
+     */
+    public String commonSuperClass(String a, String b) {
+        if (a.equals(b)) {
+            return a;
+        }
+        String key = (a.compareTo(b) < 0 ? a + ';' + b : b + ';' + a);
+        String common = commonSuperClasses.get(key);
+        if (common == null) {
+            common = findCommonSuperClass(a, b);
+            commonSuperClasses.putIfAbsent(key, common);
+        }
+        return common;
+    }
+
+    private String findCommonSuperClass(String a, String b) {
+        if (isAssignableFrom(a, b)) {
+            return a;
+        }
+        if (isAssignableFrom(b, a)) {
+            return b;
+        }
+        if (isInterface(a) || isInterface(b)) {
+            return OBJECT;
+        }
+        Set<String> bTypes = supertypes(b);
+        String type = a;
+        while ((type = superName(type)) != null) {
+            if (bTypes.contains(type)) {
+                return type;
+            }
+        }
+        return OBJECT;
+    }
+
+    private static class Node {
+
+        private final String superName;
+        private final String[] interfaces;
+        private final boolean isInterface;
+
+        private Node(String superName, String[] interfaces, boolean isInterface) {
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.isInterface = isInterface;
+        }
+    }
+
+    /**
+     * Reads the name, super class and interfaces of a class file by skipping its constant pool, without checking
+     * the class file version the way a ClassReader does.
+     */
+    private static class Header {
+
+        private final String name;
+        private final Node node;
+
+        private Header(byte[] bytes) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            in.skipBytes(8);
+            int size = in.readUnsignedShort();
+            String[] utf8 = new String[size];
+            int[] classes = new int[size];
+            for (int i = 1; i < size; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1:
+                        utf8[i] = in.readUTF();
+                        break;
+                    case 7:
+                        classes[i] = in.readUnsignedShort();
+                        break;
+                    case 8:
+                    case 16:
+                    case 19:
+                    case 20:
+                        in.skipBytes(2);
+                        break;
+                    case 15:
+                        in.skipBytes(3);
+                        break;
+                    case 3:
+                    case 4:
+                    case 9:
+                    case 10:
+                    case 11:
+                    case 12:
+                    case 17:
+                    case 18:
+                        in.skipBytes(4);
+                        break;
+                    case 5:
+                    case 6:
+                        in.skipBytes(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+            int access = in.readUnsignedShort();
+            this.name = utf8[classes[in.readUnsignedShort()]];
+            int superIndex = in.readUnsignedShort();
+            String superName = (superIndex != 0 ? utf8[classes[superIndex]] : null);
+            String[] interfaces = new String[in.readUnsignedShort()];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = utf8[classes[in.readUnsignedShort()]];
+            }
+            this.node = new Node(superName, interfaces, (access & Opcodes.ACC_INTERFACE) != 0);
+        }
+    }
+}
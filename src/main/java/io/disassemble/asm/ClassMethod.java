@@ -1,6 +1,7 @@
 package io.disassemble.asm;
 
 import io.disassemble.asm.pattern.nano.AdvancedNanoPattern;
+import io.disassemble.asm.pattern.nano.NanoPatternTypes;
 import io.disassemble.asm.pattern.nano.SimpleNanoPattern;
 import io.disassemble.asm.pattern.nano.calling.Chained;
 import io.disassemble.asm.pattern.nano.calling.Leaf;
@@ -26,11 +27,11 @@ import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.function.Predicate;
 
 import static org.objectweb.asm.Opcodes.ACC_STATIC;
@@ -53,7 +54,21 @@ public class ClassMethod {
             new LocalReader(), new LocalWriter(), new ArrayCreator(), new ArrayReader(), new ArrayWriter() // Data Flow
     };
 
-    private static ConcurrentMap<String, ClassMethod> CACHED = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> NANO_PATTERN_BITS = new HashMap<>();
+    private static final String[] NANO_PATTERN_NAMES = new String[SIMPLE_NANO_PATTERNS.length +
+            ADVANCED_NANO_PATTERNS.length];
+
+    static {
+        for (int i = 0; i < SIMPLE_NANO_PATTERNS.length; i++) {
+            NANO_PATTERN_NAMES[i] = SIMPLE_NANO_PATTERNS[i].info().name();
+        }
+        for (int i = 0; i < ADVANCED_NANO_PATTERNS.length; i++) {
+            NANO_PATTERN_NAMES[SIMPLE_NANO_PATTERNS.length + i] = ADVANCED_NANO_PATTERNS[i].info().name();
+        }
+        for (int i = 0; i < NANO_PATTERN_NAMES.length; i++) {
+            NANO_PATTERN_BITS.put(NANO_PATTERN_NAMES[i], i);
+        }
+    }
 
     public final ClassFactory owner;
     public final MethodNode method;
@@ -61,34 +76,95 @@ public class ClassMethod {
     private Type[] types;
 
     private List<String> simpleNanoPatterns, advancedNanoPatterns;
-
-    private ControlFlowGraph cfg;
+    private int[] nanoPatternCounts;
+    private long nanoPatternMask;
+    private InsnList nanoPatternInstructions;
+    private int nanoPatternSize, nanoPatternModifications;
+    private String nanoPatternOwner;
+
+    private volatile ControlFlowGraph cfg;
+    private volatile MethodFeatures features;
     private ExprTree tree;
+    private volatile MemberKey key;
+
+    AnalysisCache.Source analysis;
+
+    private final String originalName, originalDesc;
+    private final int originalAccess, originalSize;
+    private boolean dirty;
+    private int modifications;
 
     public ClassMethod(ClassFactory owner, MethodNode method) {
         this.owner = owner;
         this.method = method;
-        CACHED.put(key(), this);
+        this.originalName = method.name;
+        this.originalDesc = method.desc;
+        this.originalAccess = method.access;
+        this.originalSize = method.instructions.size();
     }
 
     /**
-     * Gets the ClassMethod matching the given key, if it is within the cache.
+     * Gets the method matching the given key within any built Archive that's still reachable.
      *
-     * @param key The key to match.
-     * @return The ClassMethod matching the given key, if it is within the cache.
+     * @param key The key to match, see {@link #key()}.
+     * @return The method matching the given key, or null if no Archive contains it.
+     * @deprecated Keys are not unique across Archives, use {@link MemberRegistry#method(String)} through
+     * {@link Archive#members()} instead.
      */
+    @Deprecated
     public static ClassMethod resolve(String key) {
-        return CACHED.get(key);
+        for (Archive archive : Archive.loaded()) {
+            if (archive.built()) {
+                ClassMethod method = archive.members().method(key);
+                if (method != null) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops the members resolved by every built Archive that's still reachable.
+     *
+     * @deprecated Methods are resolved per Archive, use {@link MemberRegistry#clear()} through
+     * {@link Archive#members()} instead.
+     */
+    @Deprecated
+    public static void clearKeyCache() {
+        for (Archive archive : Archive.loaded()) {
+            if (archive.built()) {
+                archive.members().clear();
+            }
+        }
+    }
+
+    /**
+     * Resolves the method called by the given instruction within the Archive this method's class was loaded into,
+     * see {@link MemberRegistry}. Without an Archive, only calls to methods of this method's class are resolved.
+     *
+     * @param min The instruction to resolve.
+     * @return The called method, or null if it could not be resolved.
+     */
+    public ClassMethod resolve(MethodInsnNode min) {
+        Archive archive = owner.archive();
+        if (archive != null && archive.built()) {
+            return archive.members().method(min);
+        }
+        if (!min.owner.equals(owner.name())) {
+            return null;
+        }
+        return owner.findMethod(cm -> cm.name().equals(min.name) && cm.desc().equals(min.desc));
     }
 
     /**
-     * Calls MethodNode#accept with the given visitor.
+     * Dispatches the given visitor to this method, passing each instruction straight to its typed visit method
+     * rather than replaying the MethodNode through MethodNode#accept.
      *
-     * @param cmv The visitor to call.
+     * @param cmv The visitor to dispatch.
      */
     public void accept(ClassMethodVisitor cmv) {
-        cmv.method = this;
-        method.accept(cmv);
+        cmv.visit(this);
     }
 
     /**
@@ -107,6 +183,7 @@ public class ClassMethod {
      */
     public void setName(String name) {
         method.name = name;
+        markDirty();
     }
 
     /**
@@ -124,8 +201,8 @@ public class ClassMethod {
      * @param desc The desc to set this method's desc to.
      */
     public void setDescriptor(String desc) {
-        types = null;
         method.desc = desc;
+        markDirty();
     }
 
     /**
@@ -144,6 +221,47 @@ public class ClassMethod {
      */
     public void setAccess(int access) {
         method.access = access;
+        markDirty();
+    }
+
+    /**
+     * Marks this method as modified, so it will be rebuilt from its MethodNode when written.
+     * <p>
+     * Renames and changes to the size of the instruction list are noticed automatically, this needs to be
+     * called after editing instructions in place. Edits that keep the size of the instruction list are otherwise
+     * lost when the archive is written through {@link JarArchive#copyThrough()}. This also drops the parameter
+     * types cached from this method's desc and its owner's member statistics, and tells any
+     * {@link ReferenceIndex} to re-index this method, so it must be called after modifying {@link #method} directly.
+     */
+    public void markDirty() {
+        dirty = true;
+        types = null;
+        modifications++;
+        owner.membersModified();
+        owner.modified();
+    }
+
+    /**
+     * Gets the amount of times this method has been marked as modified.
+     *
+     * @return The amount of times this method has been marked as modified.
+     */
+    int modifications() {
+        return modifications;
+    }
+
+    /**
+     * Checks whether this method has been modified since it was read.
+     * <p>
+     * Only renames, desc and access changes, changes to the size of the instruction list and calls to
+     * {@link #markDirty()} are noticed. Instructions edited in place without a call to {@link #markDirty()}
+     * leave this method clean.
+     *
+     * @return true if this method has been modified, otherwise false.
+     */
+    public boolean dirty() {
+        return dirty || method.name != originalName || method.desc != originalDesc ||
+                method.access != originalAccess || method.instructions.size() != originalSize;
     }
 
     /**
@@ -174,7 +292,11 @@ public class ClassMethod {
      * @return This method's key label (class.name + "." + method.name + method.desc)
      */
     public String key() {
-        return owner.node.name + '.' + method.name + method.desc;
+        MemberKey key = this.key;
+        if (key == null || !key.matches(owner.node.name, method.name, method.desc)) {
+            this.key = key = new MemberKey(owner.node.name, method.name, method.desc);
+        }
+        return key.value;
     }
 
     /**
@@ -191,7 +313,22 @@ public class ClassMethod {
      * @return The amount of instructions matching the given opcode.
      */
     public int count(int opcode) {
-        return count(insn -> insn.getOpcode() == opcode);
+        return features().count(opcode);
+    }
+
+    /**
+     * Gets the instruction counts and control flow features of this method, computed once and recomputed after
+     * this method is marked as modified or the size of its instruction list changes.
+     *
+     * @return The instruction counts and control flow features of this method.
+     */
+    public MethodFeatures features() {
+        MethodFeatures features = this.features;
+        if (features == null || features.modifications != modifications ||
+                features.instructions != method.instructions || features.size() != method.instructions.size()) {
+            this.features = features = new MethodFeatures(method, modifications);
+        }
+        return features;
     }
 
     /**
@@ -230,7 +367,8 @@ public class ClassMethod {
                 for (AbstractInsnNode ain : method.instructions().toArray()) {
                     if (ain instanceof MethodInsnNode) {
                         MethodInsnNode min = (MethodInsnNode) ain;
-                        if ((min.owner + '.' + min.name + min.desc).equals(key())) {
+                        if (min.name.equals(this.method.name) && min.desc.equals(this.method.desc) &&
+                                min.owner.equals(owner.node.name)) {
                             callers.add(min);
                         }
                     }
@@ -240,6 +378,16 @@ public class ClassMethod {
         return callers;
     }
 
+    /**
+     * Gets the instructions that call this method, using the archive's {@link ReferenceIndex}.
+     *
+     * @param archive The archive to search.
+     * @return The instructions that call this method.
+     */
+    public List<MethodInsnNode> callers(Archive archive) {
+        return archive.references().callers(key());
+    }
+
     /**
      * Checks whether this method returns a desc of the class it's in.
      *
@@ -265,16 +413,27 @@ public class ClassMethod {
      * @param cached Whether to used the cached list from prior lookups or not.
      * @return A list of simple nano-patterns that are used within this method.
      */
-    public List<String> findSimpleNanoPatterns(boolean cached) {
+    public synchronized List<String> findSimpleNanoPatterns(boolean cached) {
+        checkNanoPatterns();
         if (cached && simpleNanoPatterns != null) {
             return simpleNanoPatterns;
         }
+        if (cached && analysis != null) {
+            List<String> stored = analysis.patterns(this, AnalysisCache.SIMPLE_NANO_PATTERNS);
+            if (stored != null) {
+                return (simpleNanoPatterns = stored);
+            }
+        }
         List<String> matching = new ArrayList<>();
         for (SimpleNanoPattern pattern : SIMPLE_NANO_PATTERNS) {
             if (pattern.matches(this)) {
                 matching.add(pattern.info().name());
             }
         }
+        if (analysis != null) {
+            analysis.store(this, AnalysisCache.SIMPLE_NANO_PATTERNS, matching);
+        }
+        nanoPatternCounts = null;
         return (simpleNanoPatterns = matching);
     }
 
@@ -294,13 +453,7 @@ public class ClassMethod {
      * @return true if all the given simple nano-patterns are used in this method, otherwise false.
      */
     public boolean hasSimpleNanoPatterns(String... patterns) {
-        List<String> patternList = findSimpleNanoPatterns();
-        for (String pattern : patterns) {
-            if (!patternList.contains(pattern)) {
-                return false;
-            }
-        }
-        return true;
+        return hasNanoPatterns(patterns, 0, SIMPLE_NANO_PATTERNS.length);
     }
 
     /**
@@ -309,10 +462,17 @@ public class ClassMethod {
      * @param cached Whether to used the cached list from prior lookups or not.
      * @return A list of advanced nano-patterns that are used within this method.
      */
-    public List<String> findAdvancedNanoPatterns(boolean cached) {
+    public synchronized List<String> findAdvancedNanoPatterns(boolean cached) {
+        checkNanoPatterns();
         if (cached && advancedNanoPatterns != null) {
             return advancedNanoPatterns;
         }
+        if (cached && analysis != null) {
+            List<String> stored = analysis.patterns(this, AnalysisCache.ADVANCED_NANO_PATTERNS);
+            if (stored != null) {
+                return (advancedNanoPatterns = stored);
+            }
+        }
         List<String> matching = new ArrayList<>();
         AbstractInsnNode[] instructions = instructions().toArray();
         for (AbstractInsnNode insn : instructions) {
@@ -322,6 +482,10 @@ public class ClassMethod {
                 }
             }
         }
+        if (analysis != null) {
+            analysis.store(this, AnalysisCache.ADVANCED_NANO_PATTERNS, matching);
+        }
+        nanoPatternCounts = null;
         return (advancedNanoPatterns = matching);
     }
 
@@ -341,13 +505,121 @@ public class ClassMethod {
      * @return true if all the given advanced nano-patterns are used in this method, otherwise false.
      */
     public boolean hasAdvancedNanoPatterns(String... patterns) {
-        List<String> patternList = findAdvancedNanoPatterns();
+        return hasNanoPatterns(patterns, SIMPLE_NANO_PATTERNS.length, NANO_PATTERN_NAMES.length);
+    }
+
+    private boolean hasNanoPatterns(String[] patterns, int firstBit, int endBit) {
+        long mask = 0;
         for (String pattern : patterns) {
-            if (!patternList.contains(pattern)) {
+            Integer bit = NANO_PATTERN_BITS.get(pattern);
+            if (bit == null || bit < firstBit || bit >= endBit) {
                 return false;
             }
+            mask |= 1L << bit;
+        }
+        return (nanoPatterns() & mask) == mask;
+    }
+
+    /**
+     * Gets the mask of the given nano-patterns, as matched against {@link #nanoPatterns()}.
+     *
+     * @param patterns The names of the simple or advanced nano-patterns, such as {@link NanoPatternTypes#LEAF}.
+     * @return The mask of the given nano-patterns.
+     * @throws IllegalArgumentException if a pattern is unknown.
+     */
+    public static long nanoPatternMask(String... patterns) {
+        long mask = 0;
+        for (String pattern : patterns) {
+            Integer bit = NANO_PATTERN_BITS.get(pattern);
+            if (bit == null) {
+                throw new IllegalArgumentException("Unknown nano-pattern: " + pattern);
+            }
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the names of the nano-patterns within the given mask.
+     *
+     * @param mask The mask of nano-patterns.
+     * @return The names of the nano-patterns within the given mask, simple patterns first.
+     */
+    public static List<String> nanoPatternNames(long mask) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < NANO_PATTERN_NAMES.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                names.add(NANO_PATTERN_NAMES[i]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Gets the mask of the simple and advanced nano-patterns used within this method, see
+     * {@link #nanoPatternMask(String...)}.
+     * <p>
+     * The mask is built from {@link #findSimpleNanoPatterns()} and {@link #findAdvancedNanoPatterns()}, so it's
+     * read from an attached {@link AnalysisCache} when possible. Like those lists, it's matched again after this
+     * method is marked as modified, the size of its instruction list changes, or its class is renamed.
+     *
+     * @return The mask of the nano-patterns used within this method.
+     */
+    public long nanoPatterns() {
+        nanoPatternCounts();
+        return nanoPatternMask;
+    }
+
+    /**
+     * Gets the amount of times the given nano-pattern is used within this method. Simple patterns are used
+     * once at most, advanced patterns are used once for every instruction they match.
+     *
+     * @param pattern The name of the pattern.
+     * @return The amount of times the given nano-pattern is used within this method.
+     * @throws IllegalArgumentException if the pattern is unknown.
+     */
+    public int nanoPatternCount(String pattern) {
+        Integer bit = NANO_PATTERN_BITS.get(pattern);
+        if (bit == null) {
+            throw new IllegalArgumentException("Unknown nano-pattern: " + pattern);
+        }
+        return nanoPatternCounts()[bit];
+    }
+
+    private synchronized int[] nanoPatternCounts() {
+        List<String> simples = findSimpleNanoPatterns();
+        List<String> advanced = findAdvancedNanoPatterns();
+        int[] counts = nanoPatternCounts;
+        if (counts == null) {
+            counts = new int[NANO_PATTERN_NAMES.length];
+            long mask = 0;
+            for (List<String> patterns : Arrays.asList(simples, advanced)) {
+                for (String pattern : patterns) {
+                    int bit = NANO_PATTERN_BITS.get(pattern);
+                    counts[bit]++;
+                    mask |= 1L << bit;
+                }
+            }
+            nanoPatternMask = mask;
+            nanoPatternCounts = counts;
+        }
+        return counts;
+    }
+
+    /**
+     * Drops the matched nano-patterns if this method was marked as modified, its instructions were resized or
+     * replaced, or its class was renamed since they were matched.
+     */
+    private void checkNanoPatterns() {
+        if (nanoPatternModifications != modifications || nanoPatternInstructions != method.instructions ||
+                nanoPatternSize != method.instructions.size() || nanoPatternOwner != owner.node.name) {
+            simpleNanoPatterns = advancedNanoPatterns = null;
+            nanoPatternCounts = null;
+            nanoPatternModifications = modifications;
+            nanoPatternInstructions = method.instructions;
+            nanoPatternSize = method.instructions.size();
+            nanoPatternOwner = owner.node.name;
         }
-        return true;
     }
 
     /**
@@ -392,15 +664,31 @@ public class ClassMethod {
 
     /**
      * Creates a ControlFlowGraph for this method.
+     * <p>
+     * When an {@link AnalysisCache} is attached, cached retrievals are first looked up in it.
      *
      * @param cached Retrieve by cache, if the graph has been built before.
      * @return A ControlFlowGraph for this method.
      */
     public Optional<ControlFlowGraph> cfg(boolean cached) {
-        if (!cached || cfg == null) {
-            cfg = ControlFlowGraph.create(this);
+        ControlFlowGraph graph = cfg;
+        if (!cached || graph == null) {
+            //Built under the lock so that threads querying this method share a single graph.
+            synchronized (this) {
+                graph = cfg;
+                if (!cached || graph == null) {
+                    graph = (cached && analysis != null ? analysis.cfg(this) : null);
+                    if (graph == null) {
+                        graph = ControlFlowGraph.create(this);
+                        if (analysis != null) {
+                            analysis.store(this, graph);
+                        }
+                    }
+                    cfg = graph;
+                }
+            }
         }
-        return Optional.ofNullable(cfg);
+        return Optional.ofNullable(graph);
     }
 
     /**
@@ -442,14 +730,6 @@ public class ClassMethod {
         return cfg(true);
     }
 
-    /**
-     * Clears the cache of key to ClassMethod
-     */
-    public static void clearKeyCache() {
-        CACHED.clear();
-        CACHED = new ConcurrentHashMap<>();
-    }
-
     @Override
     public boolean equals(Object o) {
         return (o instanceof ClassMethod && ((ClassMethod) o).method.equals(method)) ||
@@ -460,4 +740,4 @@ public class ClassMethod {
     public int hashCode() {
         return method.hashCode();
     }
-}
\ No newline at end of file
+}
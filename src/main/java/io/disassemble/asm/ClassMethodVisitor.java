@@ -1,10 +1,15 @@
 package io.disassemble.asm;
 
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.tree.*;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.objectweb.asm.Opcodes.ASM5;
 
 /**
@@ -16,13 +21,185 @@ public class ClassMethodVisitor extends MethodVisitor {
     protected ClassMethod method;
     private int idx = 0;
     private boolean locked = false;
+    private AbstractInsnNode cursor;
 
     public ClassMethodVisitor() {
         super(ASM5, null);
     }
 
     protected AbstractInsnNode current() {
-        return method.instructions().get(idx++);
+        AbstractInsnNode cursor = this.cursor;
+        return (cursor != null ? cursor : method.instructions().get(idx++));
+    }
+
+    /**
+     * Visits the given method by walking its instructions directly, rather than replaying its MethodNode through
+     * the MethodVisitor methods. The callbacks are made in the same order as MethodNode#accept, but each
+     * instruction is passed straight to its typed visit method.
+     *
+     * @param method The method to visit.
+     */
+    void visit(ClassMethod method) {
+        this.method = method;
+        MethodNode mn = method.method;
+        visitHeader(mn);
+        if (mn.instructions.size() > 0) {
+            visitCode();
+            if (mn.tryCatchBlocks != null) {
+                for (int i = 0; i < mn.tryCatchBlocks.size(); i++) {
+                    TryCatchBlockNode tcb = mn.tryCatchBlocks.get(i);
+                    tcb.updateIndex(i);
+                    tcb.accept(this);
+                }
+            }
+            try {
+                for (AbstractInsnNode insn = mn.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                    if (locked) {
+                        break;
+                    }
+                    cursor = insn;
+                    dispatch(current());
+                }
+            } finally {
+                cursor = null;
+            }
+            if (mn.localVariables != null) {
+                for (LocalVariableNode local : mn.localVariables) {
+                    local.accept(this);
+                }
+            }
+            accept(mn.visibleLocalVariableAnnotations, true);
+            accept(mn.invisibleLocalVariableAnnotations, false);
+            visitMaxs(mn.maxStack, mn.maxLocals);
+        }
+        visitEnd();
+    }
+
+    private void visitHeader(MethodNode mn) {
+        if (mn.parameters != null) {
+            for (ParameterNode parameter : mn.parameters) {
+                visitParameter(parameter.name, parameter.access);
+            }
+        }
+        if (mn.annotationDefault != null) {
+            AnnotationVisitor av = visitAnnotationDefault();
+            if (av != null) {
+                //An unnamed value followed by visitEnd, the same as MethodNode#accept.
+                AnnotationNode value = new AnnotationNode((String) null);
+                value.values = Arrays.asList(null, mn.annotationDefault);
+                value.accept(av);
+            }
+        }
+        if (mn.visibleAnnotations != null) {
+            for (AnnotationNode an : mn.visibleAnnotations) {
+                an.accept(visitAnnotation(an.desc, true));
+            }
+        }
+        if (mn.invisibleAnnotations != null) {
+            for (AnnotationNode an : mn.invisibleAnnotations) {
+                an.accept(visitAnnotation(an.desc, false));
+            }
+        }
+        if (mn.visibleTypeAnnotations != null) {
+            for (TypeAnnotationNode an : mn.visibleTypeAnnotations) {
+                an.accept(visitTypeAnnotation(an.typeRef, an.typePath, an.desc, true));
+            }
+        }
+        if (mn.invisibleTypeAnnotations != null) {
+            for (TypeAnnotationNode an : mn.invisibleTypeAnnotations) {
+                an.accept(visitTypeAnnotation(an.typeRef, an.typePath, an.desc, false));
+            }
+        }
+        accept(mn.visibleParameterAnnotations, true);
+        accept(mn.invisibleParameterAnnotations, false);
+        if (mn.attrs != null) {
+            for (Attribute attr : mn.attrs) {
+                visitAttribute(attr);
+            }
+        }
+    }
+
+    private void accept(List<AnnotationNode>[] parameterAnnotations, boolean visible) {
+        if (parameterAnnotations != null) {
+            for (int i = 0; i < parameterAnnotations.length; i++) {
+                if (parameterAnnotations[i] != null) {
+                    for (AnnotationNode an : parameterAnnotations[i]) {
+                        an.accept(visitParameterAnnotation(i, an.desc, visible));
+                    }
+                }
+            }
+        }
+    }
+
+    private void accept(List<LocalVariableAnnotationNode> annotations, boolean visible) {
+        if (annotations != null) {
+            for (LocalVariableAnnotationNode an : annotations) {
+                an.accept(this, visible);
+            }
+        }
+    }
+
+    private void dispatch(AbstractInsnNode insn) {
+        switch (insn.getType()) {
+            case AbstractInsnNode.INSN:
+                visitInsn((InsnNode) insn);
+                break;
+            case AbstractInsnNode.INT_INSN:
+                visitIntInsn((IntInsnNode) insn);
+                break;
+            case AbstractInsnNode.VAR_INSN:
+                visitVarInsn((VarInsnNode) insn);
+                break;
+            case AbstractInsnNode.TYPE_INSN:
+                visitTypeInsn((TypeInsnNode) insn);
+                break;
+            case AbstractInsnNode.FIELD_INSN:
+                visitFieldInsn((FieldInsnNode) insn);
+                break;
+            case AbstractInsnNode.METHOD_INSN:
+                visitMethodInsn((MethodInsnNode) insn);
+                break;
+            case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+                visitInvokeDynamicInsn((InvokeDynamicInsnNode) insn);
+                break;
+            case AbstractInsnNode.JUMP_INSN:
+                visitJumpInsn((JumpInsnNode) insn);
+                break;
+            case AbstractInsnNode.LABEL:
+                visitLabel((LabelNode) insn);
+                break;
+            case AbstractInsnNode.LDC_INSN:
+                visitLdcInsn((LdcInsnNode) insn);
+                break;
+            case AbstractInsnNode.IINC_INSN:
+                visitIincInsn((IincInsnNode) insn);
+                break;
+            case AbstractInsnNode.TABLESWITCH_INSN:
+                visitTableSwitchInsn((TableSwitchInsnNode) insn);
+                break;
+            case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                visitLookupSwitchInsn((LookupSwitchInsnNode) insn);
+                break;
+            case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                visitMultiANewArrayInsn((MultiANewArrayInsnNode) insn);
+                break;
+            case AbstractInsnNode.FRAME:
+                visitFrame((FrameNode) insn);
+                break;
+            case AbstractInsnNode.LINE:
+                visitLineNumber((LineNumberNode) insn);
+                break;
+        }
+        if (insn.visibleTypeAnnotations != null) {
+            for (TypeAnnotationNode an : insn.visibleTypeAnnotations) {
+                an.accept(visitInsnAnnotation(an.typeRef, an.typePath, an.desc, true));
+            }
+        }
+        if (insn.invisibleTypeAnnotations != null) {
+            for (TypeAnnotationNode an : insn.invisibleTypeAnnotations) {
+                an.accept(visitInsnAnnotation(an.typeRef, an.typePath, an.desc, false));
+            }
+        }
     }
 
     /**
@@ -1,5 +1,6 @@
 package io.disassemble.asm;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 
 /**
@@ -7,29 +8,53 @@ import org.objectweb.asm.ClassWriter;
  * @since 6/11/16
  *
  * Allows for custom classes not included in the classloader to have their frames expanded.
+ * Common super classes are looked up in a {@link ClassHierarchy} instead of loading the classes.
  */
 public class CustomClassWriter extends ClassWriter {
 
     private final Archive archive;
+    private ClassHierarchy hierarchy;
 
+    /**
+     * Constructs a CustomClassWriter that looks up common super classes in the hierarchy of the given archive.
+     * The hierarchy is shared by every writer of the archive, and only built again after the archive is modified.
+     *
+     * @param archive The archive the written class belongs to.
+     * @param flags   The ClassWriter flags to use.
+     */
     public CustomClassWriter(Archive archive, int flags) {
         super(flags);
         this.archive = archive;
     }
 
+    public CustomClassWriter(Archive archive, ClassReader reader, int flags) {
+        super(reader, flags);
+        this.archive = archive;
+    }
+
+    /**
+     * Constructs a CustomClassWriter looking up common super classes in the given hierarchy.
+     *
+     * @param hierarchy The hierarchy of the written class' archive.
+     * @param flags     The ClassWriter flags to use.
+     */
+    public CustomClassWriter(ClassHierarchy hierarchy, int flags) {
+        super(flags);
+        this.archive = null;
+        this.hierarchy = hierarchy;
+    }
+
+    public CustomClassWriter(ClassHierarchy hierarchy, ClassReader reader, int flags) {
+        super(reader, flags);
+        this.archive = null;
+        this.hierarchy = hierarchy;
+    }
+
     @Override
     public String getCommonSuperClass(String a, String b) {
-        try {
-            return super.getCommonSuperClass(a, b);
-        } catch (Exception e) {
-            if (archive.classes().containsKey(a) && archive.classes().containsKey(b)) {
-                String aSuper = archive.classes().get(a).superName();
-                String bSuper = archive.classes().get(b).superName();
-                if (aSuper.equals(bSuper)) {
-                    return aSuper;
-                }
-            }
-            return "java/lang/Object";
+        if (hierarchy == null) {
+            hierarchy = archive.hierarchy();
         }
+        return hierarchy.commonSuperClass(a, b);
     }
 }
@@ -0,0 +1,176 @@
+package io.disassemble.asm;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A view of a map of ClassFactories as a map of ClassHandles, used by Archives that only keep ClassFactories.
+ * <p>
+ * Each factory is given a single handle for as long as it is reachable, so handles taken from this map can be
+ * compared by identity. This is the inverse of {@link ClassHandleMap}.
+ */
+class FactoryHandleMap extends AbstractMap<String, ClassHandle> implements ConcurrentMap<String, ClassHandle> {
+
+    final ConcurrentMap<String, ClassFactory> classes;
+    private final Archive archive;
+    private final Map<ClassFactory, ClassHandle> handles = Collections.synchronizedMap(new WeakHashMap<>());
+
+    FactoryHandleMap(ConcurrentMap<String, ClassFactory> classes, Archive archive) {
+        this.classes = classes;
+        this.archive = archive;
+    }
+
+    private ClassHandle handle(ClassFactory factory) {
+        if (factory == null) {
+            return null;
+        }
+        return handles.computeIfAbsent(factory, k -> new ClassHandle(k, archive.symbols()).attach(archive));
+    }
+
+    private ClassFactory factory(ClassHandle handle) {
+        ClassFactory factory = handle.factory();
+        handles.putIfAbsent(factory, handle);
+        return factory;
+    }
+
+    @Override
+    public int size() {
+        return classes.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return classes.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return classes.containsKey(key);
+    }
+
+    @Override
+    public ClassHandle get(Object key) {
+        return handle(classes.get(key));
+    }
+
+    @Override
+    public ClassHandle put(String key, ClassHandle value) {
+        return handle(classes.put(key, factory(value)));
+    }
+
+    @Override
+    public ClassHandle remove(Object key) {
+        return handle(classes.remove(key));
+    }
+
+    @Override
+    public void clear() {
+        classes.clear();
+    }
+
+    @Override
+    public ClassHandle putIfAbsent(String key, ClassHandle value) {
+        return handle(classes.putIfAbsent(key, factory(value)));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return value instanceof ClassHandle && classes.remove(key, ((ClassHandle) value).factory());
+    }
+
+    @Override
+    public boolean replace(String key, ClassHandle oldValue, ClassHandle newValue) {
+        return classes.replace(key, oldValue.factory(), factory(newValue));
+    }
+
+    @Override
+    public ClassHandle replace(String key, ClassHandle value) {
+        return handle(classes.replace(key, factory(value)));
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return classes.keySet();
+    }
+
+    @Override
+    public Collection<ClassHandle> values() {
+        return new AbstractCollection<ClassHandle>() {
+            @Override
+            public Iterator<ClassHandle> iterator() {
+                Iterator<ClassFactory> iterator = classes.values().iterator();
+                return new Iterator<ClassHandle>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public ClassHandle next() {
+                        return handle(iterator.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return classes.size();
+            }
+
+            @Override
+            public void clear() {
+                classes.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, ClassHandle>> entrySet() {
+        return new AbstractSet<Map.Entry<String, ClassHandle>>() {
+            @Override
+            public Iterator<Map.Entry<String, ClassHandle>> iterator() {
+                Iterator<Map.Entry<String, ClassFactory>> iterator = classes.entrySet().iterator();
+                return new Iterator<Map.Entry<String, ClassHandle>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, ClassHandle> next() {
+                        Map.Entry<String, ClassFactory> entry = iterator.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), handle(entry.getValue()));
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return classes.size();
+            }
+
+            @Override
+            public void clear() {
+                classes.clear();
+            }
+        };
+    }
+}
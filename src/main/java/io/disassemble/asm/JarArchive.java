@@ -1,20 +1,19 @@
 package io.disassemble.asm;
 
 import com.linkedin.parseq.MultiException;
+import io.disassemble.asm.util.MappedZipFile;
 import io.disassemble.asm.util.Security;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -29,10 +28,14 @@ import java.util.jar.Manifest;
  */
 public class JarArchive extends Archive {
 
-    private final ConcurrentHashMap<String, ClassFactory> classes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ClassHandle> handles = new ConcurrentHashMap<>();
+    private final ClassHandleMap classes = new ClassHandleMap(handles, this);
     private final ConcurrentHashMap<String, byte[]> resources = new ConcurrentHashMap<>();
+    private final SymbolTable symbols = new SymbolTable();
     private final File file;
     private Manifest manifest;
+    private Path snapshot;
+    private boolean mapped, copyThrough, lazy;
 
     /**
      * Constructs a {@code JarArchive} using the specified input file path.
@@ -60,6 +63,14 @@ public class JarArchive extends Archive {
         return classes;
     }
 
+    @Override
+    public ConcurrentMap<String, ClassHandle> handles() {
+        if (!built()) {
+            throw new IllegalStateException("The JarArchive must be built before its classes can be retrieved.");
+        }
+        return handles;
+    }
+
     @Override
     public ConcurrentMap<String, byte[]> resources() {
         if (!built()) {
@@ -68,6 +79,11 @@ public class JarArchive extends Archive {
         return resources;
     }
 
+    @Override
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
     /**
      * The jar archive file
      *
@@ -77,6 +93,119 @@ public class JarArchive extends Archive {
         return file;
     }
 
+    /**
+     * Sets this JarArchive to be built from a memory-mapped view of its file rather than through a {@code JarFile}.
+     * <p>
+     * Entries are then read and inflated concurrently instead of being opened one at a time. Archives that
+     * cannot be mapped (larger than 2GB) are still built through a {@code JarFile}.
+     *
+     * @return This JarArchive chained to be built from a memory-mapped view of its file.
+     */
+    public JarArchive mapped() {
+        if (built()) {
+            throw new IllegalStateException("The build mode of a JarArchive cannot be changed once it has been built.");
+        }
+        mapped = true;
+        return this;
+    }
+
+    /**
+     * Sets this JarArchive to keep the original bytes of every class, so that classes can be copied through
+     * when written instead of being rebuilt from their ClassNode.
+     * <p>
+     * Unmodified classes are then written byte-for-byte, and classes where only some methods were modified are
+     * written with a ClassWriter sharing the original ClassReader, so the constant pool and unmodified method
+     * bodies are copied rather than re-encoded. Classes whose header, fields or set of methods changed are still
+     * rebuilt from their ClassNode. See {@link ClassFactory#dirty()} for how modifications are tracked.
+     * <p>
+     * <b>Instructions edited in place are not detected.</b> Renames, desc and access changes made through the
+     * setters, and changes to the size of an instruction list are noticed automatically, but edits that keep the
+     * size of an instruction list, such as changing the owner of a {@code MethodInsnNode}, the constant of a
+     * {@code LdcInsnNode}, the label of a {@code JumpInsnNode} or calling {@code InsnList#set}, are silently
+     * dropped and the method's original bytes are written instead. Call {@link ClassMethod#markDirty()} after
+     * every such edit.
+     *
+     * @return This JarArchive chained to keep the original bytes of every class.
+     */
+    public JarArchive copyThrough() {
+        if (built()) {
+            throw new IllegalStateException("The build mode of a JarArchive cannot be changed once it has been built.");
+        }
+        copyThrough = true;
+        return this;
+    }
+
+    /**
+     * Sets this JarArchive to only read the header of each class when built, keeping the class' bytes instead
+     * of its ClassNode.
+     * <p>
+     * The ClassFactory of a class is then built the first time it is retrieved from {@link #classes()} or its
+     * {@link ClassHandle}, and unmodified factories can be dropped again through {@link #release()}. Classes that
+     * were never retrieved are written straight from their bytes. This implies {@link #copyThrough()}.
+     * <p>
+     * Inflated factories are kept until {@link #release()} is called, they're never released automatically
+     * under memory pressure. Visiting every class of a lazy archive therefore holds every tree in memory, the
+     * same as an archive that is not lazy, unless {@link #release()} is called along the way.
+     *
+     * @return This JarArchive chained to build the ClassFactory of each class on demand.
+     */
+    public JarArchive lazy() {
+        copyThrough();
+        lazy = true;
+        return this;
+    }
+
+    /**
+     * Sets this JarArchive to be restored from the given {@link ArchiveSnapshot} when it is built, as long as the
+     * snapshot was written for this archive's file as it currently is. Otherwise the archive is built from its
+     * file and a new snapshot is written once it has been built. This implies {@link #copyThrough()}.
+     * <p>
+     * Restored classes are read from the mapped snapshot, without inflating the jar. Their ClassFactories are
+     * built on demand when this archive is {@link #lazy()}, and in parallel when it's restored otherwise.
+     *
+     * @param snapshot The snapshot file to restore from and write to.
+     * @return This JarArchive chained to be restored from the given snapshot.
+     */
+    public JarArchive snapshot(Path snapshot) {
+        copyThrough();
+        this.snapshot = snapshot;
+        return this;
+    }
+
+    /**
+     * Writes a snapshot of this archive that can be restored through {@link #snapshot(Path)}.
+     *
+     * @param file The file to write the snapshot to.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        if (!built()) {
+            throw new IllegalStateException("You cannot write a snapshot of a JarArchive until it has been built.");
+        }
+        ArchiveSnapshot.write(this, this.file, file);
+    }
+
+    /**
+     * Drops the ClassFactory of every class that has not been modified since it was built, so that their trees
+     * can be garbage collected. This has no effect on classes whose bytes were not kept, see {@link #lazy()}
+     * and {@link #copyThrough()}.
+     * <p>
+     * ClassFactories retrieved after this call are new instances, references to released factories
+     * are no longer part of this JarArchive. Releasing is manual only, factories are never released by this
+     * JarArchive on its own.
+     *
+     * @return The amount of ClassFactories that were released.
+     */
+    public int release() {
+        int released = 0;
+        for (ClassHandle handle : handles().values()) {
+            if (handle.release()) {
+                released++;
+            }
+        }
+        return released;
+    }
+
     /**
      * Builds the class and resource maps using parallelism.
      *
@@ -111,6 +240,46 @@ public class JarArchive extends Archive {
         if (built()) {
             throw new IllegalStateException("The JarArchive cannot be built more than once.");
         }
+        if (snapshot != null && restore(parallelismThreshold)) {
+            built = true;
+        } else {
+            if (mapped && MappedZipFile.supports(file)) {
+                buildMapped(parallelismThreshold);
+            } else {
+                buildStreamed(parallelismThreshold);
+            }
+            built = true;
+            if (snapshot != null) {
+                writeSnapshot(snapshot);
+            }
+        }
+        return System.currentTimeMillis() - time;
+    }
+
+    private boolean restore(long parallelismThreshold) throws IOException {
+        ArchiveSnapshot restored;
+        try {
+            restored = ArchiveSnapshot.read(snapshot, symbols);
+        } catch (IOException e) {
+            //A malformed snapshot is replaced the same way as an outdated one.
+            return false;
+        }
+        if (restored == null || !restored.current(file)) {
+            return false;
+        }
+        restored.handles().forEach((name, handle) -> handles.put(name, handle.attach(this)));
+        resources.putAll(restored.resources());
+        if (!lazy) {
+            handles.forEach(parallelismThreshold, (name, handle) -> handle.factory());
+        }
+        byte[] manifestBytes = resources.get(JarFile.MANIFEST_NAME);
+        if (manifestBytes != null) {
+            manifest = new Manifest(new ByteArrayInputStream(manifestBytes));
+        }
+        return true;
+    }
+
+    private void buildStreamed(long parallelismThreshold) throws IOException {
         try (JarFile jar = new JarFile(file)) {
             manifest = jar.getManifest();
             ArrayList<JarEntry> entries = Collections.list(jar.entries());
@@ -127,15 +296,7 @@ public class JarArchive extends Archive {
             //Parallelism threshold is the amount of elements required before operations are performed in parallel.
             entryStreams.forEach(parallelismThreshold, (name, input) -> {
                 try {
-                    if (name.endsWith(".class")) {
-                        ClassNode cn = new ClassNode();
-                        byte[] bytes = readInputStream(input);
-                        ClassReader reader = new ClassReader(bytes);
-                        reader.accept(cn, ClassReader.SKIP_FRAMES);
-                        classes.put(name.replace(".class", ""), new ClassFactory(cn));
-                    } else {
-                        resources.put(name, readInputStream(input));
-                    }
+                    define(name, readInputStream(input));
                 } catch (IOException ioe) {
                     forEachExceptions.add(ioe);
                 } finally {
@@ -146,18 +307,61 @@ public class JarArchive extends Archive {
                     }
                 }
             });
-            if (!forEachExceptions.isEmpty()) {
-                if (forEachExceptions.size() == 1) {
-                    throw forEachExceptions.get(0);
-                } else {
-                    throw new IOException(
-                            forEachExceptions.size() + " exceptions occurred while building the class and resource maps.",
-                            new MultiException(forEachExceptions));
-                }
+            throwAll(forEachExceptions);
+        }
+    }
+
+    private void buildMapped(long parallelismThreshold) throws IOException {
+        MappedZipFile zip = new MappedZipFile(file);
+        ConcurrentHashMap<String, MappedZipFile.Entry> entries = new ConcurrentHashMap<>(zip.entries().size());
+        for (MappedZipFile.Entry entry : zip.entries()) {
+            entries.put(entry.name(), entry);
+        }
+        CopyOnWriteArrayList<IOException> forEachExceptions = new CopyOnWriteArrayList<>();
+        //Reading from the mapping doesn't lock, so every entry is read and inflated within the parallel pass.
+        entries.forEach(parallelismThreshold, (name, entry) -> {
+            try {
+                define(name, zip.read(entry));
+            } catch (IOException ioe) {
+                forEachExceptions.add(ioe);
+            }
+        });
+        throwAll(forEachExceptions);
+        byte[] manifestBytes = resources.get(JarFile.MANIFEST_NAME);
+        if (manifestBytes != null) {
+            manifest = new Manifest(new ByteArrayInputStream(manifestBytes));
+        }
+    }
+
+    private void define(String name, byte[] bytes) {
+        if (name.endsWith(".class")) {
+            ClassHandle handle;
+            if (lazy) {
+                handle = new ClassHandle(bytes, symbols);
+            } else {
+                ClassNode cn = new ClassNode();
+                ClassReader reader = new ClassReader(bytes);
+                reader.accept(cn, ClassReader.SKIP_FRAMES);
+                //Interned before the ClassFactory is built, since it tracks modifications by identity.
+                symbols.intern(cn);
+                handle = new ClassHandle(new ClassFactory(cn, (copyThrough ? bytes : null)), symbols);
+            }
+            handles.put(name.replace(".class", ""), handle.attach(this));
+        } else {
+            resources.put(name, bytes);
+        }
+    }
+
+    private static void throwAll(List<IOException> exceptions) throws IOException {
+        if (!exceptions.isEmpty()) {
+            if (exceptions.size() == 1) {
+                throw exceptions.get(0);
+            } else {
+                throw new IOException(
+                        exceptions.size() + " exceptions occurred while building the class and resource maps.",
+                        new MultiException(exceptions));
             }
         }
-        built = true;
-        return System.currentTimeMillis() - time;
     }
 
     /**
@@ -176,31 +380,65 @@ public class JarArchive extends Archive {
      *
      * @param destinationFile The file to write to.
      * @param writerFlags     The ClassWriter flags to use.
+     * @param writerFactory   The function wrapping each class' ClassWriter.
      * @throws IOException If an error occurs while manipulating an output stream
      */
     public void write(File destinationFile, int writerFlags, Function<ClassWriter, ClassVisitor> writerFactory) throws IOException {
+        write(destinationFile, writerFlags, writerFactory, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes the classes and resources to the specified file using the supplied ClassWriter flags.
+     * <p>
+     * When there are at least {@code parallelismThreshold} classes, each class is serialized and digested on the
+     * common pool while a single writer appends the finished entries to the jar. Entries are always written in
+     * order of class name, so the output does not depend on the threshold.
+     *
+     * @param destinationFile      The file to write to.
+     * @param writerFlags          The ClassWriter flags to use.
+     * @param writerFactory        The function wrapping each class' ClassWriter, this may be called from multiple threads.
+     * @param parallelismThreshold The amount of classes required before they are serialized in parallel.
+     * @throws IOException If an error occurs while manipulating an output stream
+     */
+    public void write(File destinationFile, int writerFlags, Function<ClassWriter, ClassVisitor> writerFactory,
+                      long parallelismThreshold) throws IOException {
         if (!built()) {
             throw new IllegalStateException("You cannot write a JarArchive until it has been built.");
         }
         try (JarOutputStream output = new JarOutputStream(new FileOutputStream(destinationFile))) {
             Map<String, String> hashes = new HashMap<>();
-            //TODO add an overload that allows the developer to specify whether the original class reader should be provided so that the constant pool and unmodified methods can be copied instead of rebuilt saving a significant amount of time.
-            //TODO generate the byte[] for each class concurrently. This can save significant amounts of time but care must be taken to ensure that entries are not added to the jar concurrently.
-            for (Map.Entry<String, ClassFactory> entry : classes.entrySet()) {
-                ClassFactory factory = entry.getValue();
-                String entryKey = factory.name().replaceAll("\\.", "/") + ".class";
-                output.putNextEntry(new JarEntry(entryKey));
-                ClassWriter writer = new CustomClassWriter(this, writerFlags);
-                ClassVisitor cv = writerFactory.apply(writer);
-                factory.node.accept(cv);
-                byte[] bytes = writer.toByteArray();
-                if (manifest != null) {
-                    hashes.put(entryKey, Security.b64SHA1(bytes));
+            List<ClassHandle> classes = new ArrayList<>(handles.values());
+            classes.sort(Comparator.comparing(ClassHandle::name));
+            //Shared by every writer of this archive, so common super classes are only resolved once until it changes.
+            ClassHierarchy hierarchy = hierarchy();
+            Function<ClassHandle, SerializedClass> serializer = handle -> {
+                byte[] bytes = serialize(handle, hierarchy, writerFlags, writerFactory);
+                return new SerializedClass(handle.name().replace('.', '/') + ".class", bytes,
+                        (manifest != null ? Security.b64SHA1(bytes) : null));
+            };
+            if (classes.size() < parallelismThreshold) {
+                for (ClassHandle handle : classes) {
+                    writeClass(output, hashes, serializer.apply(handle));
+                }
+            } else {
+                //Bound the amount of serialized classes waiting on the writer so memory doesn't grow with the archive.
+                int maxInFlight = ForkJoinPool.getCommonPoolParallelism() * 4;
+                Deque<CompletableFuture<SerializedClass>> pending = new ArrayDeque<>(maxInFlight);
+                try {
+                    for (ClassHandle handle : classes) {
+                        if (pending.size() >= maxInFlight) {
+                            writeClass(output, hashes, join(pending.poll()));
+                        }
+                        pending.add(CompletableFuture.supplyAsync(() -> serializer.apply(handle)));
+                    }
+                    while (!pending.isEmpty()) {
+                        writeClass(output, hashes, join(pending.poll()));
+                    }
+                } finally {
+                    pending.forEach(future -> future.cancel(false));
                 }
-                output.write(bytes);
-                output.closeEntry();
             }
-            for (Map.Entry<String, byte[]> entry : resources.entrySet()) {
+            for (Map.Entry<String, byte[]> entry : new TreeMap<>(resources).entrySet()) {
                 String key = entry.getKey();
                 byte[] bytes = entry.getValue();
                 if (key.equals("META-INF/MANIFEST.MF")) {
@@ -226,6 +464,72 @@ public class JarArchive extends Archive {
         }
     }
 
+    private static byte[] serialize(ClassHandle handle, ClassHierarchy hierarchy, int writerFlags,
+                                    Function<ClassWriter, ClassVisitor> writerFactory) {
+        if (!handle.inflated()) {
+            byte[] original = handle.bytes();
+            ClassReader reader = new ClassReader(original);
+            ClassWriter writer = new CustomClassWriter(hierarchy, reader, writerFlags);
+            ClassVisitor cv = writerFactory.apply(writer);
+            if (cv == writer) {
+                return original;
+            }
+            reader.accept(cv, 0);
+            return writer.toByteArray();
+        }
+        return serialize(handle.factory(), hierarchy, writerFlags, writerFactory);
+    }
+
+    /**
+     * Serializes the given class, copying it from its original bytes where it was not modified.
+     *
+     * @param factory       The class to serialize.
+     * @param hierarchy     The hierarchy common super classes are looked up in.
+     * @param writerFlags   The ClassWriter flags to use.
+     * @param writerFactory The function wrapping the class' ClassWriter.
+     * @return The class file.
+     */
+    static byte[] serialize(ClassFactory factory, ClassHierarchy hierarchy, int writerFlags,
+                            Function<ClassWriter, ClassVisitor> writerFactory) {
+        byte[] original = factory.bytes();
+        if (original == null || factory.structureDirty()) {
+            ClassWriter writer = new CustomClassWriter(hierarchy, writerFlags);
+            factory.node.accept(writerFactory.apply(writer));
+            return writer.toByteArray();
+        }
+        ClassReader reader = new ClassReader(original);
+        ClassWriter writer = new CustomClassWriter(hierarchy, reader, writerFlags);
+        ClassVisitor cv = writerFactory.apply(writer);
+        if (cv == writer && !factory.dirty()) {
+            return original;
+        }
+        reader.accept(new MethodReplacer(cv, factory), 0);
+        return writer.toByteArray();
+    }
+
+    private static void writeClass(JarOutputStream output, Map<String, String> hashes, SerializedClass serialized)
+            throws IOException {
+        output.putNextEntry(new JarEntry(serialized.entry));
+        if (serialized.digest != null) {
+            hashes.put(serialized.entry, serialized.digest);
+        }
+        output.write(serialized.bytes);
+        output.closeEntry();
+    }
+
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     /**
      * Writes the classes and resources back to the original file using the specified ClassWriter flags.
      *
@@ -245,4 +549,42 @@ public class JarArchive extends Archive {
     public void write() throws IOException {
         write(file, ClassWriter.COMPUTE_MAXS);
     }
+
+    private static class SerializedClass {
+
+        private final String entry;
+        private final byte[] bytes;
+        private final String digest;
+
+        private SerializedClass(String entry, byte[] bytes, String digest) {
+            this.entry = entry;
+            this.bytes = bytes;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Replaces the methods read from a class' original bytes with their ClassMethod, where they were modified.
+     * Unmodified methods are passed straight to the writer so it can copy their code.
+     */
+    private static class MethodReplacer extends ClassVisitor {
+
+        private final ClassFactory factory;
+        private int methodIndex = 0;
+
+        private MethodReplacer(ClassVisitor cv, ClassFactory factory) {
+            super(Opcodes.ASM5, cv);
+            this.factory = factory;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            ClassMethod method = factory.methods[methodIndex++];
+            if (method.dirty()) {
+                method.method.accept(cv);
+                return null;
+            }
+            return super.visitMethod(access, name, desc, signature, exceptions);
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package io.disassemble.asm;
+
+/**
+ * The key of a ClassMethod or ClassField, kept for as long as the names it was built from are unchanged.
+ * Names are compared by identity, which is cheap for symbols interned into a {@link SymbolTable}.
+ *
+ * @author Christopher Carpenter
+ */
+final class MemberKey {
+
+    final String owner, name, desc, value;
+
+    MemberKey(String owner, String name, String desc) {
+        this.owner = owner;
+        this.name = name;
+        this.desc = desc;
+        this.value = (desc != null ? owner + '.' + name + desc : owner + '.' + name);
+    }
+
+    /**
+     * Checks whether this key was built from the given names.
+     *
+     * @param owner The name of the member's class.
+     * @param name  The name of the member.
+     * @param desc  The desc of the member, or null for fields.
+     * @return true if this key was built from the given instances, otherwise false.
+     */
+    boolean matches(String owner, String name, String desc) {
+        return this.owner == owner && this.name == name && this.desc == desc;
+    }
+}
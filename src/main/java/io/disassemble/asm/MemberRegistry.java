@@ -0,0 +1,285 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves method and field references to the ClassMethods and ClassFields of an Archive.
+ * <p>
+ * References are resolved the way the JVM links them: methods are looked up in the named class, then its
+ * super classes, then its interfaces, and fields are looked up in the named class, then its interfaces, then
+ * its super classes. Resolved members, including references to members outside of the archive, are cached by
+ * the ids of their owner, name and desc within the archive's {@link SymbolTable}, which adds the names of
+ * references to members outside of the archive to the table. They're cached until a class or member of the
+ * archive is modified. Modifications to other archives are not seen. The members declared by each class are
+ * looked up through a map keyed by the ids of their name and desc, built the first time the class is searched.
+ *
+ * @author Christopher Carpenter
+ */
+public class MemberRegistry {
+
+    private static final Object MISSING = new Object();
+
+    private final Archive archive;
+    private final Map<String, ClassHandle> handles;
+    private final SymbolTable symbols;
+    private final ConcurrentHashMap<Member, Object> methods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Member, Object> fields = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ClassFactory, Declared> declared = new ConcurrentHashMap<>();
+    private volatile long modifications;
+
+    /**
+     * Constructs a MemberRegistry for the classes of the given Archive.
+     *
+     * @param archive The archive to resolve members within.
+     */
+    public MemberRegistry(Archive archive) {
+        this.archive = archive;
+        this.handles = archive.handles();
+        this.symbols = archive.symbols();
+        this.modifications = archive.modifications();
+    }
+
+    /**
+     * Resolves the method with the given key.
+     *
+     * @param key The key of the method, see {@link ClassMethod#key()}.
+     * @return The resolved method, or null if it's not within the archive.
+     */
+    public ClassMethod method(String key) {
+        int descIndex = key.indexOf('(');
+        int nameIndex = key.lastIndexOf('.', descIndex);
+        if (descIndex == -1 || nameIndex == -1) {
+            return null;
+        }
+        return method(key.substring(0, nameIndex), key.substring(nameIndex + 1, descIndex), key.substring(descIndex));
+    }
+
+    /**
+     * Resolves the method called by the given instruction.
+     *
+     * @param min The instruction to resolve.
+     * @return The resolved method, or null if it's not within the archive.
+     */
+    public ClassMethod method(MethodInsnNode min) {
+        return method(min.owner, min.name, min.desc);
+    }
+
+    /**
+     * Resolves the given method reference.
+     *
+     * @param owner The class the method is referenced through.
+     * @param name  The name of the method.
+     * @param desc  The desc of the method.
+     * @return The resolved method, or null if it's not within the archive.
+     */
+    public ClassMethod method(String owner, String name, String desc) {
+        validate();
+        Member member = member(owner, name, desc);
+        Object cached = methods.get(member);
+        if (cached instanceof ClassMethod) {
+            ClassMethod method = (ClassMethod) cached;
+            if (method.name().equals(name) && method.desc().equals(desc)) {
+                return method;
+            }
+        } else if (cached == MISSING) {
+            return null;
+        }
+        ClassMethod method = resolveMethod(owner, SymbolTable.pair(member.name, member.desc));
+        methods.put(member, (method != null ? method : MISSING));
+        return method;
+    }
+
+    /**
+     * Resolves the field accessed by the given instruction.
+     *
+     * @param fin The instruction to resolve.
+     * @return The resolved field, or null if it's not within the archive.
+     */
+    public ClassField field(FieldInsnNode fin) {
+        return field(fin.owner, fin.name, fin.desc);
+    }
+
+    /**
+     * Resolves the given field reference.
+     *
+     * @param owner The class the field is referenced through.
+     * @param name  The name of the field.
+     * @param desc  The desc of the field, or null to match any desc.
+     * @return The resolved field, or null if it's not within the archive.
+     */
+    public ClassField field(String owner, String name, String desc) {
+        validate();
+        Member member = member(owner, name, desc);
+        Object cached = fields.get(member);
+        if (cached instanceof ClassField) {
+            ClassField field = (ClassField) cached;
+            if (field.name().equals(name) && (desc == null || field.desc().equals(desc))) {
+                return field;
+            }
+        } else if (cached == MISSING) {
+            return null;
+        }
+        ClassField field = resolveField(owner, member.name, member.desc, new HashSet<>());
+        fields.put(member, (field != null ? field : MISSING));
+        return field;
+    }
+
+    /**
+     * Drops every resolved member.
+     */
+    public void clear() {
+        methods.clear();
+        fields.clear();
+        declared.clear();
+    }
+
+    private void validate() {
+        long current = archive.modifications();
+        if (current != modifications) {
+            clear();
+            modifications = current;
+        }
+    }
+
+    private Member member(String owner, String name, String desc) {
+        return new Member(symbols.id(owner), symbols.id(name), (desc != null ? symbols.id(desc) : -1));
+    }
+
+    private ClassFactory factory(String name) {
+        ClassHandle handle = (name != null ? handles.get(name) : null);
+        return (handle != null ? handle.factory() : null);
+    }
+
+    private Declared declared(ClassFactory factory) {
+        Declared members = declared.get(factory);
+        if (members == null || members.modifications != factory.modifications() ||
+                members.methods != factory.methods || members.fields != factory.fields) {
+            declared.put(factory, members = new Declared(factory));
+        }
+        return members;
+    }
+
+    private ClassMethod resolveMethod(String owner, long key) {
+        Set<String> visited = new LinkedHashSet<>();
+        for (String current = owner; current != null && visited.add(current); ) {
+            ClassFactory factory = factory(current);
+            if (factory == null) {
+                break;
+            }
+            ClassMethod method = declared(factory).methodKeys.get(key);
+            if (method != null) {
+                return method;
+            }
+            current = factory.superName();
+        }
+        Deque<String> pending = new ArrayDeque<>(visited);
+        visited.clear();
+        while (!pending.isEmpty()) {
+            ClassFactory factory = factory(pending.poll());
+            if (factory == null) {
+                continue;
+            }
+            for (String iface : factory.interfaces()) {
+                if (visited.add(iface)) {
+                    ClassFactory ifaceFactory = factory(iface);
+                    if (ifaceFactory != null) {
+                        ClassMethod method = declared(ifaceFactory).methodKeys.get(key);
+                        if (method != null) {
+                            return method;
+                        }
+                        pending.add(iface);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private ClassField resolveField(String owner, int name, int desc, Set<String> visited) {
+        if (!visited.add(owner)) {
+            return null;
+        }
+        ClassFactory factory = factory(owner);
+        if (factory == null) {
+            return null;
+        }
+        Declared members = declared(factory);
+        ClassField field = (desc != -1 ? members.fieldKeys.get(SymbolTable.pair(name, desc)) :
+                members.fieldNames.get(name));
+        if (field != null) {
+            return field;
+        }
+        for (String iface : factory.interfaces()) {
+            field = resolveField(iface, name, desc, visited);
+            if (field != null) {
+                return field;
+            }
+        }
+        return (factory.superName() != null ? resolveField(factory.superName(), name, desc, visited) : null);
+    }
+
+    /**
+     * The members declared by a class, keyed by the ids of their name and desc, along with what they were read from.
+     */
+    private class Declared {
+
+        private final ClassMethod[] methods;
+        private final ClassField[] fields;
+        private final int modifications;
+        private final Map<Long, ClassMethod> methodKeys = new HashMap<>();
+        private final Map<Long, ClassField> fieldKeys = new HashMap<>();
+        private final Map<Integer, ClassField> fieldNames = new HashMap<>();
+
+        private Declared(ClassFactory factory) {
+            this.methods = factory.methods;
+            this.fields = factory.fields;
+            this.modifications = factory.modifications();
+            for (ClassMethod method : methods) {
+                methodKeys.putIfAbsent(SymbolTable.pair(symbols.id(method.name()), symbols.id(method.desc())), method);
+            }
+            for (ClassField field : fields) {
+                int name = symbols.id(field.name());
+                fieldKeys.putIfAbsent(SymbolTable.pair(name, symbols.id(field.desc())), field);
+                fieldNames.putIfAbsent(name, field);
+            }
+        }
+    }
+
+    /**
+     * A member reference, keyed by the ids of its owner, name and desc within the archive's {@link SymbolTable}.
+     */
+    private static class Member {
+
+        private final int owner, name, desc;
+
+        private Member(int owner, int name, int desc) {
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Member)) {
+                return false;
+            }
+            Member member = (Member) o;
+            return owner == member.owner && name == member.name && desc == member.desc;
+        }
+
+        @Override
+        public int hashCode() {
+            return (owner * 31 + name) * 31 + desc;
+        }
+    }
+}
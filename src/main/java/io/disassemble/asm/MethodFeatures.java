@@ -0,0 +1,256 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.tree.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * The instruction counts and control flow features of a method, computed in a single pass over its instructions.
+ * <p>
+ * These are retrieved through {@link ClassMethod#features()}, which recomputes them once the method is marked as
+ * modified or the size of its instruction list changes. A MethodFeatures is never modified after it's computed.
+ *
+ * @author Christopher Carpenter
+ */
+public final class MethodFeatures {
+
+    private final int[] opcodes = new int[256];
+    private final int[] types = new int[16];
+    private final int size;
+    private final int pseudoInstructions;
+    private final int maxStack, maxLocals;
+    private int localsUsed;
+    private int conditionalJumps, switchCases;
+    private int backEdges, sharedJumpTargets;
+
+    final InsnList instructions;
+    final int modifications;
+
+    MethodFeatures(MethodNode method, int modifications) {
+        this.instructions = method.instructions;
+        this.modifications = modifications;
+        this.maxStack = method.maxStack;
+        this.maxLocals = method.maxLocals;
+        Set<LabelNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<LabelNode> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        int size = 0, pseudoInstructions = 0;
+        for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            size++;
+            int opcode = insn.getOpcode();
+            if (opcode == -1) {
+                pseudoInstructions++;
+            } else {
+                opcodes[opcode]++;
+            }
+            types[insn.getType()]++;
+            switch (insn.getType()) {
+                case AbstractInsnNode.LABEL:
+                    visited.add((LabelNode) insn);
+                    break;
+                case AbstractInsnNode.VAR_INSN:
+                    int width = (opcode == LLOAD || opcode == DLOAD || opcode == LSTORE || opcode == DSTORE ? 2 : 1);
+                    localsUsed = Math.max(localsUsed, ((VarInsnNode) insn).var + width);
+                    break;
+                case AbstractInsnNode.IINC_INSN:
+                    localsUsed = Math.max(localsUsed, ((IincInsnNode) insn).var + 1);
+                    break;
+                case AbstractInsnNode.JUMP_INSN:
+                    LabelNode label = ((JumpInsnNode) insn).label;
+                    if (opcode != GOTO && opcode != JSR) {
+                        conditionalJumps++;
+                    }
+                    if (!targets.add(label)) {
+                        sharedJumpTargets++;
+                    }
+                    if (visited.contains(label)) {
+                        backEdges++;
+                    }
+                    break;
+                case AbstractInsnNode.TABLESWITCH_INSN:
+                    TableSwitchInsnNode tsin = (TableSwitchInsnNode) insn;
+                    switchCases += tsin.labels.size();
+                    backEdges += backEdges(visited, tsin.dflt, tsin.labels);
+                    break;
+                case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                    LookupSwitchInsnNode lsin = (LookupSwitchInsnNode) insn;
+                    switchCases += lsin.labels.size();
+                    backEdges += backEdges(visited, lsin.dflt, lsin.labels);
+                    break;
+                default:
+                    break;
+            }
+        }
+        this.size = size;
+        this.pseudoInstructions = pseudoInstructions;
+    }
+
+    private static int backEdges(Set<LabelNode> visited, LabelNode dflt, Iterable<?> labels) {
+        int edges = (visited.contains(dflt) ? 1 : 0);
+        for (Object label : labels) {
+            if (visited.contains(label)) {
+                edges++;
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Gets the amount of instructions, including labels, line numbers and frames.
+     *
+     * @return The amount of instructions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the amount of instructions matching the given opcode.
+     *
+     * @param opcode The opcode to match, or -1 to match labels, line numbers and frames.
+     * @return The amount of instructions matching the given opcode.
+     */
+    public int count(int opcode) {
+        if (opcode == -1) {
+            return pseudoInstructions;
+        }
+        return (opcode >= 0 && opcode < opcodes.length ? opcodes[opcode] : 0);
+    }
+
+    /**
+     * Gets the amount of instructions whose opcode is within the given range.
+     *
+     * @param first The first opcode to match.
+     * @param last  The last opcode to match, inclusive.
+     * @return The amount of instructions whose opcode is within the given range.
+     */
+    public int count(int first, int last) {
+        int count = 0;
+        for (int opcode = Math.max(first, 0); opcode <= last && opcode < opcodes.length; opcode++) {
+            count += opcodes[opcode];
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount of instructions of each opcode.
+     *
+     * @return The amount of instructions of each opcode, indexed by opcode.
+     */
+    public int[] opcodes() {
+        return Arrays.copyOf(opcodes, opcodes.length);
+    }
+
+    /**
+     * Gets the amount of instructions of the given type.
+     *
+     * @param type The type to match, such as {@link AbstractInsnNode#JUMP_INSN}.
+     * @return The amount of instructions of the given type.
+     */
+    public int typeCount(int type) {
+        return (type >= 0 && type < types.length ? types[type] : 0);
+    }
+
+    /**
+     * Gets the amount of method invocations, including invokedynamic.
+     *
+     * @return The amount of method invocations.
+     */
+    public int invocations() {
+        return count(INVOKEVIRTUAL, INVOKEDYNAMIC);
+    }
+
+    /**
+     * Gets the amount of jumps, conditional or not.
+     *
+     * @return The amount of jumps.
+     */
+    public int jumps() {
+        return types[AbstractInsnNode.JUMP_INSN];
+    }
+
+    /**
+     * Gets the amount of conditional jumps.
+     *
+     * @return The amount of conditional jumps.
+     */
+    public int conditionalJumps() {
+        return conditionalJumps;
+    }
+
+    /**
+     * Gets the amount of tableswitch and lookupswitch instructions.
+     *
+     * @return The amount of switches.
+     */
+    public int switches() {
+        return types[AbstractInsnNode.TABLESWITCH_INSN] + types[AbstractInsnNode.LOOKUPSWITCH_INSN];
+    }
+
+    /**
+     * Gets the amount of cases within every switch, excluding their defaults.
+     *
+     * @return The amount of switch cases.
+     */
+    public int switchCases() {
+        return switchCases;
+    }
+
+    /**
+     * Gets the amount of branches, whether jumps or switch cases, that lead to an earlier instruction.
+     *
+     * @return The amount of backward branches.
+     */
+    public int backEdges() {
+        return backEdges;
+    }
+
+    /**
+     * Gets the amount of jumps to a label that an earlier jump also leads to.
+     *
+     * @return The amount of jumps to a label that an earlier jump also leads to.
+     */
+    public int sharedJumpTargets() {
+        return sharedJumpTargets;
+    }
+
+    /**
+     * Gets the standard complexity, as given by {@link io.disassemble.asm.visitor.ComplexityVisitor#complexity()}.
+     *
+     * @return One more than the amount of conditional jumps and switch cases.
+     */
+    public int complexity() {
+        return 1 + conditionalJumps + switchCases;
+    }
+
+    /**
+     * Gets the maximum stack size, as read from the class file.
+     *
+     * @return The maximum stack size.
+     */
+    public int maxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Gets the maximum amount of local variable slots, as read from the class file.
+     *
+     * @return The maximum amount of local variable slots.
+     */
+    public int maxLocals() {
+        return maxLocals;
+    }
+
+    /**
+     * Gets the amount of local variable slots up to and including the highest one loaded, stored or incremented.
+     *
+     * @return The amount of local variable slots used by the instructions.
+     */
+    public int localsUsed() {
+        return localsUsed;
+    }
+}
@@ -0,0 +1,137 @@
+package io.disassemble.asm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The nano-pattern masks of every method within a map of classes, so that methods can be searched by the patterns
+ * they use with a scan over the masks.
+ * <p>
+ * Masks are read from {@link ClassMethod#nanoPatterns()}. The masks of a class are read again once it or one of
+ * its methods is marked as modified, modifications to other Archives are not seen. Classes added to or removed
+ * from the Archive are picked up on the next query. All queries are synchronized.
+ *
+ * @author Christopher Carpenter
+ */
+public class NanoPatternIndex {
+
+    private final Map<String, ClassFactory> classes;
+    private final Map<ClassFactory, IndexedClass> indexed = new IdentityHashMap<>();
+    private final Set<ClassFactory> changes = ConcurrentHashMap.newKeySet();
+    private int classCount = -1;
+
+    /**
+     * Constructs a NanoPatternIndex for the classes of the given Archive, matching the patterns of every method on
+     * the first query.
+     *
+     * @param archive The archive to index.
+     */
+    NanoPatternIndex(Archive archive) {
+        this.classes = archive.classes();
+    }
+
+    /**
+     * Notes that the given class was modified or removed, so that its masks are read again before the next query.
+     *
+     * @param factory The modified class.
+     * @param present Whether the class is still part of the Archive or not.
+     */
+    void modified(ClassFactory factory, boolean present) {
+        changes.add(factory);
+    }
+
+    private void update() {
+        if (classes.size() != classCount) {
+            indexed.clear();
+            changes.clear();
+            classCount = classes.size();
+        } else {
+            for (ClassFactory factory : changes) {
+                changes.remove(factory);
+                indexed.remove(factory);
+            }
+        }
+    }
+
+    private IndexedClass indexed(ClassFactory factory) {
+        //Classes that were modified, added or inflated in place of a released class are matched again here.
+        IndexedClass indexed = this.indexed.get(factory);
+        if (indexed == null || indexed.methods != factory.methods) {
+            this.indexed.put(factory, indexed = new IndexedClass(factory.methods));
+        }
+        return indexed;
+    }
+
+    /**
+     * Finds the methods using every pattern within one mask and none of the patterns within another.
+     *
+     * @param required The mask of the patterns the methods must use, see {@link ClassMethod#nanoPatternMask}.
+     * @param excluded The mask of the patterns the methods must not use.
+     * @return The methods using every required pattern and no excluded pattern.
+     */
+    public synchronized List<ClassMethod> find(long required, long excluded) {
+        update();
+        List<ClassMethod> found = new ArrayList<>();
+        for (ClassFactory factory : classes.values()) {
+            IndexedClass indexed = indexed(factory);
+            for (int i = 0; i < indexed.masks.length; i++) {
+                if ((indexed.masks[i] & required) == required && (indexed.masks[i] & excluded) == 0) {
+                    found.add(indexed.methods[i]);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the methods using every one of the given patterns.
+     *
+     * @param patterns The names of the patterns the methods must use.
+     * @return The methods using every one of the given patterns.
+     * @throws IllegalArgumentException if a pattern is unknown.
+     */
+    public List<ClassMethod> find(String... patterns) {
+        return find(ClassMethod.nanoPatternMask(patterns), 0);
+    }
+
+    /**
+     * Counts the methods using every pattern within one mask and none of the patterns within another.
+     *
+     * @param required The mask of the patterns the methods must use, see {@link ClassMethod#nanoPatternMask}.
+     * @param excluded The mask of the patterns the methods must not use.
+     * @return The amount of methods using every required pattern and no excluded pattern.
+     */
+    public synchronized int count(long required, long excluded) {
+        update();
+        int count = 0;
+        for (ClassFactory factory : classes.values()) {
+            for (long mask : indexed(factory).masks) {
+                if ((mask & required) == required && (mask & excluded) == 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The masks of the methods of a class, in the order of its methods.
+     */
+    private static class IndexedClass {
+
+        private final ClassMethod[] methods;
+        private final long[] masks;
+
+        private IndexedClass(ClassMethod[] methods) {
+            this.methods = methods;
+            this.masks = new long[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                masks[i] = methods[i].nanoPatterns();
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the methods that reference each method, field and class within the classes of an Archive.
+ * <p>
+ * The index is built once, and a class is re-indexed when it or one of its members is marked as modified through
+ * {@link ClassMethod#markDirty()}, {@link ClassFactory#markDirty()} or one of the setters that call them. Only the
+ * entries of the modified class are updated, modifications to other Archives are not seen. Instructions edited
+ * directly must be followed by a call to {@link ClassMethod#markDirty()} to be picked up. Classes added to or
+ * removed from the Archive are picked up on the next query.
+ * <p>
+ * Owners, names and classes are keyed by their ids within the Archive's {@link SymbolTable}, so indexing an
+ * instruction doesn't build a String. All queries are synchronized, and return snapshots that are not updated
+ * by later modifications.
+ *
+ * @author Christopher Carpenter
+ */
+public class ReferenceIndex {
+
+    private final Map<String, ClassFactory> classes;
+    private final SymbolTable symbols;
+    private final Map<Long, Set<ClassMethod>> methodReferences = new HashMap<>();
+    private final Map<Long, Set<ClassMethod>> fieldReferences = new HashMap<>();
+    private final Map<Long, Set<ClassMethod>> typeReferences = new HashMap<>();
+    private final Map<String, Set<String>> subclasses = new HashMap<>();
+    private final Map<ClassFactory, IndexedClass> indexed = new IdentityHashMap<>();
+    private final ConcurrentHashMap<ClassFactory, Boolean> changes = new ConcurrentHashMap<>();
+    private int classCount = -1;
+
+    /**
+     * Constructs a ReferenceIndex for the classes of the given Archive, indexing every method.
+     *
+     * @param archive The archive to index.
+     */
+    ReferenceIndex(Archive archive) {
+        this.classes = archive.classes();
+        this.symbols = archive.symbols();
+        update();
+    }
+
+    /**
+     * Notes that the given class was modified or removed, so that it's re-indexed before the next query.
+     *
+     * @param factory The class that was modified.
+     * @param present true if the class is still part of the Archive, false if it was removed.
+     */
+    void modified(ClassFactory factory, boolean present) {
+        changes.put(factory, present);
+    }
+
+    private void update() {
+        if (classes.size() != classCount) {
+            methodReferences.clear();
+            fieldReferences.clear();
+            typeReferences.clear();
+            subclasses.clear();
+            indexed.clear();
+            for (ClassFactory factory : classes.values()) {
+                index(factory);
+            }
+            //Every class was just indexed as it currently is.
+            changes.clear();
+            classCount = classes.size();
+            return;
+        }
+        for (Map.Entry<ClassFactory, Boolean> entry : changes.entrySet()) {
+            ClassFactory factory = entry.getKey();
+            boolean present = entry.getValue();
+            changes.remove(factory, present);
+            IndexedClass previous = indexed.remove(factory);
+            if (previous != null) {
+                remove(previous);
+            }
+            if (present) {
+                index(factory);
+            } else if (previous != null) {
+                //A released class is still part of the Archive, so the factory built in its place is indexed.
+                ClassFactory current = classes.get(previous.name);
+                if (current != null && !indexed.containsKey(current)) {
+                    index(current);
+                    changes.remove(current, true);
+                }
+            }
+        }
+    }
+
+    private void index(ClassFactory factory) {
+        IndexedClass entry = new IndexedClass(factory.name(), factory.superName());
+        if (entry.superName != null) {
+            subclasses.computeIfAbsent(entry.superName, k -> new LinkedHashSet<>()).add(entry.name);
+        }
+        for (ClassMethod method : factory.methods) {
+            entry.methods.add(index(method));
+        }
+        indexed.put(factory, entry);
+    }
+
+    private void remove(IndexedClass entry) {
+        if (entry.superName != null) {
+            Set<String> children = subclasses.get(entry.superName);
+            if (children != null) {
+                children.remove(entry.name);
+                if (children.isEmpty()) {
+                    subclasses.remove(entry.superName);
+                }
+            }
+        }
+        for (IndexedMethod method : entry.methods) {
+            remove(method);
+        }
+    }
+
+    private IndexedMethod index(ClassMethod method) {
+        IndexedMethod entry = new IndexedMethod(method);
+        for (AbstractInsnNode ain : method.instructions().toArray()) {
+            if (ain instanceof MethodInsnNode) {
+                MethodInsnNode min = (MethodInsnNode) ain;
+                add(methodReferences, member(min.owner, min.name), method, entry.methods);
+                addType(min.owner, method, entry);
+                addDesc(min.desc, method, entry);
+            } else if (ain instanceof FieldInsnNode) {
+                FieldInsnNode fin = (FieldInsnNode) ain;
+                add(fieldReferences, member(fin.owner, fin.name), method, entry.fields);
+                addType(fin.owner, method, entry);
+                addDesc(fin.desc, method, entry);
+            } else if (ain instanceof TypeInsnNode) {
+                addType(((TypeInsnNode) ain).desc, method, entry);
+            } else if (ain instanceof MultiANewArrayInsnNode) {
+                addDesc(((MultiANewArrayInsnNode) ain).desc, method, entry);
+            } else if (ain instanceof InvokeDynamicInsnNode) {
+                addDesc(((InvokeDynamicInsnNode) ain).desc, method, entry);
+            } else if (ain instanceof LdcInsnNode) {
+                Object cst = ((LdcInsnNode) ain).cst;
+                if (cst instanceof Type) {
+                    addDesc(((Type) cst).getDescriptor(), method, entry);
+                } else if (cst instanceof String) {
+                    // Strings such as "owner.name(desc)" are renamed along with their owner.
+                    String string = (String) cst;
+                    int dot = string.indexOf('.');
+                    if (dot > 0 && string.contains("(")) {
+                        add(typeReferences, symbols.id(string.substring(0, dot)), method, entry.types);
+                    }
+                }
+            }
+        }
+        return entry;
+    }
+
+    private void addType(String internalName, ClassMethod method, IndexedMethod entry) {
+        if (internalName.startsWith("[")) {
+            addDesc(internalName, method, entry);
+        } else {
+            add(typeReferences, symbols.id(internalName), method, entry.types);
+        }
+    }
+
+    private void addDesc(String desc, ClassMethod method, IndexedMethod entry) {
+        int start;
+        int end = 0;
+        while ((start = desc.indexOf('L', end)) != -1 && (end = desc.indexOf(';', start)) != -1) {
+            add(typeReferences, symbols.id(desc.substring(start + 1, end)), method, entry.types);
+        }
+    }
+
+    private long member(String owner, String name) {
+        return SymbolTable.pair(symbols.id(owner), symbols.id(name));
+    }
+
+    private static void add(Map<Long, Set<ClassMethod>> references, long key, ClassMethod method,
+                            List<Long> keys) {
+        if (references.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(method)) {
+            keys.add(key);
+        }
+    }
+
+    private void remove(IndexedMethod entry) {
+        remove(methodReferences, entry.methods, entry.method);
+        remove(fieldReferences, entry.fields, entry.method);
+        remove(typeReferences, entry.types, entry.method);
+    }
+
+    private static void remove(Map<Long, Set<ClassMethod>> references, List<Long> keys, ClassMethod method) {
+        for (Long key : keys) {
+            Set<ClassMethod> methods = references.get(key);
+            if (methods != null) {
+                methods.remove(method);
+                if (methods.isEmpty()) {
+                    references.remove(key);
+                }
+            }
+        }
+    }
+
+    private long find(String owner, String name) {
+        int ownerId = symbols.find(owner);
+        int nameId = symbols.find(name);
+        return (ownerId != -1 && nameId != -1 ? SymbolTable.pair(ownerId, nameId) : -1);
+    }
+
+    private static Set<ClassMethod> lookup(Map<Long, Set<ClassMethod>> references, long key) {
+        Set<ClassMethod> methods = (key != -1 ? references.get(key) : null);
+        return (methods != null ? new LinkedHashSet<>(methods) : new LinkedHashSet<>());
+    }
+
+    /**
+     * Gets the methods containing a method instruction with the given owner and name, regardless of its desc.
+     *
+     * @param owner The owner of the called method.
+     * @param name  The name of the called method.
+     * @return The methods calling a method with the given owner and name.
+     */
+    public synchronized Set<ClassMethod> methodsCalling(String owner, String name) {
+        update();
+        return lookup(methodReferences, find(owner, name));
+    }
+
+    /**
+     * Gets the methods containing a field instruction with the given owner and name, regardless of its desc.
+     *
+     * @param owner The owner of the accessed field.
+     * @param name  The name of the accessed field.
+     * @return The methods accessing a field with the given owner and name.
+     */
+    public synchronized Set<ClassMethod> methodsAccessing(String owner, String name) {
+        update();
+        return lookup(fieldReferences, find(owner, name));
+    }
+
+    /**
+     * Gets the methods whose instructions reference the given class, either as an owner, a type or within a desc.
+     *
+     * @param name The internal name of the class.
+     * @return The methods whose instructions reference the given class.
+     */
+    public synchronized Set<ClassMethod> methodsReferencing(String name) {
+        update();
+        return lookup(typeReferences, symbols.find(name));
+    }
+
+    /**
+     * Gets the names of the classes that extend the given class, directly or indirectly.
+     *
+     * @param name The internal name of the class.
+     * @return The names of the classes that extend the given class.
+     */
+    public synchronized Set<String> subclasses(String name) {
+        update();
+        Set<String> result = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(name);
+        while (!pending.isEmpty()) {
+            Set<String> children = subclasses.get(pending.poll());
+            if (children != null) {
+                for (String child : children) {
+                    if (result.add(child)) {
+                        pending.add(child);
+                    }
+                }
+            }
+        }
+        result.remove(name);
+        return result;
+    }
+
+    /**
+     * Gets the instructions calling the method with the given key.
+     *
+     * @param key The key of the method, in the form of {@link ClassMethod#key()}.
+     * @return The instructions calling the method with the given key.
+     */
+    public List<MethodInsnNode> callers(String key) {
+        int nameStart = key.indexOf('.');
+        int descStart = key.indexOf('(', nameStart);
+        List<MethodInsnNode> callers = new ArrayList<>();
+        for (ClassMethod method : methodsCalling(key.substring(0, nameStart), key.substring(nameStart + 1, descStart))) {
+            for (AbstractInsnNode ain : method.instructions().toArray()) {
+                if (ain instanceof MethodInsnNode) {
+                    MethodInsnNode min = (MethodInsnNode) ain;
+                    if ((min.owner + '.' + min.name + min.desc).equals(key)) {
+                        callers.add(min);
+                    }
+                }
+            }
+        }
+        return callers;
+    }
+
+    /**
+     * Gets the instructions accessing the given field through its declaring class.
+     *
+     * @param field The field to find accesses of.
+     * @return The instructions accessing the given field.
+     */
+    public List<FieldInsnNode> accessors(ClassField field) {
+        List<FieldInsnNode> accessors = new ArrayList<>();
+        for (ClassMethod method : methodsAccessing(field.owner.name(), field.name())) {
+            for (AbstractInsnNode ain : method.instructions().toArray()) {
+                if (ain instanceof FieldInsnNode) {
+                    FieldInsnNode fin = (FieldInsnNode) ain;
+                    if (fin.owner.equals(field.owner.name()) && fin.name.equals(field.name()) &&
+                            fin.desc.equals(field.desc())) {
+                        accessors.add(fin);
+                    }
+                }
+            }
+        }
+        return accessors;
+    }
+
+    /**
+     * The name and superName a class was indexed under, along with its indexed methods.
+     */
+    private static class IndexedClass {
+
+        private final String name, superName;
+        private final List<IndexedMethod> methods = new ArrayList<>();
+
+        private IndexedClass(String name, String superName) {
+            this.name = name;
+            this.superName = superName;
+        }
+    }
+
+    /**
+     * The keys a method was indexed under, so it can be removed again once its class is modified.
+     */
+    private static class IndexedMethod {
+
+        private final ClassMethod method;
+        private final List<Long> methods = new ArrayList<>();
+        private final List<Long> fields = new ArrayList<>();
+        private final List<Long> types = new ArrayList<>();
+
+        private IndexedMethod(ClassMethod method) {
+            this.method = method;
+        }
+    }
+}
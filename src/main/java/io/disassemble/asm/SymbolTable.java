@@ -0,0 +1,195 @@
+package io.disassemble.asm;
+
+import org.objectweb.asm.tree.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of the class names, member names and descriptors used by the classes of an archive, so that every
+ * occurrence of a symbol shares a single String instance.
+ * <p>
+ * Each symbol is given a stable id when it is first interned, ids are dense and start at 0. {@link ReferenceIndex}
+ * and {@link MemberRegistry} key their entries by these ids rather than by the symbols themselves. Classes are
+ * interned as they're read, so names and descs taken from the same archive can be compared by identity.
+ * Interning is thread-safe.
+ *
+ * @author Christopher Carpenter
+ */
+public class SymbolTable {
+
+    private final ConcurrentHashMap<String, Symbol> symbols = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private String[] values = new String[1024];
+
+    /**
+     * Gets the shared instance of the given string, adding it to this table if it's not present.
+     *
+     * @param value The string to intern.
+     * @return The shared instance of the given string, or null if the given string is null.
+     */
+    public String intern(String value) {
+        return (value != null ? symbol(value).value : null);
+    }
+
+    /**
+     * Gets the id of the given string, adding it to this table if it's not present.
+     *
+     * @param value The string to get the id of.
+     * @return The id of the given string.
+     */
+    public int id(String value) {
+        return symbol(value).id;
+    }
+
+    /**
+     * Gets the id of the given string, without adding it to this table.
+     *
+     * @param value The string to get the id of.
+     * @return The id of the given string, or -1 if it's not within this table.
+     */
+    public int find(String value) {
+        Symbol symbol = (value != null ? symbols.get(value) : null);
+        return (symbol != null ? symbol.id : -1);
+    }
+
+    /**
+     * Combines two ids into a single key, such as the ids of a member's owner and name.
+     *
+     * @param first  The first id.
+     * @param second The second id.
+     * @return The key combining both ids.
+     */
+    static long pair(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the string with the given id.
+     *
+     * @param id The id of the string.
+     * @return The string with the given id, or null if no string has the given id.
+     */
+    public synchronized String symbol(int id) {
+        return (id >= 0 && id < values.length ? values[id] : null);
+    }
+
+    /**
+     * Gets the amount of strings within this table.
+     *
+     * @return The amount of strings within this table.
+     */
+    public int size() {
+        return symbols.size();
+    }
+
+    private Symbol symbol(String value) {
+        Symbol symbol = symbols.get(value);
+        if (symbol == null) {
+            symbol = symbols.computeIfAbsent(value, k -> {
+                Symbol created = new Symbol(k, nextId.getAndIncrement());
+                record(created);
+                return created;
+            });
+        }
+        return symbol;
+    }
+
+    private synchronized void record(Symbol symbol) {
+        if (symbol.id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, symbol.id + 1));
+        }
+        values[symbol.id] = symbol.value;
+    }
+
+    /**
+     * Replaces the names, descs and owners within the given class with their shared instances. This must be done
+     * before the class is wrapped in a ClassFactory, which tracks modifications by identity.
+     *
+     * @param node The class to intern.
+     */
+    public void intern(ClassNode node) {
+        node.name = intern(node.name);
+        node.superName = intern(node.superName);
+        intern(node.interfaces);
+        node.outerClass = intern(node.outerClass);
+        for (InnerClassNode inner : node.innerClasses) {
+            inner.name = intern(inner.name);
+            inner.outerName = intern(inner.outerName);
+            inner.innerName = intern(inner.innerName);
+        }
+        for (FieldNode field : node.fields) {
+            field.name = intern(field.name);
+            field.desc = intern(field.desc);
+        }
+        for (MethodNode method : node.methods) {
+            method.name = intern(method.name);
+            method.desc = intern(method.desc);
+            intern(method.exceptions);
+            if (method.tryCatchBlocks != null) {
+                for (TryCatchBlockNode tcb : method.tryCatchBlocks) {
+                    tcb.type = intern(tcb.type);
+                }
+            }
+            if (method.localVariables != null) {
+                for (LocalVariableNode local : method.localVariables) {
+                    local.name = intern(local.name);
+                    local.desc = intern(local.desc);
+                }
+            }
+            for (AbstractInsnNode insn = method.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                switch (insn.getType()) {
+                    case AbstractInsnNode.FIELD_INSN: {
+                        FieldInsnNode fin = (FieldInsnNode) insn;
+                        fin.owner = intern(fin.owner);
+                        fin.name = intern(fin.name);
+                        fin.desc = intern(fin.desc);
+                        break;
+                    }
+                    case AbstractInsnNode.METHOD_INSN: {
+                        MethodInsnNode min = (MethodInsnNode) insn;
+                        min.owner = intern(min.owner);
+                        min.name = intern(min.name);
+                        min.desc = intern(min.desc);
+                        break;
+                    }
+                    case AbstractInsnNode.TYPE_INSN: {
+                        TypeInsnNode tin = (TypeInsnNode) insn;
+                        tin.desc = intern(tin.desc);
+                        break;
+                    }
+                    case AbstractInsnNode.MULTIANEWARRAY_INSN: {
+                        MultiANewArrayInsnNode manain = (MultiANewArrayInsnNode) insn;
+                        manain.desc = intern(manain.desc);
+                        break;
+                    }
+                    case AbstractInsnNode.INVOKE_DYNAMIC_INSN: {
+                        InvokeDynamicInsnNode idin = (InvokeDynamicInsnNode) insn;
+                        idin.name = intern(idin.name);
+                        idin.desc = intern(idin.desc);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void intern(List<String> values) {
+        if (values != null) {
+            values.replaceAll(this::intern);
+        }
+    }
+
+    private static class Symbol {
+
+        private final String value;
+        private final int id;
+
+        private Symbol(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+}
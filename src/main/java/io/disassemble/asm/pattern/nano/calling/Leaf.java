@@ -3,7 +3,6 @@ package io.disassemble.asm.pattern.nano.calling;
 import io.disassemble.asm.ClassMethod;
 import io.disassemble.asm.pattern.nano.PatternInfo;
 import io.disassemble.asm.pattern.nano.SimpleNanoPattern;
-import org.objectweb.asm.util.Printer;
 
 /**
  * @author Tyler Sedlar
@@ -14,7 +13,6 @@ public class Leaf extends SimpleNanoPattern {
 
     @Override
     public boolean matches(ClassMethod method) {
-        return method.count(insn -> insn.getOpcode() != -1 &&
-            Printer.OPCODES[insn.getOpcode()].startsWith("INVOKE")) == 0;
+        return method.features().invocations() == 0;
     }
 }
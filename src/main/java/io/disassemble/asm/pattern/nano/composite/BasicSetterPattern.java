@@ -4,8 +4,6 @@ import io.disassemble.asm.ClassMethod;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 
-import java.util.List;
-
 /**
  * @author Tyler Sedlar
  * @since 2/2/16
@@ -13,17 +11,15 @@ import java.util.List;
 public class BasicSetterPattern extends CompositePattern {
 
     protected static boolean setterMatches(ClassMethod method) {
-        List<String> simples = method.findSimpleNanoPatterns();
-        if (simples.contains(LEAF)) {
-            return method.findAdvancedNanoPatterns().contains(FIELD_WRITER);
+        if (method.hasSimpleNanoPatterns(LEAF)) {
+            return method.hasAdvancedNanoPatterns(FIELD_WRITER);
         } else {
             AbstractInsnNode[] instructions = method.instructions().toArray();
             for (AbstractInsnNode insn : instructions) {
                 if (insn instanceof MethodInsnNode) {
                     MethodInsnNode min = (MethodInsnNode) insn;
-                    String key = (min.owner + '.' + min.name + min.desc);
-                    ClassMethod resolved = ClassMethod.resolve(key);
-                    if (resolved != null && resolved.findAdvancedNanoPatterns().contains(FIELD_WRITER)) {
+                    ClassMethod resolved = method.resolve(min);
+                    if (resolved != null && resolved.hasAdvancedNanoPatterns(FIELD_WRITER)) {
                         return true;
                     }
                 }
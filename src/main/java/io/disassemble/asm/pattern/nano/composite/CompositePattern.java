@@ -3,33 +3,44 @@ package io.disassemble.asm.pattern.nano.composite;
 import io.disassemble.asm.ClassMethod;
 import io.disassemble.asm.pattern.nano.NanoPatternTypes;
 
-import java.util.List;
-
 /**
  * @author Tyler Sedlar
  * @since 2/2/16
  */
 public abstract class CompositePattern implements NanoPatternTypes {
 
+    private volatile long mask = -1;
+
     public abstract String[] simples();
 
     public abstract String[] advanced();
 
-    public boolean matches(ClassMethod method) {
-        List<String> methodSimples = method.findSimpleNanoPatterns();
-        String[] simples = simples();
-        for (String simpleLabel : simples) {
-            if (!methodSimples.contains(simpleLabel)) {
-                return false;
-            }
-        }
-        List<String> methodAdvanced = method.findAdvancedNanoPatterns();
-        String[] advanced = advanced();
-        for (String advancedLabel : advanced) {
-            if (!methodAdvanced.contains(advancedLabel)) {
-                return false;
+    /**
+     * Gets the mask of the simple and advanced patterns this pattern is composed of. Names that aren't known
+     * nano-patterns are left out of the mask, {@link #matches(ClassMethod)} never matches a pattern using them.
+     *
+     * @return The mask of the patterns this pattern is composed of.
+     * @see ClassMethod#nanoPatternMask(String...)
+     */
+    public long mask() {
+        long mask = this.mask;
+        if (mask == -1) {
+            mask = 0;
+            for (String[] patterns : new String[][]{simples(), advanced()}) {
+                for (String pattern : patterns) {
+                    try {
+                        mask |= ClassMethod.nanoPatternMask(pattern);
+                    } catch (IllegalArgumentException e) {
+                        //Custom names are never matched by a method, see matches.
+                    }
+                }
             }
+            this.mask = mask;
         }
-        return true;
+        return mask;
+    }
+
+    public boolean matches(ClassMethod method) {
+        return method.hasSimpleNanoPatterns(simples()) && method.hasAdvancedNanoPatterns(advanced());
     }
 }
@@ -3,12 +3,6 @@ package io.disassemble.asm.pattern.nano.flow.control;
 import io.disassemble.asm.ClassMethod;
 import io.disassemble.asm.pattern.nano.PatternInfo;
 import io.disassemble.asm.pattern.nano.SimpleNanoPattern;
-import org.objectweb.asm.Label;
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.JumpInsnNode;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * @author Tyler Sedlar
@@ -20,19 +14,6 @@ public class Looping extends SimpleNanoPattern {
 
     @Override
     public boolean matches(ClassMethod method) {
-        List<String> visitedLabels = new ArrayList<>();
-        AbstractInsnNode[] instructions = method.instructions().toArray();
-        for (AbstractInsnNode insn : instructions) {
-            if (insn instanceof JumpInsnNode) {
-                Label label = ((JumpInsnNode) insn).label.getLabel();
-                String labelString = label.toString();
-                if (visitedLabels.contains(labelString)) {
-                    return true;
-                } else {
-                    visitedLabels.add(labelString);
-                }
-            }
-        }
-        return false;
+        return method.features().sharedJumpTargets() > 0;
     }
 }
@@ -1,11 +1,9 @@
 package io.disassemble.asm.pattern.nano.flow.control;
 
 import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.MethodFeatures;
 import io.disassemble.asm.pattern.nano.PatternInfo;
 import io.disassemble.asm.pattern.nano.SimpleNanoPattern;
-import org.objectweb.asm.tree.JumpInsnNode;
-import org.objectweb.asm.tree.LookupSwitchInsnNode;
-import org.objectweb.asm.tree.TableSwitchInsnNode;
 
 /**
  * @author Tyler Sedlar
@@ -17,7 +15,7 @@ public class StraightLine extends SimpleNanoPattern {
 
     @Override
     public boolean matches(ClassMethod method) {
-        return method.count(insn -> insn instanceof JumpInsnNode || insn instanceof TableSwitchInsnNode ||
-            insn instanceof LookupSwitchInsnNode) == 0;
+        MethodFeatures features = method.features();
+        return features.jumps() == 0 && features.switches() == 0;
     }
 }
@@ -1,14 +1,17 @@
 package io.disassemble.asm.program;
 
 import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassFeatureIndex;
 import io.disassemble.asm.ClassMethod;
 import io.disassemble.asm.util.Query;
 import io.disassemble.asm.visitor.flow.FlowQuery;
+import io.disassemble.asm.visitor.flow.FlowQueryEngine;
+import io.disassemble.asm.visitor.flow.FlowQueryResult;
 import org.objectweb.asm.tree.AbstractInsnNode;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * @author Tyler Sedlar
@@ -25,6 +28,17 @@ public abstract class BytecodeParser implements Predicate<ClassFactory> {
 
     public abstract void populateQueries(List<Query> queries);
 
+    /**
+     * Adds the structure a class must have to be accepted, so that an Identifier only gives
+     * {@link #accept(ClassFactory)} the classes matching it rather than every class.
+     * <p>
+     * By default, no criteria are added and every class is given to {@link #accept(ClassFactory)}.
+     *
+     * @param criteria The criteria to add to.
+     */
+    public void populateCriteria(ClassFeatureIndex.Criteria criteria) {
+    }
+
     @Override
     public final boolean test(ClassFactory factory) {
         if (accept(factory)) {
@@ -58,32 +72,61 @@ public abstract class BytecodeParser implements Predicate<ClassFactory> {
     }
 
     /**
-     * Parses all classes that match this class' queries.
+     * Adds this parser's flow queries to the given engine, with their results collected into foundValues.
      *
-     * @param classes The classes to parse.
+     * @param engine The engine to add this parser's queries to.
      */
-    public void parse(Map<String, ClassFactory> classes) {
+    public void register(FlowQueryEngine engine) {
         ParserInfo info = info();
         Collections.addAll(expectedValues, info.hooks());
         populateQueries(queries);
-        List<FlowQuery> flowQueries = queries.stream()
-            .filter(query -> query instanceof FlowQuery)
-            .map(query -> (FlowQuery) query)
-            .collect(Collectors.toList());
-        classes.values().forEach(factory -> {
-            for (ClassMethod method : factory.methods) {
-                method.cfg()
-                    .ifPresent(cfg -> flowQueries.stream()
-                        .filter(query -> !query.locked())
-                        .forEach(query -> query.find(cfg)
-                            .ifPresent(results -> results.forEach(result ->
-                                result.namedInstructions().forEach((name, insn) -> {
-                                    if (!foundValues.containsKey(name)) {
-                                        foundValues.put(name, new ArrayList<>());
-                                    }
-                                    foundValues.get(name).add(insn);
-                                })))));
+        for (Query<?, ?> query : queries) {
+            if (query instanceof FlowQuery) {
+                engine.add((FlowQuery) query, this::collect);
             }
-        });
+        }
+    }
+
+    /**
+     * Parses all classes that match this class' queries.
+     *
+     * @param classes The classes to parse.
+     */
+    public void parse(Map<String, ClassFactory> classes) {
+        parse(classes, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parses all classes that match this class' queries, querying classes in parallel once there are at least
+     * the given amount of them.
+     * <p>
+     * Graphs are queried through {@link ClassMethod#cfg()}, so they're shared with anything else querying the
+     * same methods. When classes are parsed in parallel, the order of the instructions within each found value
+     * is not fixed, and a query that stops at its first match keeps the match found first by any thread.
+     *
+     * @param classes              The classes to parse.
+     * @param parallelismThreshold The amount of classes required before they are parsed in parallel.
+     */
+    public void parse(Map<String, ClassFactory> classes, long parallelismThreshold) {
+        FlowQueryEngine engine = new FlowQueryEngine();
+        register(engine);
+        if (classes.size() < parallelismThreshold) {
+            classes.values().forEach(engine::find);
+        } else {
+            ConcurrentHashMap<String, ClassFactory> pending = (classes instanceof ConcurrentHashMap ?
+                    (ConcurrentHashMap<String, ClassFactory>) classes : new ConcurrentHashMap<>(classes));
+            pending.forEach(parallelismThreshold, (name, factory) -> engine.find(factory));
+        }
+    }
+
+    private void collect(List<FlowQueryResult> results) {
+        synchronized (foundValues) {
+            results.forEach(result -> result.namedInstructions().forEach((name, insn) -> {
+                if (!foundValues.containsKey(name)) {
+                    foundValues.put(name, new ArrayList<>());
+                }
+                foundValues.get(name).add(insn);
+            }));
+        }
     }
 }
@@ -1,12 +1,17 @@
 package io.disassemble.asm.program;
 
 import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassFeatureIndex;
 import io.disassemble.asm.program.log.DefaultIdentifierLogger;
 import io.disassemble.asm.program.log.IdentifierLogger;
+import io.disassemble.asm.visitor.flow.FlowQueryEngine;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Tyler Sedlar
@@ -18,6 +23,7 @@ public abstract class Identifier extends Thread {
     private final List<BytecodeParser> parsers = new ArrayList<>();
 
     private IdentifierLogger logger = new DefaultIdentifierLogger();
+    private int parallelism = 1;
 
     public Identifier(Map<String, ClassFactory> classes) {
         this.classes = classes;
@@ -99,6 +105,25 @@ public abstract class Identifier extends Thread {
         this.logger = logger;
     }
 
+    /**
+     * Sets the maximum amount of threads used to run the parsers, which is 1 by default.
+     * <p>
+     * With a parallelism of 1, each parser is tested against the classes and then parsed one at a time, in the
+     * order they were added. Otherwise, parsers are tested against the classes on a work-stealing pool as soon as
+     * the parsers they depend on are done, see {@link ParserInfo#dependsOn()}, so parsers that use another
+     * parser's accepted class or found values must declare it. The queries of every independent parser are then
+     * run over the classes together, with the classes queried in parallel, so the order of the instructions
+     * within each found value is not fixed.
+     *
+     * @param parallelism The maximum amount of threads used to run the parsers.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("At least one parser must be run at once: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
     /**
      * A method that will execute before analysis, this should be overridden.
      *
@@ -121,17 +146,57 @@ public abstract class Identifier extends Thread {
     public void run() {
         populateParsers(parsers);
         before(classes);
-        parsers.forEach(parser -> {
-            for (ClassFactory factory : classes.values()) {
-                if (parser.test(factory)) {
-                    break;
+        ParserGraph graph = new ParserGraph(parsers);
+        Map<BytecodeParser, ClassFeatureIndex.Criteria> criteria = new IdentityHashMap<>();
+        boolean indexed = false;
+        for (BytecodeParser parser : parsers) {
+            ClassFeatureIndex.Criteria required = new ClassFeatureIndex.Criteria();
+            parser.populateCriteria(required);
+            criteria.put(parser, required);
+            indexed |= !required.empty();
+        }
+        //Indexing reads every class, so it's only done when a parser can use it.
+        ClassFeatureIndex index = (indexed ? new ClassFeatureIndex(classes) : null);
+        if (parallelism == 1) {
+            parsers.forEach(parser -> accept(parser, criteria.get(parser), index));
+            parsers.forEach(parser -> parser.parse(classes));
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                graph.run(pool, parser -> accept(parser, criteria.get(parser), index));
+                for (List<BytecodeParser> level : graph.levels()) {
+                    engine(level).ifPresent(engine -> pool.submit(() ->
+                            classes.values().parallelStream().forEach(engine::find)).join());
                 }
+            } finally {
+                pool.shutdown();
             }
-        });
-        parsers.forEach(parser -> parser.parse(classes));
+        }
         after(classes);
     }
 
+    /**
+     * Creates an engine running the queries of every parser within the given level, so each graph is scanned
+     * once rather than once per query.
+     */
+    private Optional<FlowQueryEngine> engine(List<BytecodeParser> level) {
+        FlowQueryEngine engine = new FlowQueryEngine();
+        level.forEach(parser -> parser.register(engine));
+        return (engine.size() > 0 ? Optional.of(engine) : Optional.empty());
+    }
+
+    private void accept(BytecodeParser parser, ClassFeatureIndex.Criteria criteria, ClassFeatureIndex index) {
+        if (!criteria.empty()) {
+            index.first(criteria, parser);
+            return;
+        }
+        for (ClassFactory factory : classes.values()) {
+            if (parser.test(factory)) {
+                break;
+            }
+        }
+    }
+
     /**
      * Gets the IdentifierLogger for this Identifier.
      *
@@ -0,0 +1,115 @@
+package io.disassemble.asm.program;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * The dependencies between the parsers of an Identifier, as declared by {@link ParserInfo#dependsOn()}.
+ *
+ * @author Christopher Carpenter
+ */
+final class ParserGraph {
+
+    private final Map<BytecodeParser, List<BytecodeParser>> dependencies = new IdentityHashMap<>();
+    private final List<List<BytecodeParser>> levels = new ArrayList<>();
+
+    /**
+     * Resolves the dependencies between the given parsers.
+     *
+     * @param parsers The parsers, in the order they were added.
+     * @throws IllegalStateException if a parser depends on a parser that's not given, or parsers depend on
+     *                               each other.
+     */
+    ParserGraph(List<BytecodeParser> parsers) {
+        Map<String, BytecodeParser> named = new HashMap<>();
+        for (BytecodeParser parser : parsers) {
+            named.put(parser.info().name(), parser);
+        }
+        for (BytecodeParser parser : parsers) {
+            List<BytecodeParser> required = new ArrayList<>();
+            for (String dependency : parser.info().dependsOn()) {
+                int hook = dependency.indexOf('#');
+                String name = (hook != -1 ? dependency.substring(0, hook) : dependency);
+                BytecodeParser resolved = named.get(name);
+                if (resolved == null) {
+                    throw new IllegalStateException(parser.info().name() + " depends on an unknown parser: " + name);
+                }
+                if (!required.contains(resolved)) {
+                    required.add(resolved);
+                }
+            }
+            dependencies.put(parser, required);
+        }
+        Map<BytecodeParser, Integer> depths = new IdentityHashMap<>();
+        for (BytecodeParser parser : parsers) {
+            int depth = depth(parser, depths, new ArrayDeque<>());
+            while (levels.size() <= depth) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(depth).add(parser);
+        }
+    }
+
+    private int depth(BytecodeParser parser, Map<BytecodeParser, Integer> depths, Deque<BytecodeParser> path) {
+        Integer known = depths.get(parser);
+        if (known != null) {
+            return known;
+        }
+        if (path.contains(parser)) {
+            StringBuilder cycle = new StringBuilder();
+            path.descendingIterator().forEachRemaining(p -> cycle.append(p.info().name()).append(" -> "));
+            throw new IllegalStateException("Parsers depend on each other: " + cycle + parser.info().name());
+        }
+        path.push(parser);
+        int depth = 0;
+        for (BytecodeParser dependency : dependencies.get(parser)) {
+            depth = Math.max(depth, depth(dependency, depths, path) + 1);
+        }
+        path.pop();
+        depths.put(parser, depth);
+        return depth;
+    }
+
+    /**
+     * Gets the parsers grouped so that every parser comes after the parsers it depends on. Parsers within a
+     * level don't depend on each other, and are in the order they were added.
+     *
+     * @return The levels of parsers.
+     */
+    List<List<BytecodeParser>> levels() {
+        return levels;
+    }
+
+    /**
+     * Runs the given task for every parser, each one once the tasks of the parsers it depends on are done.
+     * Independent parsers are run at the same time on the given executor.
+     *
+     * @param executor The executor to run the tasks on.
+     * @param task     The task to run for each parser.
+     */
+    void run(Executor executor, Consumer<BytecodeParser> task) {
+        Map<BytecodeParser, CompletableFuture<Void>> futures = new IdentityHashMap<>();
+        for (List<BytecodeParser> level : levels) {
+            for (BytecodeParser parser : level) {
+                CompletableFuture<?>[] required = dependencies.get(parser).stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(parser, CompletableFuture.allOf(required)
+                        .thenRunAsync(() -> task.accept(parser), executor));
+            }
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
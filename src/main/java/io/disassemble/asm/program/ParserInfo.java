@@ -13,4 +13,12 @@ public @interface ParserInfo {
     String name();
 
     String[] hooks();
+
+    /**
+     * Gets the parsers whose accepted class or found values this parser uses, by name, or by name and hook as
+     * {@code name#hook}. A parser is only run once the parsers it depends on are done.
+     *
+     * @return The parsers this parser depends on.
+     */
+    String[] dependsOn() default {};
 }
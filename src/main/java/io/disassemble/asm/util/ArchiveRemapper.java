@@ -0,0 +1,474 @@
+package io.disassemble.asm.util;
+
+import io.disassemble.asm.Archive;
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassField;
+import io.disassemble.asm.ClassHandle;
+import io.disassemble.asm.ClassMethod;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.tree.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies a complete set of {@link Mappings} to an archive in a single pass, rewriting each class in place.
+ * <p>
+ * The hierarchy of the archive is read once before any class is rewritten, so member references are resolved
+ * to their declaring class the same way {@link Assembly#rename} resolves them, through the original names.
+ * Resolved members and remapped descriptors are cached, so each distinct reference is only resolved once per
+ * ArchiveRemapper. Classes are rewritten independently and in parallel, and only the classes, fields and
+ * methods that actually changed are marked as dirty. Nodes are rewritten directly rather than through the
+ * setters, {@link ClassMethod#markDirty()} and the other markDirty methods drop whatever was cached from
+ * the previous names and descs.
+ * <p>
+ * Class names, super names, interfaces, descs, signatures, annotations, instructions and LDC constants
+ * (including {@code "owner.name(desc)"} strings, as done by {@link Assembly#rename}) are all remapped.
+ * Renamed classes are moved to their new name in {@link Archive#handles()}. The names of annotation members
+ * and invokedynamic call sites are left as they are.
+ *
+ * @author Christopher Carpenter
+ */
+public class ArchiveRemapper {
+
+    private final Mappings mappings;
+    private final MappingRemapper remapper = new MappingRemapper();
+    private final ConcurrentHashMap<String, String> fieldNames = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> methodNames = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> descs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> methodDescs = new ConcurrentHashMap<>();
+    private Map<String, Declarations> hierarchy = Collections.emptyMap();
+
+    /**
+     * Constructs an ArchiveRemapper applying the given mappings.
+     *
+     * @param mappings The mappings to apply.
+     */
+    public ArchiveRemapper(Mappings mappings) {
+        this.mappings = mappings;
+    }
+
+    /**
+     * Gets the underlying ASM Remapper, which can be used to remap names outside of an archive once
+     * {@link #remap(Archive)} has been called.
+     *
+     * @return The underlying ASM Remapper.
+     */
+    public Remapper remapper() {
+        return remapper;
+    }
+
+    /**
+     * Applies the mappings to every class in the given archive, in parallel.
+     *
+     * @param archive The archive to remap.
+     * @return The amount of classes that were modified.
+     */
+    public int remap(Archive archive) {
+        return remap(archive, 1);
+    }
+
+    /**
+     * Applies the mappings to every class in the given archive, using the specified {@code parallelismThreshold}.
+     * <p>
+     * The ClassFactory of every class is built, so unmodified classes of a lazy archive should be released
+     * afterwards if they are no longer needed.
+     *
+     * @param archive              The archive to remap.
+     * @param parallelismThreshold The amount of classes required before they are rewritten in parallel.
+     * @return The amount of classes that were modified.
+     */
+    public synchronized int remap(Archive archive, long parallelismThreshold) {
+        if (!archive.built()) {
+            throw new IllegalStateException("The Archive must be built before it can be remapped.");
+        }
+        ConcurrentHashMap<String, ClassHandle> handles = new ConcurrentHashMap<>(archive.handles());
+        ConcurrentHashMap<String, Declarations> hierarchy = new ConcurrentHashMap<>(handles.size());
+        handles.forEach(parallelismThreshold, (name, handle) ->
+                hierarchy.put(handle.name(), new Declarations(handle.factory())));
+        this.hierarchy = hierarchy;
+        fieldNames.clear();
+        methodNames.clear();
+        descs.clear();
+        methodDescs.clear();
+        AtomicInteger modified = new AtomicInteger();
+        handles.forEach(parallelismThreshold, (name, handle) -> {
+            if (new ClassRewriter(handle.factory()).rewrite()) {
+                modified.incrementAndGet();
+            }
+        });
+        List<Map.Entry<String, ClassHandle>> renamed = new ArrayList<>();
+        for (Map.Entry<String, ClassHandle> entry : handles.entrySet()) {
+            if (!entry.getKey().equals(entry.getValue().name())) {
+                archive.handles().remove(entry.getKey(), entry.getValue());
+                renamed.add(entry);
+            }
+        }
+        for (Map.Entry<String, ClassHandle> entry : renamed) {
+            archive.handles().put(entry.getValue().name(), entry.getValue());
+        }
+        return modified.get();
+    }
+
+    private String resolveField(String owner, String name) {
+        String key = owner + '.' + name;
+        String resolved = fieldNames.get(key);
+        if (resolved == null) {
+            String mapped = resolve(owner, name, null, new HashSet<>());
+            fieldNames.putIfAbsent(key, resolved = (mapped != null ? mapped : name));
+        }
+        return resolved;
+    }
+
+    private String resolveMethod(String owner, String name, String desc) {
+        String key = owner + '.' + name + desc;
+        String resolved = methodNames.get(key);
+        if (resolved == null) {
+            String mapped = resolve(owner, name, desc, new HashSet<>());
+            methodNames.putIfAbsent(key, resolved = (mapped != null ? mapped : name));
+        }
+        return resolved;
+    }
+
+    /**
+     * Finds the mapping of a member through the first class declaring it, starting from the given owner and
+     * walking up through super classes and then interfaces. Classes outside of the archive are looked up directly.
+     */
+    private String resolve(String owner, String name, String desc, Set<String> visited) {
+        if (owner == null || !visited.add(owner)) {
+            return null;
+        }
+        Declarations declarations = hierarchy.get(owner);
+        if (declarations == null || declarations.declares(name, desc)) {
+            return (desc == null ? mappings.fieldName(owner, name) : mappings.methodName(owner, name, desc));
+        }
+        String mapped = resolve(declarations.superName, name, desc, visited);
+        for (int i = 0; mapped == null && i < declarations.interfaces.length; i++) {
+            mapped = resolve(declarations.interfaces[i], name, desc, visited);
+        }
+        return mapped;
+    }
+
+    /**
+     * The members of a class that have a mapped name in some class, read before the archive is rewritten.
+     */
+    private class Declarations {
+
+        private final String superName;
+        private final String[] interfaces;
+        private final Set<String> members = new HashSet<>();
+
+        private Declarations(ClassFactory factory) {
+            this.superName = factory.superName();
+            this.interfaces = factory.interfaces().toArray(new String[0]);
+            for (ClassField field : factory.fields) {
+                if (mappings.mapsField(field.name())) {
+                    members.add(field.name());
+                }
+            }
+            for (ClassMethod method : factory.methods) {
+                if (mappings.mapsMethod(method.name())) {
+                    members.add(method.name() + method.desc());
+                }
+            }
+        }
+
+        private boolean declares(String name, String desc) {
+            return members.contains(desc == null ? name : name + desc);
+        }
+    }
+
+    private class MappingRemapper extends Remapper {
+
+        @Override
+        public String map(String typeName) {
+            String mapped = mappings.className(typeName);
+            return (mapped != null ? mapped : typeName);
+        }
+
+        @Override
+        public String mapDesc(String desc) {
+            if (desc.indexOf('L') == -1 || !mappings.mapsClasses()) {
+                return desc;
+            }
+            String mapped = descs.get(desc);
+            if (mapped == null) {
+                mapped = super.mapDesc(desc);
+                descs.putIfAbsent(desc, (mapped = (mapped.equals(desc) ? desc : mapped)));
+            }
+            return mapped;
+        }
+
+        @Override
+        public String mapMethodDesc(String desc) {
+            if (desc.indexOf('L') == -1 || !mappings.mapsClasses()) {
+                return desc;
+            }
+            String mapped = methodDescs.get(desc);
+            if (mapped == null) {
+                mapped = super.mapMethodDesc(desc);
+                methodDescs.putIfAbsent(desc, (mapped = (mapped.equals(desc) ? desc : mapped)));
+            }
+            return mapped;
+        }
+
+        @Override
+        public String mapFieldName(String owner, String name, String desc) {
+            return (mappings.mapsField(name) ? resolveField(owner, name) : name);
+        }
+
+        @Override
+        public String mapMethodName(String owner, String name, String desc) {
+            return (mappings.mapsMethod(name) ? resolveMethod(owner, name, desc) : name);
+        }
+    }
+
+    /**
+     * Rewrites a single class in place, tracking whether each part of it changed.
+     */
+    private class ClassRewriter {
+
+        private final ClassFactory factory;
+        private final String owner;
+        private boolean changed;
+
+        private ClassRewriter(ClassFactory factory) {
+            this.factory = factory;
+            this.owner = factory.name();
+        }
+
+        private boolean rewrite() {
+            boolean modified = false;
+            ClassNode node = factory.node;
+            node.signature = apply(node.signature, remapper.mapSignature(node.signature, false));
+            node.superName = apply(node.superName, map(node.superName));
+            node.interfaces.replaceAll(this::map);
+            if (node.outerClass != null) {
+                if (node.outerMethod != null) {
+                    node.outerMethod = apply(node.outerMethod,
+                            remapper.mapMethodName(node.outerClass, node.outerMethod, node.outerMethodDesc));
+                    node.outerMethodDesc = apply(node.outerMethodDesc, remapper.mapMethodDesc(node.outerMethodDesc));
+                }
+                node.outerClass = apply(node.outerClass, map(node.outerClass));
+            }
+            for (InnerClassNode inner : node.innerClasses) {
+                String name = map(inner.name);
+                if (inner.innerName != null && !name.equals(inner.name)) {
+                    int start = Math.max(name.lastIndexOf('$'), name.lastIndexOf('/')) + 1;
+                    inner.innerName = apply(inner.innerName, name.substring(start));
+                }
+                inner.name = apply(inner.name, name);
+                if (inner.outerName != null) {
+                    inner.outerName = apply(inner.outerName, map(inner.outerName));
+                }
+            }
+            annotations(node.visibleAnnotations);
+            annotations(node.invisibleAnnotations);
+            annotations(node.visibleTypeAnnotations);
+            annotations(node.invisibleTypeAnnotations);
+            node.name = apply(node.name, map(node.name));
+            if (changed) {
+                factory.markDirty();
+                modified = true;
+            }
+            for (ClassField field : factory.fields) {
+                changed = false;
+                FieldNode fn = field.field;
+                fn.name = apply(fn.name, remapper.mapFieldName(owner, fn.name, fn.desc));
+                fn.desc = apply(fn.desc, remapper.mapDesc(fn.desc));
+                fn.signature = apply(fn.signature, remapper.mapSignature(fn.signature, true));
+                annotations(fn.visibleAnnotations);
+                annotations(fn.invisibleAnnotations);
+                annotations(fn.visibleTypeAnnotations);
+                annotations(fn.invisibleTypeAnnotations);
+                if (changed) {
+                    field.markDirty();
+                    modified = true;
+                }
+            }
+            for (ClassMethod method : factory.methods) {
+                changed = false;
+                rewrite(method.method);
+                if (changed) {
+                    method.markDirty();
+                    modified = true;
+                }
+            }
+            return modified;
+        }
+
+        private void rewrite(MethodNode mn) {
+            mn.name = apply(mn.name, remapper.mapMethodName(owner, mn.name, mn.desc));
+            mn.desc = apply(mn.desc, remapper.mapMethodDesc(mn.desc));
+            mn.signature = apply(mn.signature, remapper.mapSignature(mn.signature, false));
+            if (mn.exceptions != null) {
+                mn.exceptions.replaceAll(this::map);
+            }
+            annotations(mn.visibleAnnotations);
+            annotations(mn.invisibleAnnotations);
+            annotations(mn.visibleTypeAnnotations);
+            annotations(mn.invisibleTypeAnnotations);
+            annotations(mn.visibleLocalVariableAnnotations);
+            annotations(mn.invisibleLocalVariableAnnotations);
+            parameterAnnotations(mn.visibleParameterAnnotations);
+            parameterAnnotations(mn.invisibleParameterAnnotations);
+            if (mn.annotationDefault != null) {
+                mn.annotationDefault = value(mn.annotationDefault);
+            }
+            if (mn.tryCatchBlocks != null) {
+                for (TryCatchBlockNode tcb : mn.tryCatchBlocks) {
+                    if (tcb.type != null) {
+                        tcb.type = apply(tcb.type, map(tcb.type));
+                    }
+                    annotations(tcb.visibleTypeAnnotations);
+                    annotations(tcb.invisibleTypeAnnotations);
+                }
+            }
+            if (mn.localVariables != null) {
+                for (LocalVariableNode lvn : mn.localVariables) {
+                    lvn.desc = apply(lvn.desc, remapper.mapDesc(lvn.desc));
+                    lvn.signature = apply(lvn.signature, remapper.mapSignature(lvn.signature, true));
+                }
+            }
+            for (AbstractInsnNode ain = mn.instructions.getFirst(); ain != null; ain = ain.getNext()) {
+                rewrite(ain);
+            }
+        }
+
+        private void rewrite(AbstractInsnNode ain) {
+            switch (ain.getType()) {
+                case AbstractInsnNode.FIELD_INSN: {
+                    FieldInsnNode fin = (FieldInsnNode) ain;
+                    fin.name = apply(fin.name, remapper.mapFieldName(fin.owner, fin.name, fin.desc));
+                    fin.owner = apply(fin.owner, map(fin.owner));
+                    fin.desc = apply(fin.desc, remapper.mapDesc(fin.desc));
+                    break;
+                }
+                case AbstractInsnNode.METHOD_INSN: {
+                    MethodInsnNode min = (MethodInsnNode) ain;
+                    min.name = apply(min.name, remapper.mapMethodName(min.owner, min.name, min.desc));
+                    min.owner = apply(min.owner, map(min.owner));
+                    min.desc = apply(min.desc, remapper.mapMethodDesc(min.desc));
+                    break;
+                }
+                case AbstractInsnNode.TYPE_INSN: {
+                    TypeInsnNode tin = (TypeInsnNode) ain;
+                    tin.desc = apply(tin.desc, map(tin.desc));
+                    break;
+                }
+                case AbstractInsnNode.MULTIANEWARRAY_INSN: {
+                    MultiANewArrayInsnNode manain = (MultiANewArrayInsnNode) ain;
+                    manain.desc = apply(manain.desc, remapper.mapDesc(manain.desc));
+                    break;
+                }
+                case AbstractInsnNode.LDC_INSN: {
+                    LdcInsnNode ldc = (LdcInsnNode) ain;
+                    if (ldc.cst instanceof String) {
+                        // Strings such as "owner.name(desc)" are renamed along with their owner.
+                        String string = (String) ldc.cst;
+                        int dot = string.indexOf('.');
+                        if (dot > 0 && string.contains("(")) {
+                            String mapped = mappings.className(string.substring(0, dot));
+                            if (mapped != null) {
+                                ldc.cst = mapped + string.substring(dot);
+                                changed = true;
+                            }
+                        }
+                    } else {
+                        ldc.cst = value(ldc.cst);
+                    }
+                    break;
+                }
+                case AbstractInsnNode.INVOKE_DYNAMIC_INSN: {
+                    InvokeDynamicInsnNode idin = (InvokeDynamicInsnNode) ain;
+                    idin.desc = apply(idin.desc, remapper.mapMethodDesc(idin.desc));
+                    idin.bsm = value(idin.bsm);
+                    for (int i = 0; i < idin.bsmArgs.length; i++) {
+                        idin.bsmArgs[i] = value(idin.bsmArgs[i]);
+                    }
+                    break;
+                }
+                case AbstractInsnNode.FRAME: {
+                    FrameNode fn = (FrameNode) ain;
+                    if (fn.local != null) {
+                        fn.local.replaceAll(this::frameValue);
+                    }
+                    if (fn.stack != null) {
+                        fn.stack.replaceAll(this::frameValue);
+                    }
+                    break;
+                }
+            }
+            if (ain.visibleTypeAnnotations != null || ain.invisibleTypeAnnotations != null) {
+                annotations(ain.visibleTypeAnnotations);
+                annotations(ain.invisibleTypeAnnotations);
+            }
+        }
+
+        private void annotations(List<? extends AnnotationNode> annotations) {
+            if (annotations != null) {
+                for (AnnotationNode annotation : annotations) {
+                    annotation(annotation);
+                }
+            }
+        }
+
+        private void parameterAnnotations(List<AnnotationNode>[] parameters) {
+            if (parameters != null) {
+                for (List<AnnotationNode> annotations : parameters) {
+                    annotations(annotations);
+                }
+            }
+        }
+
+        private void annotation(AnnotationNode annotation) {
+            if (annotation.desc != null) {
+                annotation.desc = apply(annotation.desc, remapper.mapDesc(annotation.desc));
+            }
+            if (annotation.values != null) {
+                // Values alternate between member names and values.
+                for (int i = 1; i < annotation.values.size(); i += 2) {
+                    annotation.values.set(i, value(annotation.values.get(i)));
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T value(T value) {
+            if (value instanceof AnnotationNode) {
+                annotation((AnnotationNode) value);
+                return value;
+            } else if (value instanceof List) {
+                ((List<Object>) value).replaceAll(this::value);
+                return value;
+            } else if (value instanceof String[]) {
+                String[] enumValue = (String[]) value;
+                enumValue[0] = apply(enumValue[0], remapper.mapDesc(enumValue[0]));
+                return value;
+            }
+            Object mapped = remapper.mapValue(value);
+            if (value == null || value.equals(mapped)) {
+                return value;
+            }
+            changed = true;
+            return (T) mapped;
+        }
+
+        private Object frameValue(Object value) {
+            return (value instanceof String ? map((String) value) : value);
+        }
+
+        private String map(String type) {
+            return (type != null ? apply(type, remapper.mapType(type)) : null);
+        }
+
+        private String apply(String value, String mapped) {
+            if (value == null || value.equals(mapped)) {
+                return value;
+            }
+            changed = true;
+            return mapped;
+        }
+    }
+}
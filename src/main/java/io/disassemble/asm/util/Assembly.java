@@ -1,8 +1,10 @@
 package io.disassemble.asm.util;
 
+import io.disassemble.asm.Archive;
 import io.disassemble.asm.ClassFactory;
 import io.disassemble.asm.ClassField;
 import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.ReferenceIndex;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.*;
@@ -191,25 +193,51 @@ public final class Assembly {
     public static void rename(Map<String, ClassFactory> classes, ClassField fn, String newName) {
         for (ClassFactory factory : classes.values()) {
             for (ClassMethod method : factory.methods) {
-                for (AbstractInsnNode ain : method.instructions().toArray()) {
-                    if (ain instanceof FieldInsnNode) {
-                        FieldInsnNode fin = (FieldInsnNode) ain;
-                        ClassFactory realOwner = classes.get(fin.owner);
-                        while (realOwner != null) {
-                            if (realOwner.findField(cf -> cf.name().equals(fin.name)) != null) {
-                                break;
-                            }
-                            realOwner = classes.get(realOwner.superName());
-                        }
-                        if (realOwner != null && realOwner.name().equals(fn.owner.name()) &&
-                                fin.name.equals(fn.field.name)) {
-                            fin.name = newName;
-                        }
+                renameFieldReferences(classes, method, fn, newName);
+            }
+        }
+        fn.setName(newName);
+    }
+
+    /**
+     * Renames the given field throughout the archive with to given name, only visiting the methods that the
+     * archive's {@link ReferenceIndex} lists as accessing the field through its owner or a subclass.
+     *
+     * @param archive The archive to rename within.
+     * @param fn      The field to rename.
+     * @param newName The name to rename the field to.
+     */
+    public static void rename(Archive archive, ClassField fn, String newName) {
+        ReferenceIndex references = archive.references();
+        Set<ClassMethod> methods = new LinkedHashSet<>(references.methodsAccessing(fn.owner.name(), fn.field.name));
+        for (String subclass : references.subclasses(fn.owner.name())) {
+            methods.addAll(references.methodsAccessing(subclass, fn.field.name));
+        }
+        for (ClassMethod method : methods) {
+            renameFieldReferences(archive.classes(), method, fn, newName);
+        }
+        fn.setName(newName);
+    }
+
+    private static void renameFieldReferences(Map<String, ClassFactory> classes, ClassMethod method, ClassField fn,
+                                              String newName) {
+        for (AbstractInsnNode ain : method.instructions().toArray()) {
+            if (ain instanceof FieldInsnNode) {
+                FieldInsnNode fin = (FieldInsnNode) ain;
+                ClassFactory realOwner = classes.get(fin.owner);
+                while (realOwner != null) {
+                    if (realOwner.findField(cf -> cf.name().equals(fin.name)) != null) {
+                        break;
                     }
+                    realOwner = classes.get(realOwner.superName());
+                }
+                if (realOwner != null && realOwner.name().equals(fn.owner.name()) &&
+                        fin.name.equals(fn.field.name)) {
+                    fin.name = newName;
+                    method.markDirty();
                 }
             }
         }
-        fn.field.name = newName;
     }
 
     /**
@@ -222,27 +250,53 @@ public final class Assembly {
     public static void rename(Map<String, ClassFactory> classes, ClassMethod cm, String newName) {
         for (ClassFactory factory : classes.values()) {
             for (ClassMethod method : factory.methods) {
-                for (AbstractInsnNode ain : method.instructions().toArray()) {
-                    if (ain instanceof MethodInsnNode) {
-                        MethodInsnNode min = (MethodInsnNode) ain;
-                        ClassFactory realOwner = classes.get(min.owner);
-                        while (realOwner != null) {
-                            if (realOwner.findMethod(
-                                    m -> m.name().equals(min.name) && m.desc().equals(min.desc)
-                            ) != null) {
-                                break;
-                            }
-                            realOwner = classes.get(realOwner.superName());
-                        }
-                        if (realOwner != null && realOwner.name().equals(cm.owner.name()) &&
-                                min.name.equals(cm.method.name)) {
-                            min.name = newName;
-                        }
+                renameMethodReferences(classes, method, cm, newName);
+            }
+        }
+        cm.setName(newName);
+    }
+
+    /**
+     * Renames the given method throughout the archive with to given name, only visiting the methods that the
+     * archive's {@link ReferenceIndex} lists as calling the method through its owner or a subclass.
+     *
+     * @param archive The archive to rename within.
+     * @param cm      The method to rename.
+     * @param newName The name to rename the method to.
+     */
+    public static void rename(Archive archive, ClassMethod cm, String newName) {
+        ReferenceIndex references = archive.references();
+        Set<ClassMethod> methods = new LinkedHashSet<>(references.methodsCalling(cm.owner.name(), cm.method.name));
+        for (String subclass : references.subclasses(cm.owner.name())) {
+            methods.addAll(references.methodsCalling(subclass, cm.method.name));
+        }
+        for (ClassMethod method : methods) {
+            renameMethodReferences(archive.classes(), method, cm, newName);
+        }
+        cm.setName(newName);
+    }
+
+    private static void renameMethodReferences(Map<String, ClassFactory> classes, ClassMethod method, ClassMethod cm,
+                                               String newName) {
+        for (AbstractInsnNode ain : method.instructions().toArray()) {
+            if (ain instanceof MethodInsnNode) {
+                MethodInsnNode min = (MethodInsnNode) ain;
+                ClassFactory realOwner = classes.get(min.owner);
+                while (realOwner != null) {
+                    if (realOwner.findMethod(
+                            m -> m.name().equals(min.name) && m.desc().equals(min.desc)
+                    ) != null) {
+                        break;
                     }
+                    realOwner = classes.get(realOwner.superName());
+                }
+                if (realOwner != null && realOwner.name().equals(cm.owner.name()) &&
+                        min.name.equals(cm.method.name)) {
+                    min.name = newName;
+                    method.markDirty();
                 }
             }
         }
-        cm.method.name = newName;
     }
 
     /**
@@ -253,6 +307,33 @@ public final class Assembly {
      * @param newName The name to rename the class to.
      */
     public static void rename(Map<String, ClassFactory> classes, ClassFactory cf, String newName) {
+        renameClassDeclarations(classes, cf, newName);
+        for (ClassFactory factory : classes.values()) {
+            for (ClassMethod method : factory.methods) {
+                renameClassReferences(method, cf, newName);
+            }
+        }
+        cf.setName(newName);
+    }
+
+    /**
+     * Renames the given class throughout the archive with to given name, only visiting the instructions of the
+     * methods that the archive's {@link ReferenceIndex} lists as referencing the class.
+     *
+     * @param archive The archive to rename within.
+     * @param cf      The class to rename.
+     * @param newName The name to rename the class to.
+     */
+    public static void rename(Archive archive, ClassFactory cf, String newName) {
+        Set<ClassMethod> methods = archive.references().methodsReferencing(cf.name());
+        renameClassDeclarations(archive.classes(), cf, newName);
+        for (ClassMethod method : methods) {
+            renameClassReferences(method, cf, newName);
+        }
+        cf.setName(newName);
+    }
+
+    private static void renameClassDeclarations(Map<String, ClassFactory> classes, ClassFactory cf, String newName) {
         for (ClassFactory factory : classes.values()) {
             if (factory.superName().equals(cf.name())) {
                 factory.setSuperName(newName);
@@ -260,6 +341,7 @@ public final class Assembly {
             if (factory.interfaces().contains(cf.name())) {
                 factory.interfaces().remove(cf.name());
                 factory.interfaces().add(newName);
+                factory.markDirty();
             }
             //TODO if the class factory being renamed is an annotation, check the annotations on classes to see if they need to be adjusted.
             for (ClassField field : factory.fields) {
@@ -273,49 +355,59 @@ public final class Assembly {
                 if (method.desc().contains('L' + cf.name() + ';')) {
                     method.setDescriptor(method.desc().replaceAll('L' + cf.name() + ';', 'L' + newName + ';'));
                 }
-                for (AbstractInsnNode ain : method.instructions().toArray()) {
-                    if (ain instanceof FieldInsnNode) {
-                        FieldInsnNode fin = (FieldInsnNode) ain;
-                        if (fin.owner.equals(cf.name())) {
-                            fin.owner = newName;
-                        }
-                        if (fin.desc.contains('L' + cf.name() + ';')) {
-                            fin.desc = fin.desc.replace('L' + cf.name() + ';', 'L' + newName + ';');
-                        }
-                    } else if (ain instanceof MethodInsnNode) {
-                        MethodInsnNode min = (MethodInsnNode) ain;
-                        if (min.owner.equals(cf.name())) {
-                            min.owner = newName;
-                        }
-                        if (min.desc.contains('L' + cf.name() + ';')) {
-                            min.desc = min.desc.replaceAll('L' + cf.name() + ';', 'L' + newName + ';');
-                        }
-                    } else if (ain instanceof TypeInsnNode) {
-                        TypeInsnNode tin = (TypeInsnNode) ain;
-                        if (tin.desc.equals(cf.name())) {
-                            tin.desc = newName;
-                        } else if (tin.desc.contains('L' + cf.name() + ';')) {
-                            tin.desc = tin.desc.replace('L' + cf.name() + ';', 'L' + newName + ';');
-                        }
-                    } else if (ain instanceof MultiANewArrayInsnNode) {
-                        MultiANewArrayInsnNode manain = (MultiANewArrayInsnNode) ain;
-                        if (manain.desc.contains('L' + cf.name() + ';')) {
-                            manain.desc = manain.desc.replace('L' + cf.name() + ';', 'L' + newName + ';');
-                        }
-                    } else if (ain instanceof LdcInsnNode) {
-                        LdcInsnNode ldc = (LdcInsnNode) ain;
-                        Object cst = ldc.cst;
-                        if (cst != null && cst instanceof String) {
-                            String cstString = (String) cst;
-                            if (cstString.startsWith(cf.name() + '.') && cstString.contains("(")) {
-                                ldc.cst = cstString.replace(cf.name() + '.', newName + '.');
-                            }
-                        }
+            }
+        }
+    }
+
+    private static void renameClassReferences(ClassMethod method, ClassFactory cf, String newName) {
+        for (AbstractInsnNode ain : method.instructions().toArray()) {
+            if (ain instanceof FieldInsnNode) {
+                FieldInsnNode fin = (FieldInsnNode) ain;
+                if (fin.owner.equals(cf.name())) {
+                    fin.owner = newName;
+                    method.markDirty();
+                }
+                if (fin.desc.contains('L' + cf.name() + ';')) {
+                    fin.desc = fin.desc.replace('L' + cf.name() + ';', 'L' + newName + ';');
+                    method.markDirty();
+                }
+            } else if (ain instanceof MethodInsnNode) {
+                MethodInsnNode min = (MethodInsnNode) ain;
+                if (min.owner.equals(cf.name())) {
+                    min.owner = newName;
+                    method.markDirty();
+                }
+                if (min.desc.contains('L' + cf.name() + ';')) {
+                    min.desc = min.desc.replaceAll('L' + cf.name() + ';', 'L' + newName + ';');
+                    method.markDirty();
+                }
+            } else if (ain instanceof TypeInsnNode) {
+                TypeInsnNode tin = (TypeInsnNode) ain;
+                if (tin.desc.equals(cf.name())) {
+                    tin.desc = newName;
+                    method.markDirty();
+                } else if (tin.desc.contains('L' + cf.name() + ';')) {
+                    tin.desc = tin.desc.replace('L' + cf.name() + ';', 'L' + newName + ';');
+                    method.markDirty();
+                }
+            } else if (ain instanceof MultiANewArrayInsnNode) {
+                MultiANewArrayInsnNode manain = (MultiANewArrayInsnNode) ain;
+                if (manain.desc.contains('L' + cf.name() + ';')) {
+                    manain.desc = manain.desc.replace('L' + cf.name() + ';', 'L' + newName + ';');
+                    method.markDirty();
+                }
+            } else if (ain instanceof LdcInsnNode) {
+                LdcInsnNode ldc = (LdcInsnNode) ain;
+                Object cst = ldc.cst;
+                if (cst != null && cst instanceof String) {
+                    String cstString = (String) cst;
+                    if (cstString.startsWith(cf.name() + '.') && cstString.contains("(")) {
+                        ldc.cst = cstString.replace(cf.name() + '.', newName + '.');
+                        method.markDirty();
                     }
                 }
             }
         }
-        cf.setName(newName);
     }
 
     /**
@@ -0,0 +1,259 @@
+package io.disassemble.asm.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A read-only zip reader that memory-maps the archive and parses the central directory itself.
+ * <p>
+ * Unlike {@link java.util.zip.ZipFile}, reading an entry does not take a lock, so entries can be
+ * read from any number of threads at once. Stored entries are copied straight out of the mapping and
+ * deflated entries are inflated into arrays sized from the central directory.
+ * <p>
+ * ZIP64 archives, encrypted entries and archives larger than {@link Integer#MAX_VALUE} bytes are not supported.
+ * The mapping is released once this reader is garbage collected.
+ *
+ * @author Christopher Carpenter
+ */
+public class MappedZipFile {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final MappedByteBuffer buffer;
+    private final List<Entry> entries;
+
+    /**
+     * Maps the given file and reads its central directory.
+     *
+     * @param file The zip file to map.
+     * @throws IOException if the file cannot be mapped or is not a supported zip archive.
+     */
+    public MappedZipFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException("Archives larger than 2GB cannot be mapped: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        entries = Collections.unmodifiableList(readCentralDirectory());
+    }
+
+    /**
+     * Checks whether the given file can be read by this reader.
+     *
+     * @param file The file to check.
+     * @return true if the file is small enough to be mapped, otherwise false.
+     */
+    public static boolean supports(File file) {
+        return file.length() <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Gets the entries listed in the central directory, in directory order.
+     *
+     * @return The entries listed in the central directory.
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        int end = findEndHeader();
+        int total = buffer.getShort(end + 10) & 0xFFFF;
+        long directoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        if (total == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+        check(directoryOffset, 0, "central directory");
+        List<Entry> entries = new ArrayList<>(total);
+        int offset = (int) directoryOffset;
+        for (int i = 0; i < total; i++) {
+            check(offset, CENTRAL_HEADER_SIZE, "central directory header");
+            if (buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header @ " + offset);
+            }
+            int flags = buffer.getShort(offset + 8) & 0xFFFF;
+            int method = buffer.getShort(offset + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(offset + 20) & 0xFFFFFFFFL;
+            long size = buffer.getInt(offset + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(offset + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(offset + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(offset + 32) & 0xFFFF;
+            long headerOffset = buffer.getInt(offset + 42) & 0xFFFFFFFFL;
+            check(offset, CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength, "central directory header");
+            String name = readName(offset + CENTRAL_HEADER_SIZE, nameLength);
+            if ((flags & 1) != 0) {
+                throw new ZipException("Encrypted entries are not supported: " + name);
+            }
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || headerOffset == 0xFFFFFFFFL) {
+                throw new ZipException("ZIP64 entries are not supported: " + name);
+            }
+            if (method != STORED && method != DEFLATED) {
+                throw new ZipException("Unsupported compression method " + method + ": " + name);
+            }
+            check(headerOffset, LOCAL_HEADER_SIZE, "local header of " + name);
+            check(headerOffset, compressedSize, "data of " + name);
+            if (size >= Integer.MAX_VALUE || (method == STORED && size != compressedSize)) {
+                throw new ZipException("Invalid size " + size + ": " + name);
+            }
+            entries.add(new Entry(name, method, (int) compressedSize, (int) size, (int) headerOffset));
+            offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Checks that the given range lies within the mapped archive, so a truncated or malformed archive is reported
+     * rather than read past its end.
+     */
+    private void check(long offset, long length, String what) throws ZipException {
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new ZipException("Truncated " + what + ": " + length + " bytes @ " + offset + " exceed the archive's "
+                    + buffer.limit() + " bytes");
+        }
+    }
+
+    private int findEndHeader() throws ZipException {
+        int limit = buffer.limit();
+        int min = Math.max(0, limit - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+        for (int offset = limit - END_HEADER_SIZE; offset >= min; offset--) {
+            if (buffer.getInt(offset) == END_HEADER_SIGNATURE) {
+                return offset;
+            }
+        }
+        throw new ZipException("End of central directory record not found");
+    }
+
+    private String readName(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        // JarFile decodes every entry name as UTF-8, regardless of the language encoding flag.
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the uncompressed contents of the given entry.
+     * <p>
+     * This method is thread-safe.
+     *
+     * @param entry The entry to read.
+     * @return A {@code byte[]} that is exactly the size of the entry.
+     * @throws IOException if the entry's data is malformed.
+     */
+    public byte[] read(Entry entry) throws IOException {
+        int header = entry.headerOffset;
+        if (buffer.getInt(header) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name);
+        }
+        int nameLength = buffer.getShort(header + 26) & 0xFFFF;
+        int extraLength = buffer.getShort(header + 28) & 0xFFFF;
+        int dataOffset = header + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        check(dataOffset, entry.compressedSize, "data of " + entry.name);
+        ByteBuffer view = buffer.duplicate();
+        view.position(dataOffset);
+        if (entry.method == STORED) {
+            byte[] bytes = new byte[entry.size];
+            view.get(bytes);
+            return bytes;
+        }
+        // the nowrap inflater may need a trailing dummy byte to signal the end of the input.
+        byte[] compressed = new byte[entry.compressedSize + 1];
+        view.get(compressed, 0, entry.compressedSize);
+        byte[] bytes = new byte[entry.size];
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = inflater.inflate(bytes, read, bytes.length - read);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += count;
+            }
+            if (read != bytes.length) {
+                throw new ZipException("Inflated " + read + " of " + bytes.length + " bytes for " + entry.name);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflate data for " + entry.name + ": " + e.getMessage());
+        }
+        return bytes;
+    }
+
+    /**
+     * A file entry within the central directory of a {@link MappedZipFile}.
+     */
+    public static class Entry {
+
+        private final String name;
+        private final int method, compressedSize, size, headerOffset;
+
+        private Entry(String name, int method, int compressedSize, int size, int headerOffset) {
+            this.name = name;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+
+        /**
+         * Gets the name of this entry.
+         *
+         * @return The name of this entry.
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Gets the uncompressed size of this entry.
+         *
+         * @return The uncompressed size of this entry.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Checks whether this entry is a directory.
+         *
+         * @return true if this entry is a directory, otherwise false.
+         */
+        public boolean directory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
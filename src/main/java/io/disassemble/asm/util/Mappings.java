@@ -0,0 +1,136 @@
+package io.disassemble.asm.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A table of new names for classes, fields and methods, keyed by their original names.
+ * <p>
+ * Fields are keyed by their declaring class and name, methods by their declaring class, name and desc.
+ * All names are internal names as they were before any mapping was applied.
+ *
+ * @author Christopher Carpenter
+ * @see ArchiveRemapper
+ */
+public class Mappings {
+
+    private final Map<String, String> classes = new HashMap<>();
+    private final Map<String, String> fields = new HashMap<>();
+    private final Map<String, String> methods = new HashMap<>();
+    private final Set<String> fieldNames = new HashSet<>();
+    private final Set<String> methodNames = new HashSet<>();
+
+    /**
+     * Maps the given class to a new name.
+     *
+     * @param name    The internal name of the class.
+     * @param newName The internal name to map the class to.
+     * @return These Mappings chained with the given class mapping.
+     */
+    public Mappings mapClass(String name, String newName) {
+        classes.put(name, newName);
+        return this;
+    }
+
+    /**
+     * Maps the given field to a new name.
+     *
+     * @param owner   The internal name of the class declaring the field.
+     * @param name    The name of the field.
+     * @param newName The name to map the field to.
+     * @return These Mappings chained with the given field mapping.
+     */
+    public Mappings mapField(String owner, String name, String newName) {
+        fields.put(owner + '.' + name, newName);
+        fieldNames.add(name);
+        return this;
+    }
+
+    /**
+     * Maps the given method to a new name.
+     *
+     * @param owner   The internal name of the class declaring the method.
+     * @param name    The name of the method.
+     * @param desc    The desc of the method.
+     * @param newName The name to map the method to.
+     * @return These Mappings chained with the given method mapping.
+     */
+    public Mappings mapMethod(String owner, String name, String desc, String newName) {
+        methods.put(owner + '.' + name + desc, newName);
+        methodNames.add(name);
+        return this;
+    }
+
+    /**
+     * Gets the new name of the given class.
+     *
+     * @param name The internal name of the class.
+     * @return The new name of the given class, or null if it is not mapped.
+     */
+    public String className(String name) {
+        return classes.get(name);
+    }
+
+    /**
+     * Gets the new name of the given field, as declared by the given class.
+     *
+     * @param owner The internal name of the class declaring the field.
+     * @param name  The name of the field.
+     * @return The new name of the given field, or null if it is not mapped.
+     */
+    public String fieldName(String owner, String name) {
+        return fields.get(owner + '.' + name);
+    }
+
+    /**
+     * Gets the new name of the given method, as declared by the given class.
+     *
+     * @param owner The internal name of the class declaring the method.
+     * @param name  The name of the method.
+     * @param desc  The desc of the method.
+     * @return The new name of the given method, or null if it is not mapped.
+     */
+    public String methodName(String owner, String name, String desc) {
+        return methods.get(owner + '.' + name + desc);
+    }
+
+    /**
+     * Checks whether a field with the given name is mapped in any class.
+     *
+     * @param name The name of the field.
+     * @return true if a field with the given name is mapped, otherwise false.
+     */
+    public boolean mapsField(String name) {
+        return fieldNames.contains(name);
+    }
+
+    /**
+     * Checks whether a method with the given name is mapped in any class.
+     *
+     * @param name The name of the method.
+     * @return true if a method with the given name is mapped, otherwise false.
+     */
+    public boolean mapsMethod(String name) {
+        return methodNames.contains(name);
+    }
+
+    /**
+     * Checks whether any class is mapped.
+     *
+     * @return true if any class is mapped, otherwise false.
+     */
+    public boolean mapsClasses() {
+        return !classes.isEmpty();
+    }
+
+    /**
+     * Gets the amount of class, field and method mappings.
+     *
+     * @return The amount of class, field and method mappings.
+     */
+    public int size() {
+        return classes.size() + fields.size() + methods.size();
+    }
+}
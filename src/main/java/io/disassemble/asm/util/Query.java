@@ -2,6 +2,7 @@ package io.disassemble.asm.util;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Tyler Sedlar
@@ -9,14 +10,24 @@ import java.util.Optional;
  */
 public abstract class Query<R, I> {
 
-    private boolean locked;
+    private final AtomicBoolean locked = new AtomicBoolean();
 
     public void lock() {
-        this.locked = true;
+        locked.set(true);
+    }
+
+    /**
+     * Locks this query if it isn't locked yet. When several threads find a match at once, only one of them
+     * locks the query.
+     *
+     * @return true if this call locked the query, false if it was already locked.
+     */
+    public boolean tryLock() {
+        return locked.compareAndSet(false, true);
     }
 
     public boolean locked() {
-        return locked;
+        return locked.get();
     }
 
     public abstract Optional<List<R>> find(I i);
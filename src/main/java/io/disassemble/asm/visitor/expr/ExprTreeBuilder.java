@@ -9,7 +9,11 @@ import org.objectweb.asm.tree.*;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 import static org.objectweb.asm.Opcodes.*;
 
@@ -54,27 +58,102 @@ public class ExprTreeBuilder {
     }
 
     /**
-     * Builds a map of ExprTrees for the given classes.
+     * Builds a map of ExprTrees for the given classes, using a worker for each available processor.
      *
      * @param classes The classes to build ExprTrees for.
-     * @return A map of ExprTrees for the given classes.
+     * @return A map of ExprTrees for the given classes, ordered by class name, with each class' trees
+     * in method order.
+     * @throws IllegalStateException if the ExprTree for any method could not be built.
      */
     public static Map<String, Deque<ExprTree>> buildAll(ConcurrentMap<String, ClassFactory> classes) {
-        Map<String, Deque<ExprTree>> trees = new HashMap<>();
-        classes.values().parallelStream().forEach(factory -> {
-            Deque<ExprTree> factoryTrees = new ArrayDeque<>();
-            Arrays.asList(factory.methods).parallelStream().forEach(method -> {
-                try {
-                    build(method).ifPresent(factoryTrees::add);
-                } catch (IndexOutOfBoundsException e) {
-                    throw new IllegalStateException("Failed to parse tree @ " + method.key());
+        return buildAll(classes, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Builds a map of ExprTrees for the given classes.
+     * <p>
+     * Each class is built by a single worker within a ForkJoinPool limited to {@code parallelism} workers,
+     * and the results are only merged once every class is built. Methods whose tree could not be built are
+     * left out of the result and passed to {@code failureHandler} on the calling thread, in the same order
+     * as the result.
+     *
+     * @param classes        The classes to build ExprTrees for.
+     * @param parallelism    The maximum amount of workers to build with.
+     * @param failureHandler The handler for methods whose tree could not be built, or null to throw an
+     *                       IllegalStateException instead.
+     * @return A map of ExprTrees for the given classes, ordered by class name, with each class' trees
+     * in method order.
+     * @throws IllegalStateException if {@code failureHandler} is null and the ExprTree for any method could
+     *                               not be built.
+     */
+    public static Map<String, Deque<ExprTree>> buildAll(ConcurrentMap<String, ClassFactory> classes, int parallelism,
+                                                        BiConsumer<ClassMethod, RuntimeException> failureHandler) {
+        List<ClassFactory> factories = new ArrayList<>(classes.values());
+        factories.sort(Comparator.comparing(ClassFactory::name));
+        List<ClassTrees> built;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            built = pool.submit(() -> factories.parallelStream()
+                    .map(ClassTrees::new)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building trees", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        Map<String, Deque<ExprTree>> trees = new LinkedHashMap<>();
+        IllegalStateException failure = null;
+        for (ClassTrees classTrees : built) {
+            trees.put(classTrees.name, classTrees.trees);
+            for (int i = 0; i < classTrees.failedMethods.size(); i++) {
+                ClassMethod method = classTrees.failedMethods.get(i);
+                RuntimeException cause = classTrees.failures.get(i);
+                if (failureHandler != null) {
+                    failureHandler.accept(method, cause);
+                } else if (failure == null) {
+                    failure = new IllegalStateException("Failed to parse tree @ " + method.key(), cause);
+                } else {
+                    failure.addSuppressed(cause);
                 }
-            });
-            trees.put(factory.name(), factoryTrees);
-        });
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
         return trees;
     }
 
+    /**
+     * The trees built for a single class, only ever written to by the worker building them.
+     */
+    private static class ClassTrees {
+
+        private final String name;
+        private final Deque<ExprTree> trees = new ArrayDeque<>();
+        private final List<ClassMethod> failedMethods = new ArrayList<>(0);
+        private final List<RuntimeException> failures = new ArrayList<>(0);
+
+        private ClassTrees(ClassFactory factory) {
+            this.name = factory.name();
+            for (ClassMethod method : factory.methods) {
+                try {
+                    build(method).ifPresent(trees::add);
+                } catch (RuntimeException e) {
+                    failedMethods.add(method);
+                    failures.add(e);
+                }
+            }
+        }
+    }
+
     /**
      * Handles the expression tree building process.
      *
@@ -21,15 +21,19 @@ public class BasicBlock {
     public final ClassMethod method;
     public final int start, end;
 
-    private BasicInstruction[] instructions;
-    private Integer[] instructionIndices;
+    private volatile BasicInstruction[] instructions;
+    final int[] instructionIndices;
 
-    public BasicBlock(String id, ClassMethod method, int start, int end, List<Integer> instructionIndices) {
+    public BasicBlock(String id, ClassMethod method, int start, int end, int[] instructionIndices) {
         this.id = id;
         this.method = method;
         this.start = start;
         this.end = end;
-        this.instructionIndices = instructionIndices.toArray(new Integer[instructionIndices.size()]);
+        this.instructionIndices = instructionIndices;
+    }
+
+    public BasicBlock(String id, ClassMethod method, int start, int end, List<Integer> instructionIndices) {
+        this(id, method, start, end, instructionIndices.stream().mapToInt(Integer::intValue).toArray());
     }
 
     /**
@@ -46,6 +50,20 @@ public class BasicBlock {
         this.instructions = newInstructions;
     }
 
+    /**
+     * Sets the instructions of this block from their indices, replacing the ones given on construction
+     * as {@link #append(BasicBlock)} would.
+     *
+     * @param indices The indices of this block's instructions.
+     */
+    void setInstructions(int[] indices) {
+        BasicInstruction[] instructions = new BasicInstruction[indices.length];
+        for (int i = 0; i < instructions.length; i++) {
+            instructions[i] = new BasicInstruction(this, method.instructions().get(indices[i]));
+        }
+        this.instructions = instructions;
+    }
+
     /**
      * Gets the list of successors for this BasicBlock.
      *
@@ -56,7 +74,7 @@ public class BasicBlock {
     }
 
     /**
-     * Gets this block's predecessor.
+     * Gets this block's predecessor. When several blocks lead to this block, this is the one that starts last.
      *
      * @return This block's predecessor.
      */
@@ -95,10 +113,18 @@ public class BasicBlock {
      * @return A list of instructions within this block.
      */
     public BasicInstruction[] instructions(boolean cached) {
+        BasicInstruction[] instructions = this.instructions;
         if (!cached || instructions == null) {
-            instructions = new BasicInstruction[size()];
-            for (int i = 0; i < instructions.length; i++) {
-                instructions[i] = new BasicInstruction(this, method.instructions().get(instructionIndices[i]));
+            //Built under the lock so that threads sharing a graph see the same instructions.
+            synchronized (this) {
+                instructions = this.instructions;
+                if (!cached || instructions == null) {
+                    instructions = new BasicInstruction[size()];
+                    for (int i = 0; i < instructions.length; i++) {
+                        instructions[i] = new BasicInstruction(this, method.instructions().get(instructionIndices[i]));
+                    }
+                    this.instructions = instructions;
+                }
             }
         }
         return instructions;
@@ -11,8 +11,6 @@ public class BasicInstruction {
     public final BasicBlock block;
     public final AbstractInsnNode insn;
 
-    protected BasicInstruction previous;
-
     public BasicInstruction(BasicBlock block, AbstractInsnNode insn) {
         this.block = block;
         this.insn = insn;
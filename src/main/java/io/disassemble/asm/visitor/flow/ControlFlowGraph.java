@@ -2,10 +2,7 @@ package io.disassemble.asm.visitor.flow;
 
 import io.disassemble.asm.ClassMethod;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author Tyler Sedlar
@@ -24,7 +21,7 @@ public class ControlFlowGraph {
     }
 
     protected void flatten() {
-        List<BasicBlock> merged = new ArrayList<>();
+        Set<BasicBlock> merged = Collections.newSetFromMap(new IdentityHashMap<>());
         blocks.sort(Comparator.comparingInt(b -> b.start));
         blocks.stream()
                 .filter(block -> !merged.contains(block) && block.successors.size() == 1)
@@ -43,7 +40,7 @@ public class ControlFlowGraph {
                     }
                     merged.remove(block);
                 });
-        blocks.removeAll(merged);
+        blocks.removeIf(merged::contains);
     }
 
     /**
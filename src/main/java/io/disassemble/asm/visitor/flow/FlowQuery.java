@@ -26,22 +26,53 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
     private final Map<Integer, BranchType> branchTypes = new HashMap<>();
     private final List<Integer> loops = new ArrayList<>();
     private final List<Integer> restrictedLoops = new ArrayList<>();
+    private final List<BitSet> opcodes = new ArrayList<>();
+    private volatile FlowQueryPlan plan;
     private boolean stopAtFirst = true;
     private Predicate<ClassFactory> restrictToClass;
     private Predicate<ClassMethod> restrictToMethod;
 
+    /**
+     * Finds the results of this query within the given graph.
+     * <p>
+     * Unless this query is {@link #continuous()}, it is locked by the first graph it matches. This may be called
+     * for several graphs at once, in which case only the call that locks the query gets its results, and calls
+     * made once the query is locked find nothing.
+     *
+     * @param cfg The graph to query.
+     * @return The results of this query within the given graph, or empty if the graph's method is restricted or
+     * a match was already found elsewhere.
+     */
     @Override
     public Optional<List<FlowQueryResult>> find(ControlFlowGraph cfg) {
-        if (restrictToClass == null || restrictToClass.test(cfg.method.owner)) {
-            if (restrictToMethod == null || restrictToMethod.test(cfg.method)) {
-                List<FlowQueryResult> results = cfg.execution().query(this);
-                if (stopAtFirst && !results.isEmpty()) {
-                    lock();
-                }
-                return Optional.ofNullable(results);
-            }
+        return (accepts(cfg) ? found(cfg.execution().query(this)) : Optional.empty());
+    }
+
+    /**
+     * Checks whether the given graph is to be queried, it isn't if its method is restricted or this query stopped.
+     *
+     * @param cfg The graph to check.
+     * @return true if the given graph is to be queried, otherwise false.
+     */
+    boolean accepts(ControlFlowGraph cfg) {
+        if (stopAtFirst && locked()) {
+            return false;
         }
-        return Optional.empty();
+        return (restrictToClass == null || restrictToClass.test(cfg.method.owner)) &&
+                (restrictToMethod == null || restrictToMethod.test(cfg.method));
+    }
+
+    /**
+     * Takes the results of querying an accepted graph, locking this query if it stops at its first match.
+     *
+     * @param results The results within the graph.
+     * @return The given results, or empty if this query was locked by another graph meanwhile.
+     */
+    Optional<List<FlowQueryResult>> found(List<FlowQueryResult> results) {
+        if (stopAtFirst && !results.isEmpty() && !tryLock()) {
+            return Optional.empty();
+        }
+        return Optional.of(results);
     }
 
     /**
@@ -53,6 +84,46 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
         return predicates;
     }
 
+    /**
+     * Gets the compiled form of this query, compiling it if it was modified since it was last compiled.
+     *
+     * @return The compiled form of this query.
+     */
+    FlowQueryPlan plan() {
+        FlowQueryPlan plan = this.plan;
+        if (plan == null || plan.size != predicates.size()) {
+            this.plan = plan = new FlowQueryPlan(this, opcodes);
+        }
+        return plan;
+    }
+
+    private FlowQuery add(Predicate<BasicInstruction> predicate, BitSet opcodes) {
+        while (this.opcodes.size() < predicates.size()) {
+            this.opcodes.add(null);
+        }
+        predicates.add(predicate);
+        this.opcodes.add(opcodes);
+        plan = null;
+        return this;
+    }
+
+    private static BitSet opcodes(int... opcodes) {
+        BitSet set = new BitSet(257);
+        for (int opcode : opcodes) {
+            if (opcode < -1 || opcode > 255) {
+                return null;
+            }
+            set.set(opcode + 1);
+        }
+        return set;
+    }
+
+    private static BitSet opcodeRange(int from, int to) {
+        BitSet set = new BitSet(257);
+        set.set(from + 1, to + 2);
+        return set;
+    }
+
     /**
      * Sets this FlowQuery to continuously fetch all results, not only the first.
      *
@@ -102,8 +173,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with the given predicate.
      */
     public FlowQuery query(Predicate<BasicInstruction> predicate) {
-        predicates.add(predicate);
-        return this;
+        return add(predicate, null);
     }
 
     /**
@@ -114,9 +184,8 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      */
     public FlowQuery opcode(int... opcodes) {
         Arrays.sort(opcodes);
-        predicates.add(insn -> (insn != null && insn.insn != null &&
-                Arrays.binarySearch(opcodes, insn.insn.getOpcode()) >= 0));
-        return this;
+        return add(insn -> (insn != null && insn.insn != null &&
+                Arrays.binarySearch(opcodes, insn.insn.getOpcode()) >= 0), opcodes(opcodes));
     }
 
     /**
@@ -125,10 +194,11 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an if statement.
      */
     public FlowQuery stmtIf() {
-        predicates.add(insn -> insn != null && insn.insn != null && ((insn.insn.getOpcode() >= IFEQ &&
+        BitSet opcodes = opcodeRange(IFEQ, IF_ACMPNE);
+        opcodes.or(opcodeRange(IFNULL, IFNONNULL));
+        return add(insn -> insn != null && insn.insn != null && ((insn.insn.getOpcode() >= IFEQ &&
                 insn.insn.getOpcode() <= IF_ACMPNE) ||
-                (insn.insn.getOpcode() >= IFNULL && insn.insn.getOpcode() <= IFNONNULL)));
-        return this;
+                (insn.insn.getOpcode() >= IFNULL && insn.insn.getOpcode() <= IFNONNULL)), opcodes);
     }
 
     /**
@@ -142,7 +212,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for a store statement.
      */
     public FlowQuery stmtStore(Predicate<Integer> var) {
-        predicates.add(insn -> {
+        return add(insn -> {
             if (insn == null || insn.insn == null) {
                 return false;
             }
@@ -152,8 +222,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
                 return var == null || (hasVar && var.test(((VarInsnNode) insn.insn).var));
             }
             return false;
-        });
-        return this;
+        }, opcodeRange(ISTORE, SASTORE));
     }
 
     /**
@@ -180,7 +249,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for a load statement.
      */
     public FlowQuery stmtLoad(Predicate<Integer> var) {
-        predicates.add(insn -> {
+        return add(insn -> {
             if (insn == null || insn.insn == null) {
                 return false;
             }
@@ -190,8 +259,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
                 return var == null || (hasVar && var.test(((VarInsnNode) insn.insn).var));
             }
             return false;
-        });
-        return this;
+        }, opcodeRange(ILOAD, SALOAD));
     }
 
     /**
@@ -223,9 +291,9 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for a TypeInsnNode matching the given type.
      */
     public FlowQuery stmtType(Supplier<String> type) {
-        predicates.add(insn -> (insn != null && insn.insn != null && insn.insn instanceof TypeInsnNode &&
-                (type == null || StringMatcher.matches(type.get(), ((TypeInsnNode) insn.insn).desc))));
-        return this;
+        return add(insn -> (insn != null && insn.insn != null && insn.insn instanceof TypeInsnNode &&
+                (type == null || StringMatcher.matches(type.get(), ((TypeInsnNode) insn.insn).desc))),
+                opcodes(NEW, ANEWARRAY, CHECKCAST, INSTANCEOF));
     }
 
     /**
@@ -256,8 +324,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for a GETFIELD matching the given arguments.
      */
     public FlowQuery stmtGetField(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(fieldPredicate(GETFIELD, owner, desc));
-        return this;
+        return add(fieldPredicate(GETFIELD, owner, desc), opcodes(GETFIELD));
     }
 
     /**
@@ -268,8 +335,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for a GETSTATIC matching the given arguments.
      */
     public FlowQuery stmtGetStatic(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(fieldPredicate(GETSTATIC, owner, desc));
-        return this;
+        return add(fieldPredicate(GETSTATIC, owner, desc), opcodes(GETSTATIC));
     }
 
     /**
@@ -280,8 +346,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for a PUTFIELD matching the given arguments.
      */
     public FlowQuery stmtPutField(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(fieldPredicate(PUTFIELD, owner, desc));
-        return this;
+        return add(fieldPredicate(PUTFIELD, owner, desc), opcodes(PUTFIELD));
     }
 
     /**
@@ -292,8 +357,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for a PUTSTATIC matching the given arguments.
      */
     public FlowQuery stmtPutStatic(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(fieldPredicate(PUTSTATIC, owner, desc));
-        return this;
+        return add(fieldPredicate(PUTSTATIC, owner, desc), opcodes(PUTSTATIC));
     }
 
     private Predicate<BasicInstruction> methodPredicate(int opcode, Supplier<String> owner, Supplier<String> desc) {
@@ -315,8 +379,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an INVOKEVIRTUAL matching the given arguments.
      */
     public FlowQuery stmtInvokeVirtual(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(methodPredicate(INVOKEVIRTUAL, owner, desc));
-        return this;
+        return add(methodPredicate(INVOKEVIRTUAL, owner, desc), opcodes(INVOKEVIRTUAL));
     }
 
     /**
@@ -327,8 +390,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an INVOKESTATIC matching the given arguments.
      */
     public FlowQuery stmtInvokeStatic(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(methodPredicate(INVOKESTATIC, owner, desc));
-        return this;
+        return add(methodPredicate(INVOKESTATIC, owner, desc), opcodes(INVOKESTATIC));
     }
 
     /**
@@ -339,8 +401,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an INVOKESPECIAL matching the given arguments.
      */
     public FlowQuery stmtInvokeSpecial(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(methodPredicate(INVOKESPECIAL, owner, desc));
-        return this;
+        return add(methodPredicate(INVOKESPECIAL, owner, desc), opcodes(INVOKESPECIAL));
     }
 
     /**
@@ -351,8 +412,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an INVOKEINTERFACE matching the given arguments.
      */
     public FlowQuery stmtInvokeInterface(Supplier<String> owner, Supplier<String> desc) {
-        predicates.add(methodPredicate(INVOKEINTERFACE, owner, desc));
-        return this;
+        return add(methodPredicate(INVOKEINTERFACE, owner, desc), opcodes(INVOKEINTERFACE));
     }
 
     /**
@@ -362,10 +422,10 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an IntInsnNode matching the given predicate.
      */
     public FlowQuery stmtPush(Predicate<Integer> operand) {
-        predicates.add(insn -> insn != null && insn.insn != null && (insn.insn.getOpcode() == BIPUSH ||
+        return add(insn -> insn != null && insn.insn != null && (insn.insn.getOpcode() == BIPUSH ||
                 insn.insn.getOpcode() == SIPUSH) &&
-                (operand == null || operand.test(((IntInsnNode) insn.insn).operand)));
-        return this;
+                (operand == null || operand.test(((IntInsnNode) insn.insn).operand)),
+                opcodes(BIPUSH, SIPUSH));
     }
 
     /**
@@ -384,9 +444,9 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an LdcInsnNode matching the given predicate.
      */
     public FlowQuery stmtStringConstant(Supplier<String> constant) {
-        predicates.add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
-                (constant == null || constant.get() == null || constant.get().equals(((LdcInsnNode) insn.insn).cst))));
-        return this;
+        return add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
+                (constant == null || constant.get() == null || constant.get().equals(((LdcInsnNode) insn.insn).cst))),
+                opcodes(LDC));
     }
 
     /**
@@ -396,9 +456,9 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an LdcInsnNode matching the given predicate.
      */
     public FlowQuery stmtIntConstant(Supplier<Integer> constant) {
-        predicates.add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
-                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)));
-        return this;
+        return add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
+                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)),
+                opcodes(LDC));
     }
 
     /**
@@ -408,9 +468,9 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an LdcInsnNode matching the given predicate.
      */
     public FlowQuery stmtLongConstant(Supplier<Long> constant) {
-        predicates.add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
-                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)));
-        return this;
+        return add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
+                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)),
+                opcodes(LDC));
     }
 
     /**
@@ -420,9 +480,9 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an LdcInsnNode matching the given predicate.
      */
     public FlowQuery stmtDoubleConstant(Supplier<Double> constant) {
-        predicates.add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
-                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)));
-        return this;
+        return add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
+                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)),
+                opcodes(LDC));
     }
 
     /**
@@ -432,9 +492,9 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      * @return This FlowQuery chained with a predicate checking for an LdcInsnNode matching the given predicate.
      */
     public FlowQuery stmtShortConstant(Supplier<Short> constant) {
-        predicates.add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
-                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)));
-        return this;
+        return add(insn -> (insn != null && insn.insn != null && insn.insn instanceof LdcInsnNode &&
+                (constant == null || constant.get() == null || constant.get() == ((LdcInsnNode) insn.insn).cst)),
+                opcodes(LDC));
     }
 
     /**
@@ -633,6 +693,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      */
     public FlowQuery branch() {
         branches.add(predicates.size() - 1);
+        plan = null;
         return this;
     }
 
@@ -644,6 +705,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
     public FlowQuery branchTrue() {
         branch();
         branchTypes.put(predicates.size() - 1, BranchType.TRUE);
+        plan = null;
         return this;
     }
 
@@ -655,6 +717,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
     public FlowQuery branchFalse() {
         branch();
         branchTypes.put(predicates.size() - 1, BranchType.FALSE);
+        plan = null;
         return this;
     }
 
@@ -686,6 +749,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      */
     public FlowQuery dist(int maxDist) {
         dists.put(predicates.size() - 1, maxDist);
+        plan = null;
         return this;
     }
 
@@ -699,6 +763,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
         for (int i = 0; i < predicates.size(); i++) {
             dists.put(i, maxDist);
         }
+        plan = null;
         return this;
     }
 
@@ -740,6 +805,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      */
     public FlowQuery loops() {
         loops.add(predicates.size() - 1);
+        plan = null;
         return this;
     }
 
@@ -750,6 +816,7 @@ public class FlowQuery extends Query<FlowQueryResult, ControlFlowGraph> {
      */
     public FlowQuery doesNotLoop() {
         restrictedLoops.add(predicates.size() - 1);
+        plan = null;
         return this;
     }
 
@@ -0,0 +1,171 @@
+package io.disassemble.asm.visitor.flow;
+
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs many FlowQueries over each graph while walking the graph's instructions only once.
+ * <p>
+ * The first step of every query is indexed by the opcodes it can match, so each instruction is only tested
+ * against the queries that could start at it. Queries whose first step has no known opcodes, such as those
+ * added through {@link FlowQuery#query(java.util.function.Predicate)}, are tested against every instruction.
+ * The later steps of a query only look at the instructions near its own candidates, so they're run per query.
+ * <p>
+ * Each query gets the same results {@link FlowQuery#find(ControlFlowGraph)} would give it, in the same order:
+ * locked queries and restricted methods are skipped, and a query that stops at its first match is locked by it.
+ * Graphs can be queried by several threads at once, but queries cannot be added or modified meanwhile.
+ *
+ * @author Christopher Carpenter
+ */
+public class FlowQueryEngine {
+
+    private final List<FlowQuery> queries = new ArrayList<>();
+    private final List<Consumer<List<FlowQueryResult>>> consumers = new ArrayList<>();
+    private volatile Index index;
+
+    /**
+     * Adds a query to be run over every graph.
+     *
+     * @param query    The query to add.
+     * @param consumer The consumer to give the results of each graph the query matches.
+     * @return This FlowQueryEngine chained with the given query.
+     */
+    public synchronized FlowQueryEngine add(FlowQuery query, Consumer<List<FlowQueryResult>> consumer) {
+        queries.add(query);
+        consumers.add(consumer);
+        index = null;
+        return this;
+    }
+
+    /**
+     * Gets the amount of queries within this engine.
+     *
+     * @return The amount of queries within this engine.
+     */
+    public synchronized int size() {
+        return queries.size();
+    }
+
+    /**
+     * Runs every query over the graphs of the given class' methods.
+     *
+     * @param factory The class to query.
+     */
+    public void find(ClassFactory factory) {
+        for (ClassMethod method : factory.methods) {
+            method.cfg().ifPresent(this::find);
+        }
+    }
+
+    /**
+     * Runs every query over the given graph.
+     *
+     * @param cfg The graph to query.
+     */
+    public void find(ControlFlowGraph cfg) {
+        Index index = index();
+        FlowQueryPlan[] plans = index.plans;
+        boolean[] active = new boolean[plans.length];
+        boolean any = false;
+        for (int i = 0; i < plans.length; i++) {
+            FlowQuery query = index.queries[i];
+            if (plans[i].size > 0 && !query.locked() && query.accepts(cfg)) {
+                active[i] = any = true;
+            }
+        }
+        if (!any) {
+            return;
+        }
+        List<BasicBlock> blocks = cfg.blocks();
+        FlowQueryExecution[] executions = new FlowQueryExecution[plans.length];
+        FlowQueryExecution.scan(blocks, (insn, position) -> {
+            int opcode = (insn.insn != null ? insn.insn.getOpcode() : -1);
+            for (int i : index.byOpcode[opcode + 1]) {
+                if (active[i] && plans[i].predicates[0].test(insn)) {
+                    if (executions[i] == null) {
+                        executions[i] = new FlowQueryExecution(plans[i], blocks);
+                    }
+                    executions[i].first(insn, position);
+                }
+            }
+        });
+        for (int i = 0; i < executions.length; i++) {
+            if (executions[i] != null) {
+                List<List<BasicInstruction>> matches = executions[i].advance();
+                List<FlowQueryResult> results = new ArrayList<>(matches.size());
+                for (List<BasicInstruction> instructions : matches) {
+                    results.add(new FlowQueryResult(index.queries[i], instructions));
+                }
+                index.queries[i].found(results).ifPresent(index.consumers[i]);
+            }
+        }
+    }
+
+    private Index index() {
+        Index index = this.index;
+        if (index == null || !index.current()) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null || !index.current()) {
+                    this.index = index = new Index(queries, consumers);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The plans of the queries, with the queries that can start at each opcode. Opcodes are offset by one so that
+     * labels, line numbers and frames, which have an opcode of -1, are at 0.
+     */
+    private static class Index {
+
+        private final FlowQuery[] queries;
+        private final Consumer<List<FlowQueryResult>>[] consumers;
+        private final FlowQueryPlan[] plans;
+        private final int[][] byOpcode = new int[257][];
+
+        private Index(List<FlowQuery> queries, List<Consumer<List<FlowQueryResult>>> consumers) {
+            this.queries = queries.toArray(new FlowQuery[0]);
+            @SuppressWarnings("unchecked")
+            Consumer<List<FlowQueryResult>>[] typed = (Consumer<List<FlowQueryResult>>[]) new Consumer<?>[0];
+            this.consumers = consumers.toArray(typed);
+            this.plans = new FlowQueryPlan[this.queries.length];
+            int[] sizes = new int[byOpcode.length];
+            for (int i = 0; i < byOpcode.length; i++) {
+                byOpcode[i] = new int[4];
+            }
+            for (int i = 0; i < plans.length; i++) {
+                plans[i] = this.queries[i].plan();
+                if (plans[i].size == 0) {
+                    continue;
+                }
+                for (int opcode = 0; opcode < byOpcode.length; opcode++) {
+                    if (plans[i].opcodes[0] == null || plans[i].opcodes[0].get(opcode)) {
+                        if (sizes[opcode] == byOpcode[opcode].length) {
+                            byOpcode[opcode] = Arrays.copyOf(byOpcode[opcode], sizes[opcode] * 2);
+                        }
+                        byOpcode[opcode][sizes[opcode]++] = i;
+                    }
+                }
+            }
+            for (int i = 0; i < byOpcode.length; i++) {
+                byOpcode[i] = Arrays.copyOf(byOpcode[i], sizes[i]);
+            }
+        }
+
+        private boolean current() {
+            for (int i = 0; i < plans.length; i++) {
+                if (queries[i].plan() != plans[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package io.disassemble.asm.visitor.flow;
+
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+
+import java.util.*;
+
+/**
+ * A single run of a {@link FlowQueryPlan} over the blocks of an {@link ExecutionPath}.
+ * <p>
+ * The candidates of the first step are either found by {@link #run()} scanning the blocks itself, or given through
+ * {@link #first(BasicInstruction, int)} by a {@link FlowQueryEngine} scanning the blocks for several queries at once.
+ * <p>
+ * The candidates of every step are kept here along with the candidate of the previous step they were found from,
+ * rather than on the graph's instructions, so the same graph can be queried by several threads at once and a
+ * plan can be run by several threads at once.
+ *
+ * @author Christopher Carpenter
+ */
+final class FlowQueryExecution {
+
+    private final FlowQueryPlan plan;
+    private final List<BasicBlock> blocks;
+    private final Matches[] steps;
+
+    FlowQueryExecution(FlowQueryPlan plan, List<BasicBlock> blocks) {
+        this.plan = plan;
+        this.blocks = blocks;
+        this.steps = new Matches[plan.size];
+    }
+
+    /**
+     * Runs the plan.
+     *
+     * @return The instructions matched by each step, for every match of the plan.
+     */
+    List<List<BasicInstruction>> run() {
+        if (plan.size == 0) {
+            return Collections.emptyList();
+        }
+        scan(blocks, (insn, index) -> {
+            if (plan.matches(0, insn)) {
+                first(insn, index);
+            }
+        });
+        return advance();
+    }
+
+    /**
+     * Adds a candidate of the first step. Candidates must be given in the order {@link #scan} visits them.
+     *
+     * @param insn  The instruction matching the first step.
+     * @param index The index of the instruction within its block, or -1 if it's not known.
+     */
+    void first(BasicInstruction insn, int index) {
+        if (steps[0] == null) {
+            steps[0] = new Matches();
+        }
+        steps[0].add(insn, index, -1);
+    }
+
+    /**
+     * Runs the steps after the first from the candidates given to {@link #first(BasicInstruction, int)}.
+     *
+     * @return The instructions matched by each step, for every match of the plan.
+     */
+    List<List<BasicInstruction>> advance() {
+        if (plan.size == 0 || steps[0] == null) {
+            return Collections.emptyList();
+        }
+        for (int i = 1; i < plan.size; i++) {
+            Matches matching = steps[i] = new Matches();
+            Matches last = steps[i - 1];
+            if (plan.branches[i - 1]) {
+                FlowQuery.BranchType branchType = plan.branchTypes[i - 1];
+                for (int j = 0; j < last.size; j++) {
+                    BasicInstruction insn = last.insns[j];
+                    if (branchType == FlowQuery.BranchType.DEFAULT) {
+                        for (BasicBlock block : insn.block.successors) {
+                            findBranch(i, j, block, matching);
+                        }
+                    } else {
+                        Optional<BasicBlock> block = (branchType == FlowQuery.BranchType.TRUE ?
+                                insn.block.trueBranch() : insn.block.falseBranch());
+                        if (block.isPresent()) {
+                            findBranch(i, j, block.get(), matching);
+                        }
+                    }
+                }
+            } else {
+                for (int j = 0; j < last.size; j++) {
+                    findNext(i, j, last.insns[j], last.indices[j], matching);
+                }
+            }
+            if (matching.size == 0) {
+                return Collections.emptyList();
+            }
+        }
+        Matches endings = steps[plan.size - 1];
+        if (endings.size == 0) {
+            return Collections.emptyList();
+        }
+        List<List<BasicInstruction>> results = new ArrayList<>(endings.size);
+        for (int j = 0; j < endings.size; j++) {
+            BasicInstruction[] hierarchy = new BasicInstruction[plan.size];
+            for (int i = plan.size - 1, match = j; i >= 0; match = steps[i--].parents[match]) {
+                hierarchy[i] = steps[i].insns[match];
+            }
+            results.add(Arrays.asList(hierarchy));
+        }
+        return results;
+    }
+
+    /**
+     * Visits the instructions of the given blocks and the blocks they lead to, depth first, visiting each block
+     * once.
+     *
+     * @param blocks  The blocks to start from.
+     * @param visitor The visitor to give each instruction to, along with its index within its block.
+     */
+    static void scan(List<BasicBlock> blocks, InstructionVisitor visitor) {
+        Set<BasicBlock> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+        for (BasicBlock root : blocks) {
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                BasicBlock block = pending.pop();
+                if (!visited.add(block)) {
+                    continue;
+                }
+                BasicInstruction[] insns = block.instructions();
+                for (int i = 0; i < insns.length; i++) {
+                    //Instructions appended to this block when flattening still belong to their own block.
+                    visitor.visit(insns[i], (insns[i].block == block ? i : -1));
+                }
+                for (int i = block.successors.size() - 1; i >= 0; i--) {
+                    pending.push(block.successors.get(i));
+                }
+            }
+        }
+    }
+
+    private void findBranch(int step, int parent, BasicBlock block, Matches matching) {
+        BasicInstruction[] insns = block.instructions();
+        for (int i = 0; i < insns.length; i++) {
+            if (plan.matches(step, insns[i])) {
+                matching.add(insns[i], (insns[i].block == block ? i : -1), parent);
+            }
+        }
+    }
+
+    private void findNext(int step, int parent, BasicInstruction insn, int index, Matches matching) {
+        BasicInstruction[] insns = insn.block.instructions();
+        if (index == -1) {
+            index = insn.block.indexOf(insn);
+        }
+        int end = (int) Math.min(Math.min(insns.length, insn.block.size()), (long) index + 1 + plan.dists[step]);
+        for (int i = index + 1; i < end; i++) {
+            if (plan.matches(step, insns[i])) {
+                if (loopMatches(step, insn)) {
+                    matching.add(insns[i], i, parent);
+                }
+                return;
+            }
+        }
+    }
+
+    private boolean loopMatches(int step, BasicInstruction insn) {
+        if (!plan.loops[step] && !plan.doesNotLoop[step]) {
+            return true;
+        }
+        LabelNode label = parentLabel(insn);
+        if (label == null) {
+            return false;
+        }
+        for (BasicInstruction jump : insn.block.instructions()) {
+            if (jump.insn instanceof JumpInsnNode && ((JumpInsnNode) jump.insn).label == label) {
+                return true;
+            }
+        }
+        return plan.doesNotLoop[step];
+    }
+
+    private static LabelNode parentLabel(BasicInstruction insn) {
+        Set<BasicBlock> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BasicInstruction parent = insn.parent(); parent != null && visited.add(parent.block);
+             parent = parent.parent()) {
+            if (parent.block.size() > 1) {
+                BasicInstruction[] insns = parent.block.instructions();
+                int index = parent.block.indexOf(parent);
+                for (int i = index - 1; i >= 0 && i >= index - 5; i--) {
+                    if (insns[i].insn instanceof LabelNode) {
+                        return (LabelNode) insns[i].insn;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visits the instructions found by {@link #scan}.
+     */
+    interface InstructionVisitor {
+
+        void visit(BasicInstruction insn, int index);
+    }
+
+    /**
+     * The candidates of a step, along with their index within their block and the candidate of the previous step
+     * they were found from. Instructions that were appended to another block when the graph was flattened are
+     * given an index of -1, it's looked up if needed.
+     */
+    private static class Matches {
+
+        private BasicInstruction[] insns = new BasicInstruction[8];
+        private int[] indices = new int[8];
+        private int[] parents = new int[8];
+        private int size;
+
+        private void add(BasicInstruction insn, int index, int parent) {
+            if (size == insns.length) {
+                insns = Arrays.copyOf(insns, size * 2);
+                indices = Arrays.copyOf(indices, size * 2);
+                parents = Arrays.copyOf(parents, size * 2);
+            }
+            insns[size] = insn;
+            indices[size] = index;
+            parents[size++] = parent;
+        }
+    }
+}
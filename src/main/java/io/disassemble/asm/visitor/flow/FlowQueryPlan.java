@@ -0,0 +1,66 @@
+package io.disassemble.asm.visitor.flow;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The steps of a {@link FlowQuery}, compiled into arrays so that {@link ExecutionPath#query(FlowQuery)} doesn't
+ * look up the query's maps for every instruction it tests.
+ * <p>
+ * Each step keeps the opcodes its predicate can accept, when they're known, so most instructions are rejected
+ * by a bit test before the predicate is called. A plan is built by {@link FlowQuery#plan()} the first time the
+ * query is run, and is rebuilt whenever the query is modified.
+ *
+ * @author Christopher Carpenter
+ */
+final class FlowQueryPlan {
+
+    final int size;
+    final Predicate<BasicInstruction>[] predicates;
+    final BitSet[] opcodes;
+    final int[] dists;
+    final boolean[] branches, loops, doesNotLoop;
+    final FlowQuery.BranchType[] branchTypes;
+
+    FlowQueryPlan(FlowQuery query, List<BitSet> opcodes) {
+        List<Predicate<BasicInstruction>> predicates = query.predicates();
+        this.size = predicates.size();
+        @SuppressWarnings("unchecked")
+        Predicate<BasicInstruction>[] steps = (Predicate<BasicInstruction>[]) new Predicate<?>[size];
+        this.predicates = predicates.toArray(steps);
+        this.opcodes = new BitSet[size];
+        this.dists = new int[size];
+        this.branches = new boolean[size];
+        this.loops = new boolean[size];
+        this.doesNotLoop = new boolean[size];
+        this.branchTypes = new FlowQuery.BranchType[size];
+        for (int i = 0; i < size; i++) {
+            //Predicates added to FlowQuery#predicates() directly have no known opcodes.
+            this.opcodes[i] = (i < opcodes.size() ? opcodes.get(i) : null);
+            this.dists[i] = query.distAt(i);
+            this.branches[i] = query.branchesAt(i);
+            this.loops[i] = query.loopsAt(i);
+            this.doesNotLoop[i] = query.doesNotLoopAt(i);
+            this.branchTypes[i] = query.branchTypeAt(i);
+        }
+    }
+
+    /**
+     * Checks whether the given instruction matches the given step.
+     *
+     * @param step The index of the step.
+     * @param insn The instruction to check.
+     * @return true if the given instruction matches the given step, otherwise false.
+     */
+    boolean matches(int step, BasicInstruction insn) {
+        BitSet mask = opcodes[step];
+        if (mask != null) {
+            int opcode = (insn.insn != null ? insn.insn.getOpcode() : -1);
+            if (!mask.get(opcode + 1)) {
+                return false;
+            }
+        }
+        return predicates[step].test(insn);
+    }
+}
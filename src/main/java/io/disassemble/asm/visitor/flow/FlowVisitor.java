@@ -4,10 +4,8 @@ import io.disassemble.asm.ClassMethodVisitor;
 import io.disassemble.asm.util.AlphaLabel;
 import org.objectweb.asm.tree.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import static org.objectweb.asm.Opcodes.*;
 
@@ -17,10 +15,21 @@ import static org.objectweb.asm.Opcodes.*;
  */
 public class FlowVisitor extends ClassMethodVisitor {
 
-    private final Map<Integer, List<Integer>> successors = new HashMap<>();
-    protected Map<Integer, BasicBlock> blocks = new HashMap<>();
-    private List<Integer> visited = new ArrayList<>();
-    private List<Integer> currentInstructions = new ArrayList<>();
+    /*
+    Everything is indexed by instruction index. The edges leaving an instruction are all added while that
+    instruction is visited, so they're stored contiguously: edgeStart[from] is the offset of the first edge
+    and edgeCount[from] the amount of edges.
+     */
+    private int[] edgeStart, edgeCount;
+    private int[] edgeTargets = new int[16];
+    private int edges;
+
+    private BasicBlock[] blocks;
+    private int blockCount;
+    private BitSet visited;
+
+    private int[] currentInstructions = new int[16];
+    private int currentSize;
 
     private int blockStart, blockEnd;
 
@@ -30,29 +39,55 @@ public class FlowVisitor extends ClassMethodVisitor {
         this.graph = graph;
     }
 
+    private void ensureInitialized() {
+        if (blocks == null) {
+            int size = Math.max(1, method.instructions().size());
+            edgeStart = new int[size];
+            edgeCount = new int[size];
+            blocks = new BasicBlock[size];
+            visited = new BitSet(size);
+        }
+    }
+
     protected void newControlFlowEdge(int from, int to) {
-        if (!successors.containsKey(from)) {
-            successors.put(from, new ArrayList<>());
+        ensureInitialized();
+        if (edgeCount[from] == 0) {
+            edgeStart[from] = edges;
+        }
+        if (edges == edgeTargets.length) {
+            edgeTargets = Arrays.copyOf(edgeTargets, edges * 2);
         }
-        successors.get(from).add(to);
-        if (!visited.contains(from)) {
-            if (currentInstructions.isEmpty()) {
+        edgeTargets[edges++] = to;
+        edgeCount[from]++;
+        if (!visited.get(from)) {
+            if (currentSize == 0) {
                 blockStart = from;
             }
-            currentInstructions.add(from);
+            addInstruction(from);
             AbstractInsnNode fromInsn = method.instructions().get(from);
             if (fromInsn instanceof JumpInsnNode) {
                 addBlock(from);
             }
-            visited.add(from);
+            visited.set(from);
         }
         blockEnd = to;
     }
 
+    private void addInstruction(int index) {
+        if (currentSize == currentInstructions.length) {
+            currentInstructions = Arrays.copyOf(currentInstructions, currentSize * 2);
+        }
+        currentInstructions[currentSize++] = index;
+    }
+
     private void addBlock(int to) {
-        blocks.put(blockStart, new BasicBlock(AlphaLabel.get(blocks.size()), method, blockStart, to,
-                currentInstructions));
-        currentInstructions.clear();
+        ensureInitialized();
+        String id = AlphaLabel.get(blockCount);
+        if (blocks[blockStart] == null) {
+            blockCount++;
+        }
+        blocks[blockStart] = new BasicBlock(id, method, blockStart, to, Arrays.copyOf(currentInstructions, currentSize));
+        currentSize = 0;
     }
 
     private void visitInstructionEdge(AbstractInsnNode insn) {
@@ -61,7 +96,7 @@ public class FlowVisitor extends ClassMethodVisitor {
         if (opcode != ATHROW && (opcode < IRETURN || opcode > RETURN)) {
             newControlFlowEdge(index, index + 1);
         } else {
-            currentInstructions.add(index);
+            addInstruction(index);
         }
     }
 
@@ -106,27 +141,36 @@ public class FlowVisitor extends ClassMethodVisitor {
     @Override
     public void visitEnd() {
         addBlock(blockEnd);
-        for (BasicBlock block : blocks.values()) {
-            List<Integer> succs = successors.get(block.end);
-            if (succs != null) {
-                for (int successor : succs) {
-                    BasicBlock succBlock = blocks.get(successor);
-                    if (succBlock != null) {
-                        block.successors.add(succBlock);
-                        succBlock.predecessor = block;
-                    }
+        for (BasicBlock block : blocks) {
+            if (block == null || block.end < 0 || block.end >= edgeCount.length) {
+                continue;
+            }
+            int first = edgeStart[block.end];
+            for (int i = first; i < first + edgeCount[block.end]; i++) {
+                int successor = edgeTargets[i];
+                BasicBlock succBlock = (successor >= 0 && successor < blocks.length ? blocks[successor] : null);
+                if (succBlock != null) {
+                    block.successors.add(succBlock);
+                    succBlock.predecessor = block;
                 }
             }
         }
         if (graph != null) {
-            graph.blocks.addAll(blocks.values());
+            for (BasicBlock block : blocks) {
+                if (block != null) {
+                    graph.blocks.add(block);
+                }
+            }
         }
         super.reset();
-        this.successors.clear();
-        this.visited.clear();
-        this.blocks.clear();
-        this.currentInstructions.clear();
-        this.blockStart = -1;
+        this.edgeStart = null;
+        this.edgeCount = null;
+        this.edges = 0;
+        this.blocks = null;
+        this.blockCount = 0;
+        this.visited = null;
+        this.currentSize = 0;
+        this.blockStart = 0;
     }
 
     @Override
@@ -0,0 +1,132 @@
+package io.disassemble.asm.visitor.flow;
+
+import io.disassemble.asm.ClassMethod;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Encodes ControlFlowGraphs to a compact binary form and decodes them back onto their method.
+ * <p>
+ * Blocks are stored by instruction index, so a graph can only be decoded onto a method with the same
+ * instructions as the one it was encoded from. Blocks that were merged away when the graph was flattened
+ * are kept when they're still referenced as a successor or predecessor, so decoded graphs are identical
+ * to the ones built by {@link ControlFlowGraph#create(ClassMethod)}.
+ *
+ * @author Christopher Carpenter
+ */
+public final class GraphCodec {
+
+    private GraphCodec() {
+    }
+
+    /**
+     * Writes the given graph.
+     *
+     * @param graph The graph to write.
+     * @param out   The output to write to.
+     * @throws IOException If the output cannot be written to.
+     */
+    public static void encode(ControlFlowGraph graph, DataOutput out) throws IOException {
+        Map<BasicBlock, Integer> ids = new IdentityHashMap<>();
+        List<BasicBlock> table = new ArrayList<>();
+        Deque<BasicBlock> pending = new ArrayDeque<>(graph.blocks);
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.poll();
+            if (ids.containsKey(block)) {
+                continue;
+            }
+            ids.put(block, table.size());
+            table.add(block);
+            pending.addAll(block.successors);
+            if (block.predecessor != null) {
+                pending.add(block.predecessor);
+            }
+        }
+        out.writeInt(table.size());
+        for (BasicBlock block : table) {
+            out.writeUTF(block.id);
+            out.writeInt(block.start);
+            out.writeInt(block.end);
+            writeIndices(out, block.instructionIndices);
+            int[] merged = indices(block);
+            boolean appended = !Arrays.equals(merged, block.instructionIndices);
+            out.writeBoolean(appended);
+            if (appended) {
+                writeIndices(out, merged);
+            }
+        }
+        for (BasicBlock block : table) {
+            out.writeInt(block.successors.size());
+            for (BasicBlock successor : block.successors) {
+                out.writeInt(ids.get(successor));
+            }
+            out.writeInt(block.predecessor != null ? ids.get(block.predecessor) : -1);
+        }
+        out.writeInt(graph.blocks.size());
+        for (BasicBlock block : graph.blocks) {
+            out.writeInt(ids.get(block));
+        }
+    }
+
+    /**
+     * Reads a graph for the given method.
+     *
+     * @param method The method the graph was built for.
+     * @param in     The input to read from.
+     * @return The graph that was read.
+     * @throws IOException If the input cannot be read from.
+     */
+    public static ControlFlowGraph decode(ClassMethod method, DataInput in) throws IOException {
+        BasicBlock[] table = new BasicBlock[in.readInt()];
+        for (int i = 0; i < table.length; i++) {
+            String id = in.readUTF();
+            int start = in.readInt();
+            int end = in.readInt();
+            table[i] = new BasicBlock(id, method, start, end, readIndices(in));
+            if (in.readBoolean()) {
+                table[i].setInstructions(readIndices(in));
+            }
+        }
+        for (BasicBlock block : table) {
+            int successors = in.readInt();
+            for (int i = 0; i < successors; i++) {
+                block.successors.add(table[in.readInt()]);
+            }
+            int predecessor = in.readInt();
+            block.predecessor = (predecessor != -1 ? table[predecessor] : null);
+        }
+        ControlFlowGraph graph = new ControlFlowGraph(method);
+        int blocks = in.readInt();
+        for (int i = 0; i < blocks; i++) {
+            graph.blocks.add(table[in.readInt()]);
+        }
+        return graph;
+    }
+
+    private static int[] indices(BasicBlock block) {
+        BasicInstruction[] instructions = block.instructions();
+        int[] indices = new int[instructions.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = block.method.instructions().indexOf(instructions[i].insn);
+        }
+        return indices;
+    }
+
+    private static void writeIndices(DataOutput out, int[] indices) throws IOException {
+        out.writeInt(indices.length);
+        for (int index : indices) {
+            out.writeInt(index);
+        }
+    }
+
+    private static int[] readIndices(DataInput in) throws IOException {
+        int[] indices = new int[in.readInt()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = in.readInt();
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,105 @@
+import io.disassemble.asm.AnalysisCache;
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.visitor.flow.BasicBlock;
+import io.disassemble.asm.visitor.flow.BasicInstruction;
+import io.disassemble.asm.visitor.flow.ControlFlowGraph;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+public class AnalysisCacheTest {
+    private static final File TEST_JAR = new File(AnalysisCacheTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("analysis.cache");
+        Map<String, List<String>> expected = new TreeMap<>();
+        try (AnalysisCache cache = AnalysisCache.open(file)) {
+            JarArchive ja = new JarArchive(TEST_JAR).copyThrough();
+            ja.build();
+            Assert.assertTrue(cache.attach(ja.classes()) > 0);
+            analyze(ja, expected);
+            Assert.assertEquals(expected.size() * 3, cache.size());
+            cache.save();
+        }
+        try (AnalysisCache cache = AnalysisCache.open(file)) {
+            Assert.assertEquals(expected.size() * 3, cache.size());
+            JarArchive ja = new JarArchive(TEST_JAR).lazy();
+            ja.build();
+            cache.attach(ja.classes());
+            Map<String, List<String>> actual = new TreeMap<>();
+            analyze(ja, actual);
+            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(expected.size() * 3, cache.size());
+            ClassMethod method = ja.classes().values().iterator().next().methods[0];
+            method.markDirty();
+            method.cfg(false);
+            Assert.assertEquals(expected.size() * 3, cache.size());
+        }
+    }
+
+    @Test
+    public void testSaveWhileAnalyzing() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("concurrent.cache");
+        Map<String, List<String>> expected = new TreeMap<>();
+        try (AnalysisCache cache = AnalysisCache.open(file)) {
+            JarArchive ja = new JarArchive(TEST_JAR).copyThrough();
+            ja.build();
+            cache.attach(ja.classes());
+            Thread analysis = new Thread(() -> analyze(ja, expected));
+            analysis.start();
+            while (analysis.isAlive()) {
+                cache.save();
+            }
+            analysis.join();
+            cache.save();
+        }
+        try (AnalysisCache cache = AnalysisCache.open(file)) {
+            Assert.assertEquals(expected.size() * 3, cache.size());
+        }
+    }
+
+    private static void analyze(JarArchive ja, Map<String, List<String>> results) {
+        for (ClassFactory factory : ja.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                List<String> result = new ArrayList<>();
+                result.addAll(method.findSimpleNanoPatterns());
+                result.addAll(method.findAdvancedNanoPatterns());
+                method.cfg().ifPresent(cfg -> result.addAll(describe(cfg)));
+                results.put(method.key(), result);
+            }
+        }
+    }
+
+    private static List<String> describe(ControlFlowGraph cfg) {
+        List<String> description = new ArrayList<>();
+        for (BasicBlock block : cfg.blocks()) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(block.id).append(' ').append(block.start).append('-').append(block.end)
+                    .append(' ').append(block.size()).append(" [");
+            for (BasicInstruction insn : block.instructions()) {
+                builder.append(block.method.instructions().indexOf(insn.insn)).append(',');
+            }
+            builder.append("] ->");
+            for (BasicBlock successor : block.successors()) {
+                builder.append(' ').append(successor.id).append('@').append(successor.start);
+            }
+            if (block.predecessor() != null) {
+                builder.append(" <- ").append(block.predecessor().id);
+            }
+            description.add(builder.toString());
+        }
+        return description;
+    }
+}
@@ -0,0 +1,147 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassField;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.util.ArchiveRemapper;
+import io.disassemble.asm.util.Assembly;
+import io.disassemble.asm.util.Mappings;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class ArchiveRemapperTest {
+    private static final File TEST_JAR = new File(ArchiveRemapperTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test() throws IOException {
+        JarArchive renamed = new JarArchive(TEST_JAR);
+        renamed.build();
+        JarArchive remapped = new JarArchive(TEST_JAR).copyThrough();
+        remapped.build();
+        ClassMethod method = findCalledMethod(renamed);
+        ClassField field = findAccessedField(renamed);
+        ClassFactory type = method.owner;
+        String typeName = type.name();
+        Mappings mappings = new Mappings()
+                .mapMethod(typeName, method.name(), method.desc(), "renamedMethod")
+                .mapField(field.owner.name(), field.name(), "renamedField")
+                .mapClass(typeName, "renamed/Type");
+        Assembly.rename(renamed.classes(), method, "renamedMethod");
+        Assembly.rename(renamed.classes(), field, "renamedField");
+        Assembly.rename(renamed.classes(), type, "renamed/Type");
+        int modified = new ArchiveRemapper(mappings).remap(remapped);
+        Assert.assertTrue(modified > 0 && modified < remapped.classes().size());
+        Assert.assertFalse(remapped.classes().containsKey(typeName));
+        Assert.assertEquals(renamed.classes().size(), remapped.classes().size());
+        for (ClassFactory expected : renamed.classes().values()) {
+            ClassFactory actual = remapped.classes().get(expected.name());
+            Assert.assertNotNull(expected.name(), actual);
+            Assert.assertEquals(expected.superName(), actual.superName());
+            for (int i = 0; i < expected.fields.length; i++) {
+                Assert.assertEquals(expected.fields[i].key(), actual.fields[i].key());
+            }
+            for (int i = 0; i < expected.methods.length; i++) {
+                Assert.assertEquals(expected.methods[i].key(), actual.methods[i].key());
+                Assert.assertEquals(expected.methods[i].key(), text(expected.methods[i]), text(actual.methods[i]));
+            }
+        }
+        File output = folder.newFile("remapped.jar");
+        remapped.write(output, 0);
+        JarArchive written = new JarArchive(output);
+        written.build();
+        Assert.assertEquals(remapped.classes().keySet(), written.classes().keySet());
+        Assert.assertNotNull(written.classes().get("renamed/Type").findMethod(m -> m.name().equals("renamedMethod")));
+    }
+
+    @Test
+    public void testCachedTypes() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassMethod method = null;
+        for (ClassFactory factory : ja.classes().values()) {
+            method = factory.findMethod(m -> m.parameters() > 0 && m.parameterAt(0).startsWith("L") &&
+                    ja.classes().containsKey(m.parameterTypes()[0].getInternalName()));
+            if (method != null) {
+                break;
+            }
+        }
+        Assert.assertNotNull(method);
+        String typeName = method.parameterTypes()[0].getInternalName();
+        new ArchiveRemapper(new Mappings().mapClass(typeName, "renamed/Type")).remap(ja);
+        Assert.assertTrue(method.desc().startsWith("(Lrenamed/Type;"));
+        Assert.assertEquals("Lrenamed/Type;", method.parameterAt(0));
+        Assert.assertEquals("renamed/Type", method.parameterTypes()[0].getInternalName());
+    }
+
+    @Test
+    public void testMethodStats() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassMethod method = null;
+        for (ClassFactory factory : ja.classes().values()) {
+            method = factory.findMethod(m -> (m.access() & Opcodes.ACC_STATIC) == 0 && m.parameters() > 0 &&
+                    m.parameterAt(0).startsWith("L") && ja.classes().containsKey(m.parameterTypes()[0].getInternalName()));
+            if (method != null) {
+                break;
+            }
+        }
+        Assert.assertNotNull(method);
+        String desc = method.desc();
+        ClassFactory owner = method.owner;
+        int count = owner.methodCount(desc);
+        Assert.assertTrue(count > 0);
+        new ArchiveRemapper(new Mappings().mapClass(method.parameterTypes()[0].getInternalName(), "renamed/Type"))
+                .remap(ja);
+        Assert.assertNotEquals(desc, method.desc());
+        Assert.assertEquals(0, owner.methodCount(desc));
+        Assert.assertTrue(owner.methodCount(method.desc()) > 0);
+    }
+
+    private static ClassMethod findCalledMethod(JarArchive ja) {
+        List<String> names = new ArrayList<>(ja.classes().keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            for (ClassMethod method : ja.classes().get(name).methods) {
+                // Assembly.rename renames calls to every overload, so only methods without overloads compare equal.
+                if (!method.name().startsWith("<") && method.callers(ja.classes()).size() > 1 &&
+                        method.owner.findMethods(m -> m.name().equals(method.name())).size() == 1) {
+                    return method;
+                }
+            }
+        }
+        throw new IllegalStateException("No method without overloads is called more than once");
+    }
+
+    private static ClassField findAccessedField(JarArchive ja) {
+        List<String> names = new ArrayList<>(ja.classes().keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            for (ClassField field : ja.classes().get(name).fields) {
+                if (!ja.references().accessors(field).isEmpty()) {
+                    return field;
+                }
+            }
+        }
+        throw new IllegalStateException("No field is accessed");
+    }
+
+    private static List<String> text(ClassMethod method) {
+        List<String> text = new ArrayList<>();
+        for (AbstractInsnNode insn : method.instructions().toArray()) {
+            if (insn.getOpcode() != -1) {
+                text.add(Assembly.toString(insn).replaceAll("LabelNode@[0-9a-f]+", "LabelNode"));
+            }
+        }
+        return text;
+    }
+}
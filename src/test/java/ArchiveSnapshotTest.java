@@ -0,0 +1,58 @@
+import io.disassemble.asm.ClassHandle;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class ArchiveSnapshotTest {
+    private static final File TEST_JAR = new File(ArchiveSnapshotTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void test() throws IOException {
+        File jar = folder.newFile("archive.jar");
+        Files.copy(TEST_JAR.toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Path snapshot = folder.getRoot().toPath().resolve("archive.snapshot");
+        JarArchive built = new JarArchive(jar).snapshot(snapshot);
+        built.build();
+        Assert.assertTrue(Files.isRegularFile(snapshot));
+        long modified = Files.getLastModifiedTime(snapshot).toMillis();
+
+        JarArchive restored = new JarArchive(jar).snapshot(snapshot).lazy();
+        restored.build();
+        Assert.assertEquals(built.handles().keySet(), restored.handles().keySet());
+        Assert.assertEquals(built.resources().keySet(), restored.resources().keySet());
+        for (ClassHandle handle : restored.handles().values()) {
+            ClassHandle expected = built.handles().get(handle.name());
+            Assert.assertFalse(handle.inflated());
+            Assert.assertEquals(expected.superName(), handle.superName());
+            Assert.assertEquals(expected.interfaces(), handle.interfaces());
+            Assert.assertEquals(expected.access(), handle.access());
+            Assert.assertArrayEquals(expected.bytes(), handle.bytes());
+        }
+        for (String name : built.resources().keySet()) {
+            Assert.assertArrayEquals(built.resources().get(name), restored.resources().get(name));
+        }
+        String name = restored.classes().keySet().iterator().next();
+        Assert.assertEquals(built.classes().get(name).methods.length, restored.classes().get(name).methods.length);
+        Assert.assertEquals(modified, Files.getLastModifiedTime(snapshot).toMillis());
+
+        Assert.assertTrue(jar.setLastModified(jar.lastModified() - 60_000));
+        JarArchive rebuilt = new JarArchive(jar).snapshot(snapshot).lazy();
+        rebuilt.build();
+        Assert.assertEquals(built.handles().keySet(), rebuilt.handles().keySet());
+        JarArchive current = new JarArchive(jar).snapshot(snapshot);
+        current.build();
+        Assert.assertTrue(current.handles().values().stream().allMatch(ClassHandle::inflated));
+        Assert.assertEquals(built.classes().keySet(), current.classes().keySet());
+    }
+}
@@ -0,0 +1,94 @@
+import io.disassemble.asm.*;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ArchiveStreamTest {
+    private static final File TEST_JAR = new File(ArchiveStreamTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testVisitors() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        CallCounter archiveCalls = new CallCounter();
+        ja.dispatch(archiveCalls);
+        Set<String> classes = new HashSet<>();
+        Set<String> resources = new HashSet<>();
+        CallCounter streamedCalls = new CallCounter();
+        int visited = new ArchiveStream(TEST_JAR)
+                .maxInFlight(2)
+                .visit(new ArchiveVisitor() {
+                    @Override
+                    public void visitClassFactory(ClassFactory cf) {
+                        classes.add(cf.name());
+                    }
+
+                    @Override
+                    public void visitResource(String name, byte[] data) {
+                        resources.add(name);
+                    }
+                })
+                .visit(streamedCalls)
+                .run();
+        Assert.assertEquals(ja.classes().size(), visited);
+        Assert.assertEquals(ja.classes().keySet(), classes);
+        Assert.assertEquals(ja.resources().keySet(), resources);
+        Assert.assertEquals(archiveCalls.calls, streamedCalls.calls);
+    }
+
+    @Test
+    public void testOutput() throws IOException {
+        File output = folder.newFile("streamed.jar");
+        String[] renamed = new String[1];
+        new ArchiveStream(TEST_JAR)
+                .visit(new ClassFactoryVisitor() {
+                    @Override
+                    public void visitMethod(ClassMethod cm) {
+                        if (renamed[0] == null && !cm.name().startsWith("<")) {
+                            renamed[0] = cm.key();
+                            cm.setName("streamedRename");
+                        }
+                    }
+                })
+                .output(output, ClassWriter.COMPUTE_MAXS)
+                .run();
+        Assert.assertNotNull(renamed[0]);
+        JarArchive original = new JarArchive(TEST_JAR).copyThrough();
+        original.build();
+        JarArchive written = new JarArchive(output).copyThrough();
+        written.build();
+        Assert.assertEquals(original.classes().keySet(), written.classes().keySet());
+        Assert.assertEquals(original.resources().keySet(), written.resources().keySet());
+        String owner = renamed[0].substring(0, renamed[0].indexOf('.'));
+        for (ClassFactory factory : original.classes().values()) {
+            byte[] bytes = written.classes().get(factory.name()).bytes();
+            if (factory.name().equals(owner)) {
+                ClassFactory rewritten = written.classes().get(owner);
+                Assert.assertNotNull(rewritten.findMethod(m -> m.name().equals("streamedRename")));
+            } else {
+                Assert.assertArrayEquals(factory.name(), factory.bytes(), bytes);
+            }
+        }
+    }
+
+    private static class CallCounter extends ClassMethodVisitor {
+
+        private int calls;
+
+        @Override
+        public void visitMethodInsn(MethodInsnNode min) {
+            calls++;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassField;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+
+public class ClassFactoryStatsTest {
+    private static final File TEST_JAR = new File(ClassFactoryStatsTest.class.getResource("SampleArchive.jar").getFile());
+
+    private static final String[] DESCS = {null, "I", "J", "Z", "[I", "Ljava/lang/String;", "()V", "(I)I", "LSample;"};
+
+    private static void assertCounts(ClassFactory factory) {
+        for (boolean includeStatic : new boolean[]{false, true}) {
+            for (String desc : DESCS) {
+                int fields = 0, methods = 0;
+                for (ClassField field : factory.fields) {
+                    if ((field.local() || includeStatic) && (desc == null || field.desc().equals(desc))) {
+                        fields++;
+                    }
+                }
+                for (ClassMethod method : factory.methods) {
+                    if ((method.local() || includeStatic) && (desc == null || method.desc().equals(desc))) {
+                        methods++;
+                    }
+                }
+                Assert.assertEquals(fields, factory.fieldCount(desc, includeStatic));
+                Assert.assertEquals(methods, factory.methodCount(desc, includeStatic));
+            }
+            Set<String> fieldDescs = new HashSet<>(), methodDescs = new HashSet<>();
+            int abnormal = 0;
+            for (ClassField field : factory.fields) {
+                if (field.local() || includeStatic) {
+                    fieldDescs.add(field.desc());
+                    String desc = field.desc();
+                    if (desc.contains("L") && desc.endsWith(";") && !desc.contains("java")) {
+                        abnormal++;
+                    }
+                }
+            }
+            for (ClassMethod method : factory.methods) {
+                if (method.local() || includeStatic) {
+                    methodDescs.add(method.desc());
+                }
+            }
+            Assert.assertEquals(fieldDescs.size(), factory.fieldTypeCount(includeStatic));
+            Assert.assertEquals(methodDescs.size(), factory.methodTypeCount(includeStatic));
+            Assert.assertEquals(abnormal, factory.abnormalFieldCount(includeStatic));
+        }
+    }
+
+    @Test
+    public void testCounts() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        for (ClassFactory factory : ja.classes().values()) {
+            assertCounts(factory);
+        }
+    }
+
+    @Test
+    public void testModifications() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassFactory factory = ja.classes().values().iterator().next();
+        assertCounts(factory);
+        ClassField field = new ClassField(factory, new FieldNode(ACC_PUBLIC, "added", "I", null, null));
+        factory.add(field);
+        assertCounts(factory);
+        field.setDescriptor("LSample;");
+        assertCounts(factory);
+        field.setAccess(ACC_PUBLIC | ACC_STATIC);
+        assertCounts(factory);
+        factory.remove(field);
+        assertCounts(factory);
+        ClassMethod method = new ClassMethod(factory, new MethodNode(ACC_PUBLIC, "added", "()V", null, null));
+        factory.add(method);
+        assertCounts(factory);
+        method.setDescriptor("(I)I");
+        assertCounts(factory);
+        method.setAccess(ACC_PUBLIC | ACC_STATIC);
+        assertCounts(factory);
+        factory.remove(method);
+        assertCounts(factory);
+    }
+}
@@ -0,0 +1,99 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassFeatureIndex;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+
+public class ClassFeatureIndexTest {
+    private static final File TEST_JAR = new File(ClassFeatureIndexTest.class.getResource("SampleArchive.jar").getFile());
+
+    private static Map<String, ClassFactory> classes;
+    private static ClassFeatureIndex index;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        classes = ja.classes();
+        index = new ClassFeatureIndex(classes);
+    }
+
+    private static void assertFound(ClassFeatureIndex.Criteria criteria, Predicate<ClassFactory> expected) {
+        List<ClassFactory> matching = new ArrayList<>();
+        for (ClassFactory factory : classes.values()) {
+            if (expected.test(factory)) {
+                matching.add(factory);
+            }
+        }
+        Assert.assertEquals(matching, index.find(criteria));
+    }
+
+    @Test
+    public void testCounts() {
+        Assert.assertEquals(classes.size(), index.size());
+        assertFound(new ClassFeatureIndex.Criteria(), factory -> true);
+        assertFound(new ClassFeatureIndex.Criteria().fieldCount("I", 2), factory -> factory.fieldCount("I") == 2);
+        assertFound(new ClassFeatureIndex.Criteria().fieldCount(null, count -> count >= 3),
+                factory -> factory.fieldCount() >= 3);
+        assertFound(new ClassFeatureIndex.Criteria().fieldCount("Ljava/lang/String;", 0),
+                factory -> factory.fieldCount("Ljava/lang/String;") == 0);
+        assertFound(new ClassFeatureIndex.Criteria().fieldTypeCount(count -> count > 1),
+                factory -> factory.fieldTypeCount() > 1);
+        assertFound(new ClassFeatureIndex.Criteria().methodCount("()V", count -> count > 0),
+                factory -> factory.methodCount("()V") > 0);
+        assertFound(new ClassFeatureIndex.Criteria().methodCount(null, 1).fieldCount(null, 0),
+                factory -> factory.methodCount() == 1 && factory.fieldCount() == 0);
+    }
+
+    @Test
+    public void testStructure() {
+        boolean found = false;
+        for (ClassFactory factory : classes.values()) {
+            String superName = factory.superName();
+            assertFound(new ClassFeatureIndex.Criteria().superName(superName),
+                    other -> superName.equals(other.superName()));
+            for (String iface : factory.interfaces()) {
+                assertFound(new ClassFeatureIndex.Criteria().interfaces(iface),
+                        other -> other.interfaces().contains(iface));
+                found = true;
+            }
+            for (String desc : factory.constructors()) {
+                assertFound(new ClassFeatureIndex.Criteria().constructor(desc).superName(superName),
+                        other -> other.constructors().contains(desc) && superName.equals(other.superName()));
+            }
+        }
+        assertFound(new ClassFeatureIndex.Criteria().access(ACC_ABSTRACT).noAccess(ACC_INTERFACE),
+                factory -> (factory.access() & ACC_ABSTRACT) != 0 && (factory.access() & ACC_INTERFACE) == 0);
+        assertFound(new ClassFeatureIndex.Criteria().superName("does/not/Exist"), factory -> false);
+        Assert.assertTrue(found);
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(new ClassFeatureIndex.Criteria().empty());
+        Assert.assertFalse(new ClassFeatureIndex.Criteria().superName("java/lang/Object").empty());
+        Assert.assertFalse(new ClassFeatureIndex.Criteria().access(ACC_ABSTRACT).empty());
+    }
+
+    @Test
+    public void testFirst() {
+        ClassFeatureIndex.Criteria criteria = new ClassFeatureIndex.Criteria().methodCount(null, count -> count > 1);
+        List<ClassFactory> candidates = index.find(criteria);
+        Assert.assertFalse(candidates.isEmpty());
+        ClassFactory last = candidates.get(candidates.size() - 1);
+        Assert.assertSame(candidates.get(0), index.first(criteria, factory -> true));
+        Assert.assertSame(last, index.first(criteria, factory -> factory == last));
+        Assert.assertNull(index.first(criteria, factory -> false));
+    }
+}
@@ -0,0 +1,91 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassHierarchy;
+import io.disassemble.asm.CustomClassWriter;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.File;
+import java.io.IOException;
+
+public class ClassHierarchyTest {
+    private static final File TEST_JAR = new File(ClassHierarchyTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testArchiveClasses() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassHierarchy hierarchy = new ClassHierarchy(ja);
+        ClassFactory child = null, sibling = null;
+        for (ClassFactory factory : ja.classes().values()) {
+            ClassFactory parent = ja.classes().get(factory.superName());
+            if (parent != null && ja.classes().containsKey(parent.superName())) {
+                for (ClassFactory other : ja.classes().values()) {
+                    if (other != factory && other.superName().equals(factory.superName())) {
+                        child = factory;
+                        sibling = other;
+                    }
+                }
+            }
+        }
+        Assert.assertNotNull("No classes share a super class within the archive", child);
+        String parent = child.superName();
+        String grandparent = ja.classes().get(parent).superName();
+        Assert.assertEquals(parent, hierarchy.commonSuperClass(child.name(), sibling.name()));
+        Assert.assertEquals(parent, hierarchy.commonSuperClass(sibling.name(), child.name()));
+        Assert.assertEquals(grandparent, hierarchy.commonSuperClass(child.name(), grandparent));
+        Assert.assertTrue(hierarchy.isAssignableFrom(grandparent, child.name()));
+        Assert.assertFalse(hierarchy.isAssignableFrom(child.name(), sibling.name()));
+    }
+
+    @Test
+    public void testSystemClasses() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassHierarchy hierarchy = new ClassHierarchy(ja);
+        Assert.assertEquals("java/lang/Number", hierarchy.commonSuperClass("java/lang/Integer", "java/lang/Long"));
+        Assert.assertEquals("java/util/AbstractList",
+                hierarchy.commonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+        Assert.assertTrue(hierarchy.isInterface("java/util/List"));
+        Assert.assertTrue(hierarchy.isAssignableFrom("java/util/Collection", "java/util/ArrayList"));
+        Assert.assertEquals("java/lang/Object", hierarchy.commonSuperClass("java/util/List", "java/lang/String"));
+        ClassHierarchy archiveOnly = new ClassHierarchy(ja, false);
+        Assert.assertFalse(archiveOnly.contains("java/lang/Integer"));
+        Assert.assertEquals("java/lang/Object", archiveOnly.commonSuperClass("java/lang/Integer", "java/lang/Long"));
+    }
+
+    @Test
+    public void testWriterHierarchy() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassFactory child = null;
+        for (ClassFactory factory : ja.classes().values()) {
+            if (ja.classes().containsKey(factory.superName())) {
+                child = factory;
+                break;
+            }
+        }
+        Assert.assertNotNull(child);
+        String parent = child.superName();
+        Assert.assertEquals(parent, new CustomClassWriter(ja, 0).getCommonSuperClass(child.name(), parent));
+        child.setSuperName("java/lang/Object");
+        Assert.assertEquals("java/lang/Object", new CustomClassWriter(ja, 0).getCommonSuperClass(child.name(), parent));
+    }
+
+    @Test
+    public void testComputeFrames() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        File output = folder.newFile("frames.jar");
+        ja.write(output, ClassWriter.COMPUTE_FRAMES);
+        JarArchive written = new JarArchive(output);
+        written.build();
+        Assert.assertEquals(ja.classes().keySet(), written.classes().keySet());
+    }
+}
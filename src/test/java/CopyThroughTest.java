@@ -0,0 +1,129 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+public class CopyThroughTest {
+    private static final File TEST_JAR = new File(CopyThroughTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void test() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR).copyThrough();
+        ja.build();
+        ClassFactory modified = ja.classes().values().stream()
+                .filter(factory -> factory.methods.length > 1)
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        ClassMethod renamed = modified.methods[0];
+        String originalName = renamed.name();
+        renamed.setName(originalName + "Renamed");
+        Assert.assertTrue(renamed.dirty());
+        Assert.assertFalse(modified.structureDirty());
+        Assert.assertTrue(modified.dirty());
+        File output = File.createTempFile("copythrough", ".jar");
+        try {
+            ja.write(output, ClassWriter.COMPUTE_MAXS);
+            try (JarFile jar = new JarFile(output)) {
+                for (ClassFactory factory : ja.classes().values()) {
+                    byte[] written = read(jar, factory.name());
+                    if (factory == modified) {
+                        ClassNode node = new ClassNode();
+                        new ClassReader(written).accept(node, ClassReader.SKIP_FRAMES);
+                        Assert.assertEquals(factory.methods.length, node.methods.size());
+                        Assert.assertEquals(originalName + "Renamed", ((MethodNode) node.methods.get(0)).name);
+                    } else {
+                        Assert.assertFalse(factory.name(), factory.dirty());
+                        Assert.assertArrayEquals(factory.name(), factory.bytes(), written);
+                    }
+                }
+            }
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test
+    public void sameSizeEdit() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR).copyThrough();
+        ja.build();
+        LdcInsnNode ldc = null;
+        ClassMethod edited = null;
+        search:
+        for (ClassFactory factory : ja.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                for (AbstractInsnNode ain : method.instructions().toArray()) {
+                    if (ain instanceof LdcInsnNode && ((LdcInsnNode) ain).cst instanceof String) {
+                        ldc = (LdcInsnNode) ain;
+                        edited = method;
+                        break search;
+                    }
+                }
+            }
+        }
+        Assert.assertNotNull(ldc);
+        String original = (String) ldc.cst;
+        ldc.cst = original + "Edited";
+        // Edits that keep the size of the instruction list are not noticed without markDirty.
+        Assert.assertFalse(edited.dirty());
+        Assert.assertFalse(writtenConstants(ja, edited).contains(original + "Edited"));
+        edited.markDirty();
+        Assert.assertTrue(edited.dirty());
+        Assert.assertTrue(writtenConstants(ja, edited).contains(original + "Edited"));
+    }
+
+    private static List<Object> writtenConstants(JarArchive ja, ClassMethod method) throws IOException {
+        File output = File.createTempFile("copythrough", ".jar");
+        try {
+            ja.write(output, ClassWriter.COMPUTE_MAXS);
+            try (JarFile jar = new JarFile(output)) {
+                ClassNode node = new ClassNode();
+                new ClassReader(read(jar, method.owner.name())).accept(node, ClassReader.SKIP_FRAMES);
+                for (Object mn : node.methods) {
+                    MethodNode written = (MethodNode) mn;
+                    if (written.name.equals(method.name()) && written.desc.equals(method.desc())) {
+                        List<Object> constants = new ArrayList<>();
+                        for (AbstractInsnNode ain : written.instructions.toArray()) {
+                            if (ain instanceof LdcInsnNode) {
+                                constants.add(((LdcInsnNode) ain).cst);
+                            }
+                        }
+                        return constants;
+                    }
+                }
+                throw new AssertionError(method.key() + " was not written");
+            }
+        } finally {
+            output.delete();
+        }
+    }
+
+    private static byte[] read(JarFile jar, String className) throws IOException {
+        JarEntry entry = jar.getJarEntry(className + ".class");
+        Assert.assertNotNull(className, entry);
+        try (InputStream in = jar.getInputStream(entry)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.ClassMethodVisitor;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.tree.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DirectDispatchTest {
+    private static final File TEST_JAR = new File(DirectDispatchTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void testMatchesReplay() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        int methods = 0;
+        for (ClassFactory factory : ja.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                Recorder direct = new Recorder();
+                method.accept(direct);
+                Recorder replayed = new Recorder();
+                replayed.replay(method);
+                Assert.assertEquals(method.key(), replayed.events, direct.events);
+                methods++;
+            }
+        }
+        Assert.assertTrue(methods > 0);
+    }
+
+    @Test
+    public void testLock() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        for (ClassFactory factory : ja.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                if (method.instructions().size() > 2) {
+                    Recorder recorder = new Recorder() {
+                        @Override
+                        protected AbstractInsnNode current() {
+                            lock();
+                            return super.current();
+                        }
+                    };
+                    method.accept(recorder);
+                    Assert.assertEquals(1, recorder.instructions);
+                    return;
+                }
+            }
+        }
+        Assert.fail("No method has instructions");
+    }
+
+    private static class Recorder extends ClassMethodVisitor {
+
+        private final List<Object> events = new ArrayList<>();
+        int instructions;
+
+        private void replay(ClassMethod method) {
+            this.method = method;
+            method.method.accept(this);
+        }
+
+        @Override
+        protected AbstractInsnNode current() {
+            AbstractInsnNode insn = super.current();
+            events.add(insn);
+            instructions++;
+            return insn;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            events.add("code");
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            events.add("try " + type);
+        }
+
+        @Override
+        public void visitLocalVariable(String name, String desc, String signature, Label start, Label end, int index) {
+            events.add("local " + name + desc + index);
+        }
+
+        @Override
+        public void visitMaxs(int maxStack, int maxLocals) {
+            events.add("maxs " + maxStack + " " + maxLocals);
+        }
+
+        @Override
+        public void visitEnd() {
+            events.add("end");
+        }
+
+        @Override
+        public void visitMethodInsn(MethodInsnNode min) {
+            events.add(min.owner + '.' + min.name + min.desc);
+        }
+
+        @Override
+        public void visitJumpInsn(JumpInsnNode jin) {
+            events.add(jin.label);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.visitor.expr.ExprTree;
+import io.disassemble.asm.visitor.expr.ExprTreeBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class ExprTreeBuilderTest {
+    private static final File TEST_JAR = new File(ExprTreeBuilderTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void testBuildAll() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        List<ClassMethod> sequentialFailures = new ArrayList<>();
+        List<ClassMethod> parallelFailures = new ArrayList<>();
+        Map<String, Deque<ExprTree>> sequential = ExprTreeBuilder.buildAll(ja.classes(), 1,
+                (method, e) -> sequentialFailures.add(method));
+        Map<String, Deque<ExprTree>> parallel = ExprTreeBuilder.buildAll(ja.classes(), 8,
+                (method, e) -> parallelFailures.add(method));
+        List<String> names = new ArrayList<>(ja.classes().keySet());
+        Collections.sort(names);
+        Assert.assertEquals(names, new ArrayList<>(sequential.keySet()));
+        Assert.assertEquals(names, new ArrayList<>(parallel.keySet()));
+        Assert.assertEquals(sequentialFailures, parallelFailures);
+        for (String name : names) {
+            ClassFactory factory = ja.classes().get(name);
+            List<ClassMethod> expected = new ArrayList<>(Arrays.asList(factory.methods));
+            expected.removeAll(parallelFailures);
+            List<ClassMethod> actual = new ArrayList<>();
+            parallel.get(name).forEach(tree -> actual.add(tree.method()));
+            Assert.assertEquals(name, expected, actual);
+            Assert.assertEquals(name, sequential.get(name).size(), parallel.get(name).size());
+        }
+        if (!parallelFailures.isEmpty()) {
+            try {
+                ExprTreeBuilder.buildAll(ja.classes());
+                Assert.fail("Expected the failed methods to be reported");
+            } catch (IllegalStateException e) {
+                Assert.assertEquals(parallelFailures.size() - 1, e.getSuppressed().length);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.program.BytecodeParser;
+import io.disassemble.asm.program.ParserInfo;
+import io.disassemble.asm.util.Query;
+import io.disassemble.asm.visitor.flow.ControlFlowGraph;
+import io.disassemble.asm.visitor.flow.FlowQuery;
+import io.disassemble.asm.visitor.flow.FlowQueryEngine;
+import io.disassemble.asm.visitor.flow.FlowQueryResult;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.objectweb.asm.Opcodes.*;
+
+public class FlowQueryEngineTest {
+    private static final File TEST_JAR = new File(FlowQueryEngineTest.class.getResource("SampleArchive.jar").getFile());
+
+    private static List<FlowQuery> queries() {
+        return Arrays.asList(
+                new FlowQuery().stmtLoad().name("a").stmtGetField(null, null).name("b").stmtIf().name("c").continuous(),
+                new FlowQuery().stmtIf().name("a").branchTrue().stmtReturn().name("b").continuous(),
+                new FlowQuery().stmtLoad().name("a").stmtIncrement().loops().name("b").continuous(),
+                new FlowQuery().query(insn -> insn.insn.getOpcode() == NEW).name("a").opcode(DUP).name("b")
+                        .continuous(),
+                new FlowQuery().stmtConstant().name("a").stmtType().name("b").distAll(20).continuous(),
+                new FlowQuery().stmtInvokeStatic(null, null).name("a").stmtReturn().name("b")
+                        .restrictToMethod(method -> method.name().startsWith("get")).continuous(),
+                new FlowQuery().stmtPush(value -> value > 100).name("a").stmtAdd().name("b"),
+                new FlowQuery().stmtGetStatic(null, null).name("a")
+        );
+    }
+
+    @Test
+    public void testMatchesFind() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        List<FlowQuery> expectedQueries = queries();
+        List<List<Map<String, AbstractInsnNode>>> expected = new ArrayList<>();
+        for (FlowQuery query : expectedQueries) {
+            List<Map<String, AbstractInsnNode>> found = new ArrayList<>();
+            for (ClassFactory factory : ja.classes().values()) {
+                for (ClassMethod method : factory.methods) {
+                    ControlFlowGraph cfg = method.cfg().get();
+                    if (!query.locked()) {
+                        query.find(cfg).ifPresent(results -> results.forEach(result ->
+                                found.add(result.namedInstructions())));
+                    }
+                }
+            }
+            expected.add(found);
+        }
+        FlowQueryEngine engine = new FlowQueryEngine();
+        List<FlowQuery> actualQueries = queries();
+        List<List<Map<String, AbstractInsnNode>>> actual = new ArrayList<>();
+        for (FlowQuery query : actualQueries) {
+            List<Map<String, AbstractInsnNode>> found = new ArrayList<>();
+            engine.add(query, results -> results.forEach(result -> found.add(result.namedInstructions())));
+            actual.add(found);
+        }
+        Assert.assertEquals(expectedQueries.size(), engine.size());
+        ja.classes().values().forEach(engine::find);
+        Assert.assertEquals(expected, actual);
+        for (int i = 0; i < expectedQueries.size(); i++) {
+            Assert.assertEquals(expectedQueries.get(i).locked(), actualQueries.get(i).locked());
+        }
+        Assert.assertTrue(actual.stream().allMatch(found -> !found.isEmpty()));
+    }
+
+    @Test
+    public void testModifiedQuery() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        FlowQuery query = new FlowQuery().stmtLoad().name("a").continuous();
+        List<FlowQueryResult> found = new ArrayList<>();
+        FlowQueryEngine engine = new FlowQueryEngine().add(query, found::addAll);
+        ClassMethod method = ja.classes().values().stream()
+                .flatMap(factory -> Arrays.stream(factory.methods))
+                .filter(cm -> cm.instructions().size() > 20)
+                .findFirst().get();
+        engine.find(method.cfg().get());
+        int loads = found.size();
+        found.clear();
+        query.stmtReturn().dist(1).name("b");
+        engine.find(method.cfg().get());
+        Assert.assertTrue(loads > found.size());
+        found.forEach(result -> Assert.assertTrue(result.findInstruction("b").isPresent()));
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        Map<String, ClassFactory> classes = new LinkedHashMap<>(ja.classes());
+        FieldParser sequential = new FieldParser();
+        sequential.parse(classes);
+        FieldParser parallel = new FieldParser();
+        parallel.parse(classes, 1);
+        Assert.assertFalse(sequential.foundValues.isEmpty());
+        Assert.assertEquals(sequential.foundValues.keySet(), parallel.foundValues.keySet());
+        for (String name : sequential.foundValues.keySet()) {
+            Assert.assertEquals(new HashSet<>(sequential.foundValues.get(name)),
+                    new HashSet<>(parallel.foundValues.get(name)));
+        }
+    }
+
+    @ParserInfo(name = "Field", hooks = {"get", "put"})
+    private static class FieldParser extends BytecodeParser {
+
+        @Override
+        public boolean accept(ClassFactory factory) {
+            return true;
+        }
+
+        @Override
+        public void populateQueries(List<Query> queries) {
+            queries.add(new FlowQuery().stmtLoad().stmtGetField(null, null).name("get").continuous());
+            queries.add(new FlowQuery().stmtLoad().stmtPutField(null, null).name("put").continuous());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.visitor.flow.*;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.objectweb.asm.Opcodes.*;
+
+public class FlowQueryPlanTest {
+    private static final File TEST_JAR = new File(FlowQueryPlanTest.class.getResource("SampleArchive.jar").getFile());
+
+    private static List<FlowQuery> queries() {
+        return Arrays.asList(
+                new FlowQuery().stmtLoad().name("0").stmtGetField(null, null).name("1").stmtIf().name("2")
+                        .stmtLoad().name("3"),
+                new FlowQuery().stmtLoad(var -> var == 0).name("0").stmtInvokeVirtual(null, null).dist(3).name("1"),
+                new FlowQuery().stmtIf().name("0").branchTrue().stmtReturn().name("1"),
+                new FlowQuery().stmtIf().name("0").branchFalse().stmtLoad().name("1").stmtPutField(null, null)
+                        .dist(5).name("2"),
+                new FlowQuery().stmtIf().name("0").branch().opcode(ALOAD, ILOAD).name("1").stmtAdd().name("2"),
+                new FlowQuery().stmtLoad().name("0").stmtIncrement().loops().name("1"),
+                new FlowQuery().stmtLoad().name("0").stmtStore().doesNotLoop().name("1"),
+                new FlowQuery().query(insn -> insn.insn.getOpcode() == NEW).name("0").opcode(DUP).name("1")
+                        .stmtInvokeSpecial(null, null).name("2"),
+                new FlowQuery().stmtConstant().name("0").stmtType().name("1").distAll(20)
+        );
+    }
+
+    @Test
+    public void testMatchesReference() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        int results = 0;
+        for (FlowQuery query : queries()) {
+            for (ClassFactory factory : ja.classes().values()) {
+                for (ClassMethod method : factory.methods) {
+                    List<List<AbstractInsnNode>> expected = reference(ControlFlowGraph.create(method), query);
+                    List<List<AbstractInsnNode>> actual = results(ControlFlowGraph.create(method), query);
+                    Assert.assertEquals(method.key(), expected, actual);
+                    results += actual.size();
+                }
+            }
+        }
+        Assert.assertTrue(results > 0);
+    }
+
+    @Test
+    public void testConcurrentQueriesOnSharedGraphs() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        List<ClassMethod> methods = new ArrayList<>();
+        ja.classes().values().forEach(factory -> Collections.addAll(methods, factory.methods));
+        List<FlowQuery> queries = queries();
+        Map<String, List<List<AbstractInsnNode>>> expected = new HashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            for (ClassMethod method : methods) {
+                expected.put(i + method.key(), results(ControlFlowGraph.create(method), queries.get(i)));
+            }
+        }
+        //Every query runs over every shared graph from several threads at once.
+        Map<String, List<List<AbstractInsnNode>>> actual = new ConcurrentHashMap<>();
+        IntStream.range(0, queries.size() * 4).parallel().forEach(run -> {
+            int i = run % queries.size();
+            for (ClassMethod method : methods) {
+                List<List<AbstractInsnNode>> results = results(method.cfg().get(), queries.get(i));
+                List<List<AbstractInsnNode>> previous = actual.putIfAbsent(i + method.key(), results);
+                if (previous != null) {
+                    Assert.assertEquals(method.key(), previous, results);
+                }
+            }
+        });
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testFirstMatchWins() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        List<ClassMethod> methods = new ArrayList<>();
+        ja.classes().values().forEach(factory -> Collections.addAll(methods, factory.methods));
+        FlowQuery query = new FlowQuery().stmtLoad().name("0").stmtReturn().dist(1).name("1");
+        AtomicInteger found = new AtomicInteger();
+        methods.parallelStream().forEach(method -> method.cfg().flatMap(query::find).ifPresent(results -> {
+            if (!results.isEmpty()) {
+                found.incrementAndGet();
+            }
+        }));
+        Assert.assertTrue(query.locked());
+        Assert.assertEquals(1, found.get());
+    }
+
+    @Test
+    public void testRecompilesWhenModified() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        FlowQuery query = new FlowQuery().stmtLoad().name("0");
+        int loads = 0, loadReturns = 0;
+        for (ClassFactory factory : ja.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                loads += ControlFlowGraph.create(method).execution().query(query).size();
+            }
+        }
+        query.stmtReturn().dist(1).name("1");
+        for (ClassFactory factory : ja.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                for (FlowQueryResult result : ControlFlowGraph.create(method).execution().query(query)) {
+                    List<AbstractInsnNode> insns = instructions(result, query);
+                    Assert.assertEquals(2, insns.size());
+                    Assert.assertTrue(insns.get(1).getOpcode() >= IRETURN && insns.get(1).getOpcode() <= RETURN);
+                    loadReturns++;
+                }
+            }
+        }
+        Assert.assertTrue(loads > loadReturns);
+        Assert.assertTrue(loadReturns > 0);
+    }
+
+    private static List<List<AbstractInsnNode>> results(ControlFlowGraph cfg, FlowQuery query) {
+        List<List<AbstractInsnNode>> results = new ArrayList<>();
+        for (FlowQueryResult result : cfg.execution().query(query)) {
+            results.add(instructions(result, query));
+        }
+        return results;
+    }
+
+    private static List<AbstractInsnNode> instructions(FlowQueryResult result, FlowQuery query) {
+        List<AbstractInsnNode> insns = new ArrayList<>();
+        for (int i = 0; i < query.predicates().size(); i++) {
+            insns.add(result.findInstruction(Integer.toString(i)).orElse(null));
+        }
+        return insns;
+    }
+
+    /**
+     * The interpreter FlowQuery was run with before it was compiled, with every candidate keeping the path it was
+     * found through.
+     */
+    private static List<List<AbstractInsnNode>> reference(ControlFlowGraph cfg, FlowQuery query) {
+        List<Predicate<BasicInstruction>> predicates = query.predicates();
+        List<List<BasicInstruction>> paths = new ArrayList<>();
+        for (int i = 0; i < predicates.size(); i++) {
+            Predicate<BasicInstruction> predicate = predicates.get(i);
+            List<List<BasicInstruction>> matching = new ArrayList<>();
+            if (i == 0) {
+                for (BasicInstruction insn : cfg.execution().findAll(predicate)) {
+                    matching.add(Collections.singletonList(insn));
+                }
+            } else if (query.branchesAt(i - 1)) {
+                FlowQuery.BranchType branchType = query.branchTypeAt(i - 1);
+                for (List<BasicInstruction> path : paths) {
+                    BasicInstruction insn = path.get(path.size() - 1);
+                    List<BasicBlock> targets = new ArrayList<>();
+                    if (branchType == FlowQuery.BranchType.TRUE) {
+                        insn.block.trueBranch().ifPresent(targets::add);
+                    } else if (branchType == FlowQuery.BranchType.FALSE) {
+                        insn.block.falseBranch().ifPresent(targets::add);
+                    } else {
+                        targets.addAll(insn.block.successors());
+                    }
+                    for (BasicBlock block : targets) {
+                        for (BasicInstruction bInsn : block.instructions()) {
+                            if (predicate.test(bInsn)) {
+                                matching.add(append(path, bInsn));
+                            }
+                        }
+                    }
+                }
+            } else {
+                for (List<BasicInstruction> path : paths) {
+                    BasicInstruction insn = path.get(path.size() - 1);
+                    BasicInstruction result = findNext(insn, predicate, query.distAt(i));
+                    if (result == null) {
+                        continue;
+                    }
+                    if (query.loopsAt(i) || query.doesNotLoopAt(i)) {
+                        LabelNode label = parentLabel(insn);
+                        if (label == null) {
+                            continue;
+                        }
+                        boolean valid = false;
+                        for (BasicInstruction bInsn : insn.block.instructions()) {
+                            if (bInsn.insn instanceof JumpInsnNode && ((JumpInsnNode) bInsn.insn).label == label) {
+                                valid = true;
+                            }
+                        }
+                        if (!valid && !query.doesNotLoopAt(i)) {
+                            continue;
+                        }
+                    }
+                    matching.add(append(path, result));
+                }
+            }
+            if (matching.isEmpty()) {
+                return Collections.emptyList();
+            }
+            paths = matching;
+        }
+        List<List<AbstractInsnNode>> results = new ArrayList<>();
+        for (List<BasicInstruction> path : paths) {
+            List<AbstractInsnNode> insns = new ArrayList<>();
+            path.forEach(insn -> insns.add(insn.insn));
+            results.add(insns);
+        }
+        return results;
+    }
+
+    private static List<BasicInstruction> append(List<BasicInstruction> path, BasicInstruction insn) {
+        List<BasicInstruction> appended = new ArrayList<>(path);
+        appended.add(insn);
+        return appended;
+    }
+
+    private static BasicInstruction findNext(BasicInstruction start, Predicate<BasicInstruction> predicate,
+                                             int maxDist) {
+        BasicInstruction insn = start;
+        int jump = 0;
+        while ((insn = insn.next()) != null && jump++ < maxDist) {
+            if (predicate.test(insn)) {
+                return insn;
+            }
+        }
+        return null;
+    }
+
+    private static LabelNode parentLabel(BasicInstruction insn) {
+        Set<BasicBlock> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BasicInstruction parent = insn.parent(); parent != null && visited.add(parent.block);
+             parent = parent.parent()) {
+            BasicInstruction label = parent;
+            for (int jump = 0; parent.block.indexOf(label) > 0 && (label = label.previous()) != null && jump < 5;
+                 jump++) {
+                if (label.insn instanceof LabelNode) {
+                    return (LabelNode) label.insn;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,168 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.program.BytecodeParser;
+import io.disassemble.asm.program.Identifier;
+import io.disassemble.asm.program.IdentifierInfo;
+import io.disassemble.asm.program.ParserInfo;
+import io.disassemble.asm.util.Query;
+import io.disassemble.asm.visitor.flow.FlowQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+public class IdentifierTest {
+    private static final File TEST_JAR = new File(IdentifierTest.class.getResource("SampleArchive.jar").getFile());
+
+    private static Map<String, ClassFactory> classes() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        return ja.classes();
+    }
+
+    @Test
+    public void testDependencies() throws IOException {
+        Map<String, ClassFactory> classes = classes();
+        Map<String, List<String>> sequential = null;
+        for (int parallelism : new int[]{1, 4}) {
+            TestIdentifier identifier = new TestIdentifier(classes, parsers -> {
+                FieldParser field = new FieldParser();
+                if (parallelism == 1) {
+                    //Parsers are run in the order they were added, so the dependency must be added first.
+                    parsers.add(field);
+                    parsers.add(new OwnerParser(field));
+                } else {
+                    parsers.add(new OwnerParser(field));
+                    parsers.add(field);
+                }
+                parsers.add(new PutParser());
+            });
+            identifier.setParallelism(parallelism);
+            identifier.run();
+            List<BytecodeParser> parsers = identifier.parsers();
+            OwnerParser owner = (OwnerParser) parsers.get(parallelism == 1 ? 1 : 0);
+            Assert.assertNotNull(owner.field.factory());
+            Assert.assertSame(owner.field.factory(), owner.factory());
+            Assert.assertEquals(identifier.expectedValueCount(), identifier.foundValueCount());
+            Map<String, List<String>> found = new TreeMap<>();
+            for (BytecodeParser parser : parsers) {
+                parser.foundValues.forEach((name, insns) -> {
+                    List<String> owners = new ArrayList<>();
+                    insns.forEach(insn -> owners.add(insn.toString()));
+                    Collections.sort(owners); //classes are queried in parallel, so the order isn't fixed
+                    found.put(parser.info().name() + "#" + name, owners);
+                });
+            }
+            if (sequential == null) {
+                sequential = found;
+            } else {
+                Assert.assertEquals(sequential, found);
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownDependency() throws IOException {
+        TestIdentifier identifier = new TestIdentifier(classes(), parsers -> parsers.add(new OwnerParser(null)));
+        try {
+            identifier.run();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("Field"));
+        }
+    }
+
+    @Test
+    public void testCycle() throws IOException {
+        TestIdentifier identifier = new TestIdentifier(classes(), parsers -> {
+            parsers.add(new CycleA());
+            parsers.add(new CycleB());
+        });
+        try {
+            identifier.run();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("A -> B -> A"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelism() throws IOException {
+        new TestIdentifier(classes(), parsers -> {}).setParallelism(0);
+    }
+
+    @IdentifierInfo(author = "test", name = "Test")
+    private static class TestIdentifier extends Identifier {
+
+        private final Consumer<List<BytecodeParser>> populator;
+
+        private TestIdentifier(Map<String, ClassFactory> classes, Consumer<List<BytecodeParser>> populator) {
+            super(classes);
+            this.populator = populator;
+        }
+
+        @Override
+        public void populateParsers(List<BytecodeParser> parsers) {
+            populator.accept(parsers);
+        }
+    }
+
+    @ParserInfo(name = "Field", hooks = {"get"})
+    private static class FieldParser extends BytecodeParser {
+
+        @Override
+        public boolean accept(ClassFactory factory) {
+            return factory.methods.length > 2;
+        }
+
+        @Override
+        public void populateQueries(List<Query> queries) {
+            queries.add(new FlowQuery().stmtLoad().stmtGetField(null, null).name("get").continuous());
+        }
+    }
+
+    @ParserInfo(name = "Owner", hooks = {"invoke"}, dependsOn = {"Field#get"})
+    private static class OwnerParser extends BytecodeParser {
+
+        private final FieldParser field;
+
+        private OwnerParser(FieldParser field) {
+            this.field = field;
+        }
+
+        @Override
+        public boolean accept(ClassFactory factory) {
+            return factory == field.factory();
+        }
+
+        @Override
+        public void populateQueries(List<Query> queries) {
+            queries.add(new FlowQuery().stmtInvokeVirtual(null, null).name("invoke").continuous());
+        }
+    }
+
+    @ParserInfo(name = "Put", hooks = {"put"})
+    private static class PutParser extends BytecodeParser {
+
+        @Override
+        public boolean accept(ClassFactory factory) {
+            return true;
+        }
+
+        @Override
+        public void populateQueries(List<Query> queries) {
+            queries.add(new FlowQuery().stmtLoad().stmtPutField(null, null).name("put").continuous());
+        }
+    }
+
+    @ParserInfo(name = "A", hooks = {}, dependsOn = {"B"})
+    private static class CycleA extends PutParser {
+    }
+
+    @ParserInfo(name = "B", hooks = {}, dependsOn = {"A"})
+    private static class CycleB extends PutParser {
+    }
+}
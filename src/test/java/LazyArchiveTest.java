@@ -0,0 +1,109 @@
+import io.disassemble.asm.Archive;
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassHandle;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class LazyArchiveTest {
+    private static final File TEST_JAR = new File(LazyArchiveTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void test() throws IOException {
+        JarArchive eager = new JarArchive(TEST_JAR);
+        eager.build();
+        JarArchive lazy = new JarArchive(TEST_JAR).lazy();
+        lazy.build();
+        Assert.assertEquals(eager.classes().keySet(), lazy.classes().keySet());
+        for (ClassHandle handle : lazy.handles().values()) {
+            ClassFactory expected = eager.classes().get(handle.name());
+            Assert.assertEquals(expected.superName(), handle.superName());
+            Assert.assertEquals(expected.interfaces(), handle.interfaces());
+            Assert.assertEquals(expected.access(), handle.access());
+            Assert.assertFalse(handle.inflated());
+        }
+        String name = lazy.classes().keySet().iterator().next();
+        ClassFactory factory = lazy.classes().get(name);
+        Assert.assertTrue(lazy.handles().get(name).inflated());
+        Assert.assertSame(factory, lazy.classes().get(name));
+        Assert.assertEquals(eager.classes().get(name).methods.length, factory.methods.length);
+        Assert.assertEquals(1, lazy.release());
+        Assert.assertFalse(lazy.handles().get(name).inflated());
+        factory = lazy.classes().get(name);
+        factory.setAccess(factory.access() ^ Opcodes.ACC_FINAL);
+        Assert.assertEquals(0, lazy.release());
+        Assert.assertTrue(lazy.handles().get(name).inflated());
+    }
+
+    @Test
+    public void defaultHandles() throws IOException {
+        JarArchive source = new JarArchive(TEST_JAR);
+        source.build();
+        ConcurrentMap<String, ClassFactory> classes = new ConcurrentHashMap<>(source.classes());
+        // An Archive that only keeps ClassFactories, relying on the default handles and symbols.
+        Archive archive = new Archive() {
+            @Override
+            public ConcurrentMap<String, ClassFactory> classes() {
+                return classes;
+            }
+
+            @Override
+            public ConcurrentMap<String, byte[]> resources() {
+                return new ConcurrentHashMap<>();
+            }
+
+            @Override
+            public long build() {
+                built = true;
+                return 0;
+            }
+
+            @Override
+            public void write() {
+            }
+        };
+        archive.build();
+        Assert.assertNotNull(archive.symbols());
+        Assert.assertEquals(classes.keySet(), archive.handles().keySet());
+        String name = classes.keySet().iterator().next();
+        ClassHandle handle = archive.handles().get(name);
+        Assert.assertSame(handle, archive.handles().get(name));
+        Assert.assertSame(classes.get(name), handle.factory());
+        Assert.assertTrue(archive.handles().remove(name, handle));
+        Assert.assertFalse(classes.containsKey(name));
+        archive.handles().put(name, handle);
+        Assert.assertSame(handle.factory(), classes.get(name));
+    }
+
+    @Test
+    public void removeThroughViews() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR).lazy();
+        ja.build();
+        Iterator<ClassFactory> values = ja.classes().values().iterator();
+        ClassMethod first = values.next().methods[0];
+        ClassMethod second = values.next().methods[0];
+        Assert.assertSame(first, ja.members().method(first.key()));
+        Assert.assertSame(second, ja.members().method(second.key()));
+        Assert.assertTrue(ja.classes().keySet().remove(first.owner.name()));
+        Assert.assertNull(ja.members().method(first.key()));
+        Iterator<Map.Entry<String, ClassFactory>> entries = ja.classes().entrySet().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().getValue() == second.owner) {
+                entries.remove();
+            }
+        }
+        Assert.assertFalse(ja.classes().containsKey(second.owner.name()));
+        Assert.assertNull(ja.members().method(second.key()));
+        ja.classes().clear();
+        Assert.assertTrue(ja.handles().isEmpty());
+    }
+}
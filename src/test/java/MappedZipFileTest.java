@@ -0,0 +1,85 @@
+import io.disassemble.asm.util.MappedZipFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+public class MappedZipFileTest {
+    private static final File TEST_JAR = new File(MappedZipFileTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRead() throws IOException {
+        MappedZipFile zip = new MappedZipFile(TEST_JAR);
+        Assert.assertFalse(zip.entries().isEmpty());
+        for (MappedZipFile.Entry entry : zip.entries()) {
+            Assert.assertEquals(entry.name(), entry.size(), zip.read(entry).length);
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        byte[] bytes = Files.readAllBytes(TEST_JAR.toPath());
+        assertMalformed(Arrays.copyOf(bytes, bytes.length / 2));
+        int end = endHeader(bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int directory = buffer.getInt(end + 16);
+        //The data before the central directory is cut, while the directory itself is kept.
+        byte[] cut = new byte[bytes.length - directory / 2];
+        System.arraycopy(bytes, directory / 2, cut, 0, cut.length);
+        ByteBuffer.wrap(cut).order(ByteOrder.LITTLE_ENDIAN).putInt(cut.length - (bytes.length - end) + 16,
+                directory - directory / 2);
+        assertMalformed(cut);
+        byte[] offset = bytes.clone();
+        ByteBuffer.wrap(offset).order(ByteOrder.LITTLE_ENDIAN).putInt(end + 16, bytes.length);
+        assertMalformed(offset);
+        byte[] header = bytes.clone();
+        ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).putInt(directory + 42, bytes.length - 2);
+        assertMalformed(header);
+        byte[] name = bytes.clone();
+        int last = directory;
+        for (int next = directory; next < end; ) {
+            last = next;
+            next += 46 + (buffer.getShort(next + 28) & 0xFFFF) + (buffer.getShort(next + 30) & 0xFFFF) +
+                    (buffer.getShort(next + 32) & 0xFFFF);
+        }
+        ByteBuffer.wrap(name).order(ByteOrder.LITTLE_ENDIAN).putShort(last + 28, (short) 0xFFFF);
+        assertMalformed(name);
+        byte[] size = bytes.clone();
+        ByteBuffer.wrap(size).order(ByteOrder.LITTLE_ENDIAN).putInt(directory + 20, Integer.MAX_VALUE);
+        assertMalformed(size);
+    }
+
+    private void assertMalformed(byte[] bytes) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        try {
+            MappedZipFile zip = new MappedZipFile(file);
+            for (MappedZipFile.Entry entry : zip.entries()) {
+                zip.read(entry);
+            }
+            Assert.fail();
+        } catch (ZipException expected) {
+        }
+    }
+
+    private static int endHeader(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int offset = bytes.length - 22; offset >= 0; offset--) {
+            if (buffer.getInt(offset) == 0x06054b50) {
+                return offset;
+            }
+        }
+        throw new IllegalStateException("No end of central directory record");
+    }
+}
@@ -0,0 +1,94 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassField;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.MemberRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class MemberRegistryTest {
+    private static final File TEST_JAR = new File(MemberRegistryTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void testScopedToArchive() throws IOException {
+        JarArchive first = new JarArchive(TEST_JAR);
+        first.build();
+        JarArchive second = new JarArchive(TEST_JAR).lazy();
+        second.build();
+        for (ClassFactory factory : first.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                Assert.assertSame(method, first.members().method(method.key()));
+                ClassMethod other = second.members().method(method.owner.name(), method.name(), method.desc());
+                Assert.assertNotNull(other);
+                Assert.assertNotSame(method, other);
+                Assert.assertSame(second, other.owner.archive());
+            }
+            for (ClassField field : factory.fields) {
+                Assert.assertSame(field, first.members().field(field.owner.name(), field.name(), field.desc()));
+            }
+        }
+        Assert.assertNull(first.members().method("java/lang/Object", "toString", "()Ljava/lang/String;"));
+    }
+
+    @Test
+    public void testInherited() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        MemberRegistry members = ja.members();
+        int checked = 0;
+        for (ClassFactory factory : ja.classes().values()) {
+            ClassFactory parent = ja.classes().get(factory.superName());
+            if (parent == null) {
+                continue;
+            }
+            for (ClassMethod method : parent.methods) {
+                if (!method.name().startsWith("<") &&
+                        factory.findMethod(m -> m.name().equals(method.name()) && m.desc().equals(method.desc())) == null) {
+                    Assert.assertSame(method, members.method(factory.name(), method.name(), method.desc()));
+                    checked++;
+                }
+            }
+        }
+        Assert.assertTrue("No inherited methods were checked", checked > 0);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testStaticResolve() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassMethod method = ja.classes().values().iterator().next().methods[0];
+        method.setName("staticallyResolved");
+        Assert.assertSame(method, ClassMethod.resolve(method.key()));
+        ClassMethod.clearKeyCache();
+        Assert.assertSame(method, ClassMethod.resolve(method.key()));
+        Assert.assertNull(ClassMethod.resolve("missing/Type.missing()V"));
+    }
+
+    @Test
+    public void testRename() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassMethod method = ja.classes().values().iterator().next().methods[0];
+        String name = method.name();
+        Assert.assertSame(method, ja.members().method(method.key()));
+        method.setName("renamed");
+        Assert.assertSame(method, ja.members().method(method.key()));
+        Assert.assertNotSame(method, ja.members().method(method.owner.name(), name, method.desc()));
+        ClassField field = null;
+        for (ClassFactory factory : ja.classes().values()) {
+            if (factory.fields.length > 0) {
+                field = factory.fields[0];
+                break;
+            }
+        }
+        Assert.assertNotNull(field);
+        Assert.assertSame(field, ja.members().field(field.owner.name(), field.name(), null));
+        field.setName("renamedField");
+        Assert.assertSame(field, ja.members().field(field.owner.name(), "renamedField", null));
+        Assert.assertSame(field, ja.members().field(field.owner.name(), "renamedField", field.desc()));
+    }
+}
@@ -0,0 +1,75 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.MethodFeatures;
+import io.disassemble.asm.visitor.ComplexityVisitor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.objectweb.asm.Opcodes.*;
+
+public class MethodFeaturesTest {
+    private static final File TEST_JAR = new File(MethodFeaturesTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void testCounts() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        int loops = 0;
+        for (ClassFactory factory : ja.classes().values()) {
+            for (ClassMethod method : factory.methods) {
+                MethodFeatures features = method.features();
+                Assert.assertSame(features, method.features());
+                Assert.assertEquals(method.instructions().size(), features.size());
+                int[] opcodes = features.opcodes();
+                for (int opcode = -1; opcode < opcodes.length; opcode++) {
+                    int match = opcode;
+                    int expected = method.count(insn -> insn.getOpcode() == match);
+                    Assert.assertEquals(expected, features.count(opcode));
+                    if (opcode >= 0) {
+                        Assert.assertEquals(expected, opcodes[opcode]);
+                    }
+                }
+                Assert.assertEquals(method.count(insn -> insn instanceof JumpInsnNode), features.jumps());
+                Assert.assertEquals(method.count(insn -> insn.getType() == AbstractInsnNode.METHOD_INSN ||
+                        insn.getType() == AbstractInsnNode.INVOKE_DYNAMIC_INSN), features.invocations());
+                Assert.assertTrue(features.localsUsed() <= features.maxLocals());
+                ComplexityVisitor complexity = new ComplexityVisitor();
+                method.accept(complexity);
+                Assert.assertEquals(complexity.complexity(), features.complexity());
+                if (features.backEdges() > 0) {
+                    loops++;
+                }
+            }
+        }
+        Assert.assertTrue(loops > 0);
+    }
+
+    @Test
+    public void testModified() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassMethod method = ja.classes().values().stream()
+                .flatMap(factory -> Arrays.stream(factory.methods))
+                .filter(cm -> cm.instructions().size() > 0)
+                .findFirst().get();
+        MethodFeatures features = method.features();
+        int nops = features.count(NOP);
+        method.instructions().insert(new InsnNode(NOP));
+        Assert.assertNotSame(features, method.features());
+        Assert.assertEquals(nops + 1, method.count(NOP));
+        AbstractInsnNode first = method.instructions().getFirst();
+        method.instructions().set(first, new InsnNode(ATHROW));
+        int athrows = method.count(ATHROW);
+        method.markDirty();
+        Assert.assertEquals(athrows + 1, method.count(ATHROW));
+        Assert.assertEquals(nops, method.count(NOP));
+    }
+}
@@ -1,12 +1,15 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
 import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.pattern.nano.NanoPatternTypes;
+import io.disassemble.asm.pattern.nano.composite.BasicSetterPattern;
+import io.disassemble.asm.pattern.nano.composite.CompositePattern;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 public class NanoPatternTest {
     private static final File TEST_JAR = new File(ParallelismTest.class.getResource("SampleArchive.jar").getFile());
@@ -48,4 +51,73 @@ public class NanoPatternTest {
         Assert.assertTrue(patterns.get("LocalReader") == 23134);
         Assert.assertTrue(patterns.get("ArrayReturn") == 44);
     }
+
+    @Test
+    public void testMasks() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        CompositePattern setter = new BasicSetterPattern();
+        long required = ClassMethod.nanoPatternMask(NanoPatternTypes.NO_RETURN, NanoPatternTypes.FIELD_WRITER);
+        long excluded = ClassMethod.nanoPatternMask(NanoPatternTypes.LOOPING);
+        List<ClassMethod> expected = new ArrayList<>();
+        for (ClassFactory cf : ja.classes().values()) {
+            for (ClassMethod cm : cf.methods) {
+                List<String> simples = cm.findSimpleNanoPatterns(false);
+                List<String> advanced = cm.findAdvancedNanoPatterns(false);
+                Set<String> names = new HashSet<>(simples);
+                names.addAll(advanced);
+                Assert.assertEquals(names, new HashSet<>(ClassMethod.nanoPatternNames(cm.nanoPatterns())));
+                for (String name : names) {
+                    Assert.assertEquals(Collections.frequency(simples, name) + Collections.frequency(advanced, name),
+                            cm.nanoPatternCount(name));
+                }
+                Assert.assertEquals(simples.containsAll(Arrays.asList(setter.simples())) &&
+                                advanced.containsAll(Arrays.asList(setter.advanced())),
+                        (cm.nanoPatterns() & setter.mask()) == setter.mask());
+                if (names.contains(NanoPatternTypes.NO_RETURN) && names.contains(NanoPatternTypes.FIELD_WRITER) &&
+                        !names.contains(NanoPatternTypes.LOOPING)) {
+                    expected.add(cm);
+                }
+                Assert.assertFalse(cm.hasSimpleNanoPatterns(NanoPatternTypes.FIELD_READER));
+                Assert.assertFalse(cm.hasAdvancedNanoPatterns("Unknown"));
+            }
+        }
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, ja.nanoPatterns().find(required, excluded));
+        Assert.assertEquals(expected.size(), ja.nanoPatterns().count(required, excluded));
+        ClassMethod method = expected.get(0);
+        method.setDescriptor(method.desc().replace(")V", ")I"));
+        Assert.assertFalse(ja.nanoPatterns().find(required, excluded).contains(method));
+        Assert.assertTrue(method.findSimpleNanoPatterns().contains("PrimitiveReturn"));
+        Assert.assertTrue(method.hasSimpleNanoPatterns("PrimitiveReturn"));
+        Assert.assertFalse(method.hasSimpleNanoPatterns(NanoPatternTypes.NO_RETURN));
+    }
+
+    @Test
+    public void testUnknownCompositePattern() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        CompositePattern custom = new CompositePattern() {
+            @Override
+            public String[] simples() {
+                return new String[]{NanoPatternTypes.NO_RETURN, "Custom"};
+            }
+
+            @Override
+            public String[] advanced() {
+                return new String[0];
+            }
+        };
+        Assert.assertEquals(ClassMethod.nanoPatternMask(NanoPatternTypes.NO_RETURN), custom.mask());
+        for (ClassFactory cf : ja.classes().values()) {
+            for (ClassMethod cm : cf.methods) {
+                Assert.assertFalse(custom.matches(cm));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPattern() {
+        ClassMethod.nanoPatternMask("Unknown");
+    }
 }
@@ -0,0 +1,119 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassFactoryVisitor;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.ClassMethodVisitor;
+import io.disassemble.asm.JarArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelDispatchTest {
+    private static final File TEST_JAR = new File(ParallelDispatchTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void testReduction() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        CallCounter sequential = new CallCounter();
+        ja.dispatch(sequential);
+        for (long threshold : new long[]{1, Long.MAX_VALUE}) {
+            AtomicInteger workers = new AtomicInteger();
+            int calls = ja.dispatchMethods(() -> {
+                workers.incrementAndGet();
+                return new CallCounter();
+            }, counter -> counter.calls, Integer::sum, threshold).orElse(0);
+            Assert.assertEquals(sequential.calls, calls);
+            Assert.assertTrue(workers.get() >= 1);
+            int methods = ja.dispatchClasses(MethodCounter::new, counter -> counter.methods.size(),
+                    Integer::sum, threshold).orElse(0);
+            int expected = 0;
+            for (ClassFactory factory : ja.classes().values()) {
+                expected += factory.methods.length;
+            }
+            Assert.assertEquals(expected, methods);
+        }
+    }
+
+    @Test
+    public void testEarlyTermination() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        int total = ja.dispatchMethods(CallCounter::new, counter -> counter.visited, Integer::sum, 1).orElse(0);
+        int stopped = ja.dispatchMethods(() -> new CallCounter() {
+            @Override
+            public void visitMethodInsn(MethodInsnNode min) {
+                super.visitMethodInsn(min);
+                lock();
+            }
+        }, counter -> counter.visited, Integer::sum, 1).orElse(0);
+        Assert.assertTrue(stopped >= 1);
+        Assert.assertTrue(stopped < total);
+    }
+
+    @Test
+    public void testNestedDispatch() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        int expected = 0;
+        for (ClassFactory factory : ja.classes().values()) {
+            expected += factory.methods.length;
+        }
+        int total = expected;
+        int methods = ja.dispatchClasses(() -> new MethodCounter() {
+            private boolean nesting;
+            private int nested;
+
+            @Override
+            public void visitMethod(ClassMethod cm) {
+                // A pool thread running the nested dispatch must never reuse this visitor for another class.
+                Assert.assertFalse(nesting);
+                super.visitMethod(cm);
+            }
+
+            @Override
+            public void visitEnd() {
+                if (nested++ < 2) {
+                    nesting = true;
+                    int inner = ja.dispatchClasses(MethodCounter::new, counter -> counter.methods.size(),
+                            Integer::sum, 1).orElse(0);
+                    Assert.assertEquals(total, inner);
+                    nesting = false;
+                }
+            }
+        }, counter -> counter.methods.size(), Integer::sum, 1).orElse(0);
+        Assert.assertEquals(expected, methods);
+    }
+
+    private static class CallCounter extends ClassMethodVisitor {
+
+        int calls, visited;
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            visited++;
+        }
+
+        @Override
+        public void visitMethodInsn(MethodInsnNode min) {
+            calls++;
+        }
+    }
+
+    private static class MethodCounter extends ClassFactoryVisitor {
+
+        final Set<ClassMethod> methods = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        @Override
+        public void visitMethod(ClassMethod cm) {
+            methods.add(cm);
+        }
+    }
+}
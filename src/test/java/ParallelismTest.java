@@ -1,16 +1,17 @@
 import io.disassemble.asm.JarArchive;
 import org.junit.Assert;
-import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.MethodSorters;
 import org.junit.runners.Parameterized;
+import org.objectweb.asm.ClassWriter;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.util.Arrays;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
 
 /**
  * @author Christopher Carpenter
@@ -30,17 +31,6 @@ public class ParallelismTest {
         return Arrays.asList(1, 2, 3, 5, 10, 15, 20, 100, Long.MAX_VALUE);
     }
 
-    @BeforeClass
-    public static void warmUp() throws IOException {
-        //TODO use JMH for benchmarking instead, this isn't what JUnit was designed for.
-        //System.out.println("Warming up the JIT");
-        for (int iteration = 0; iteration < 25; ++iteration) {
-            new JarArchive(TEST_JAR).build(true);
-            new JarArchive(TEST_JAR).build(false);
-            new JarArchive(TEST_JAR).build(iteration);
-        }
-    }
-
     @Test
     public void test() throws IOException {
         JarArchive ja = new JarArchive(TEST_JAR);
@@ -48,4 +38,67 @@ public class ParallelismTest {
         Assert.assertTrue(!ja.classes().isEmpty() && !ja.resources().isEmpty());
         //System.out.println("Built " + ja.classes().size() + " classes and " + ja.resources().size() + " resources with a parallelism threshold of " + parallelismThreshold + ".");
     }
+
+    @Test
+    public void testMapped() throws IOException {
+        JarArchive streamed = new JarArchive(TEST_JAR);
+        streamed.build(parallelismThreshold);
+        JarArchive mapped = new JarArchive(TEST_JAR).mapped();
+        mapped.build(parallelismThreshold);
+        Assert.assertEquals(streamed.classes().keySet(), mapped.classes().keySet());
+        Assert.assertEquals(streamed.resources().keySet(), mapped.resources().keySet());
+        streamed.resources().forEach((name, bytes) -> Assert.assertArrayEquals(name, bytes, mapped.resources().get(name)));
+        streamed.classes().forEach((name, factory) ->
+                Assert.assertEquals(name, factory.methods.length, mapped.classes().get(name).methods.length));
+    }
+
+    @Test
+    public void testWriteSequentialByDefault() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build(parallelismThreshold);
+        File output = File.createTempFile("default", ".jar");
+        try {
+            Thread caller = Thread.currentThread();
+            ja.write(output, ClassWriter.COMPUTE_MAXS, writer -> {
+                Assert.assertSame(caller, Thread.currentThread());
+                return writer;
+            });
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build(parallelismThreshold);
+        File sequential = File.createTempFile("sequential", ".jar");
+        File parallel = File.createTempFile("parallel", ".jar");
+        try {
+            ja.write(sequential, ClassWriter.COMPUTE_MAXS, x -> x, Long.MAX_VALUE);
+            ja.write(parallel, ClassWriter.COMPUTE_MAXS, x -> x, parallelismThreshold);
+            try (JarInputStream expected = new JarInputStream(new FileInputStream(sequential));
+                 JarInputStream actual = new JarInputStream(new FileInputStream(parallel))) {
+                JarEntry entry;
+                while ((entry = expected.getNextJarEntry()) != null) {
+                    Assert.assertEquals(entry.getName(), actual.getNextJarEntry().getName());
+                    Assert.assertArrayEquals(entry.getName(), readAll(expected), readAll(actual));
+                }
+                Assert.assertNull(actual.getNextJarEntry());
+            }
+        } finally {
+            sequential.delete();
+            parallel.delete();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
 }
@@ -0,0 +1,151 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassField;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.util.Assembly;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class ReferenceIndexTest {
+    private static final File TEST_JAR = new File(ReferenceIndexTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void testCallers() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        List<String> names = new ArrayList<>(ja.classes().keySet());
+        Collections.sort(names);
+        for (String name : names.subList(0, Math.min(names.size(), 50))) {
+            for (ClassMethod method : ja.classes().get(name).methods) {
+                Assert.assertEquals(method.key(), identities(method.callers(ja.classes())), identities(method.callers(ja)));
+            }
+        }
+        ClassMethod callee = findCalledMethod(ja);
+        int callers = callee.callers(ja).size();
+        MethodInsnNode call = null;
+        ClassMethod caller = null;
+        for (String name : names) {
+            for (ClassMethod method : ja.classes().get(name).methods) {
+                for (AbstractInsnNode insn : method.instructions().toArray()) {
+                    if (call == null && insn instanceof MethodInsnNode && !((MethodInsnNode) insn).owner.equals(callee.owner.name())) {
+                        call = (MethodInsnNode) insn;
+                        caller = method;
+                    }
+                }
+            }
+        }
+        Assert.assertNotNull(call);
+        call.owner = callee.owner.name();
+        call.name = callee.name();
+        call.desc = callee.desc();
+        caller.markDirty();
+        Assert.assertEquals(callers + 1, callee.callers(ja).size());
+        Assert.assertTrue(ja.references().methodsCalling(callee.owner.name(), callee.name()).contains(caller));
+    }
+
+    @Test
+    public void testRename() throws IOException {
+        JarArchive scanned = new JarArchive(TEST_JAR);
+        scanned.build();
+        JarArchive indexed = new JarArchive(TEST_JAR);
+        indexed.build();
+        ClassMethod method = findCalledMethod(scanned);
+        ClassMethod indexedMethod = find(indexed, method);
+        Assembly.rename(scanned.classes(), method, "renamedMethod");
+        Assembly.rename(indexed, indexedMethod, "renamedMethod");
+        ClassField field = findAccessedField(scanned);
+        String fieldName = field.name();
+        Assembly.rename(scanned.classes(), field, "renamedField");
+        Assembly.rename(indexed, indexed.classes().get(field.owner.name()).findField(f -> f.name().equals(fieldName)),
+                "renamedField");
+        ClassFactory type = method.owner;
+        String typeName = type.name();
+        Assembly.rename(scanned.classes(), type, "renamed/Type");
+        Assembly.rename(indexed, indexed.classes().get(typeName), "renamed/Type");
+        for (Map.Entry<String, ClassFactory> entry : scanned.classes().entrySet()) {
+            ClassFactory expected = entry.getValue();
+            ClassFactory actual = indexed.classes().get(entry.getKey());
+            Assert.assertEquals(expected.name(), actual.name());
+            Assert.assertEquals(expected.superName(), actual.superName());
+            for (int i = 0; i < expected.methods.length; i++) {
+                Assert.assertEquals(expected.methods[i].key(), actual.methods[i].key());
+                Assert.assertEquals(expected.methods[i].key(), text(expected.methods[i]), text(actual.methods[i]));
+            }
+        }
+        Assert.assertFalse(indexed.references().methodsReferencing("renamed/Type").isEmpty());
+        Assert.assertTrue(indexed.references().methodsReferencing(typeName).isEmpty());
+    }
+
+    @Test
+    public void testRelease() throws IOException {
+        JarArchive lazy = new JarArchive(TEST_JAR).lazy();
+        lazy.build();
+        JarArchive other = new JarArchive(TEST_JAR);
+        other.build();
+        ClassMethod callee = findCalledMethod(lazy);
+        Set<ClassMethod> callers = lazy.references().methodsCalling(callee.owner.name(), callee.name());
+        Set<ClassMethod> otherCallers = other.references().methodsCalling(callee.owner.name(), callee.name());
+        Assert.assertTrue(lazy.release() > 0);
+        // Methods of other archives being modified doesn't affect this index.
+        other.classes().values().iterator().next().methods[0].markDirty();
+        Set<ClassMethod> reloaded = lazy.references().methodsCalling(callee.owner.name(), callee.name());
+        Assert.assertEquals(callers.size(), reloaded.size());
+        for (ClassMethod caller : reloaded) {
+            Assert.assertSame(lazy.classes().get(caller.owner.name()), caller.owner);
+            Assert.assertFalse(callers.contains(caller));
+        }
+        Assert.assertEquals(otherCallers, other.references().methodsCalling(callee.owner.name(), callee.name()));
+    }
+
+    private static ClassMethod findCalledMethod(JarArchive ja) {
+        List<String> names = new ArrayList<>(ja.classes().keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            for (ClassMethod method : ja.classes().get(name).methods) {
+                if (!method.name().startsWith("<") && method.callers(ja.classes()).size() > 1) {
+                    return method;
+                }
+            }
+        }
+        throw new IllegalStateException("No method is called more than once");
+    }
+
+    private static ClassField findAccessedField(JarArchive ja) {
+        List<String> names = new ArrayList<>(ja.classes().keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            for (ClassField field : ja.classes().get(name).fields) {
+                if (!ja.references().accessors(field).isEmpty()) {
+                    return field;
+                }
+            }
+        }
+        throw new IllegalStateException("No field is accessed");
+    }
+
+    private static ClassMethod find(JarArchive ja, ClassMethod method) {
+        return ja.classes().get(method.owner.name()).findMethod(m -> m.key().equals(method.key()));
+    }
+
+    private static Set<AbstractInsnNode> identities(List<? extends AbstractInsnNode> insns) {
+        Set<AbstractInsnNode> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(insns);
+        return set;
+    }
+
+    private static List<String> text(ClassMethod method) {
+        List<String> text = new ArrayList<>();
+        for (AbstractInsnNode insn : method.instructions().toArray()) {
+            if (insn.getOpcode() != -1) {
+                text.add(Assembly.toString(insn).replaceAll("LabelNode@[0-9a-f]+", "LabelNode"));
+            }
+        }
+        return text;
+    }
+}
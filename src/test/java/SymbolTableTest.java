@@ -0,0 +1,68 @@
+import io.disassemble.asm.ClassFactory;
+import io.disassemble.asm.ClassMethod;
+import io.disassemble.asm.JarArchive;
+import io.disassemble.asm.SymbolTable;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SymbolTableTest {
+    private static final File TEST_JAR = new File(SymbolTableTest.class.getResource("SampleArchive.jar").getFile());
+
+    @Test
+    public void testIds() {
+        SymbolTable symbols = new SymbolTable();
+        String name = symbols.intern(new String("java/lang/Object"));
+        Assert.assertSame(name, symbols.intern(new String("java/lang/Object")));
+        int id = symbols.id("java/lang/Object");
+        Assert.assertEquals(id, symbols.id(new String("java/lang/Object")));
+        Assert.assertNotEquals(id, symbols.id("java/lang/String"));
+        Assert.assertSame(name, symbols.symbol(id));
+        Assert.assertNull(symbols.symbol(symbols.size()));
+        Assert.assertEquals(id, symbols.find(new String("java/lang/Object")));
+        Assert.assertEquals(-1, symbols.find("java/lang/Integer"));
+        Assert.assertEquals(2, symbols.size());
+    }
+
+    @Test
+    public void testArchiveSymbolsShared() throws IOException {
+        for (JarArchive ja : new JarArchive[]{new JarArchive(TEST_JAR), new JarArchive(TEST_JAR).lazy()}) {
+            ja.build();
+            SymbolTable symbols = ja.symbols();
+            int checked = 0;
+            for (ClassFactory factory : ja.classes().values()) {
+                Assert.assertSame(factory.name(), symbols.intern(factory.name()));
+                for (ClassMethod method : factory.methods) {
+                    Assert.assertSame(method.desc(), symbols.intern(method.desc()));
+                    for (AbstractInsnNode insn : method.instructions().toArray()) {
+                        if (insn instanceof MethodInsnNode) {
+                            MethodInsnNode min = (MethodInsnNode) insn;
+                            Assert.assertSame(min.owner, symbols.intern(min.owner));
+                            Assert.assertSame(min.name, symbols.intern(min.name));
+                            Assert.assertSame(min.desc, symbols.intern(min.desc));
+                            checked++;
+                        }
+                    }
+                }
+                Assert.assertFalse(factory.dirty());
+            }
+            Assert.assertTrue("No method calls were checked", checked > 0);
+        }
+    }
+
+    @Test
+    public void testKeyFollowsRename() throws IOException {
+        JarArchive ja = new JarArchive(TEST_JAR);
+        ja.build();
+        ClassMethod method = ja.classes().values().iterator().next().methods[0];
+        String key = method.key();
+        Assert.assertSame(key, method.key());
+        method.setName("renamed");
+        Assert.assertEquals(method.owner.name() + ".renamed" + method.desc(), method.key());
+        Assert.assertNotEquals(key, method.key());
+    }
+}